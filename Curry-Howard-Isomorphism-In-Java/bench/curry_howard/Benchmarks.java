@@ -0,0 +1,27 @@
+package curry_howard;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar.
+ *
+ * Accepts the usual JMH command line (benchmark regexps, -f, -wi, -i, ...)
+ * and always adds the gc profiler, so every run reports the allocation rate
+ * (gc.alloc.rate.norm is bytes allocated per rule application or per proof)
+ * next to the throughput.
+ **/
+public class Benchmarks {
+  public static void main(final String[] args)
+      throws CommandLineOptionException, RunnerException {
+    final CommandLineOptions cmd = new CommandLineOptions(args);
+    new Runner(new OptionsBuilder()
+        .parent(cmd)
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+}
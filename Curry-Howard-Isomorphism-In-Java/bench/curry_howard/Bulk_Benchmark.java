@@ -0,0 +1,95 @@
+package curry_howard;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+
+/**
+ * One imply_e / or_e per element against imply_eAll / or_eAll over the
+ * same array of 'size' elements. The Or evidence is Left or Right at
+ * random, which is what or_eAll's partitioning is for.
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Bulk_Benchmark {
+  @Param({ "1024", "1048576" })
+  public int size;
+
+  private Imply<P, Q> pIMPLYq;
+  private Deduction<P, R> d1;
+  private Deduction<Q, R> d2;
+  private P[] ps;
+  private Q[] qs;
+  private Or<P, Q>[] pORqs;
+  private R[] rs;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    final Q q = new Q();
+    final R r = new R();
+    this.pIMPLYq = new Imply<P, Q>((P p) -> q);
+    this.d1 = (P p) -> r;
+    this.d2 = (Q q1) -> r;
+    this.ps = new P[this.size];
+    this.qs = new Q[this.size];
+    this.pORqs = (Or<P, Q>[]) new Or<?, ?>[this.size];
+    this.rs = new R[this.size];
+    final Random random = new Random(42);
+    for (int i = 0; i < this.size; i++) {
+      this.ps[i] = new P();
+      this.pORqs[i] = random.nextBoolean() ? Or.<P, Q> or_i1(this.ps[i])
+          : Or.<P, Q> or_i2(q);
+    }
+  }
+
+  @Benchmark
+  public Q[] imply_eLoop() {
+    for (int i = 0; i < this.ps.length; i++) {
+      this.qs[i] = this.pIMPLYq.imply_e(this.ps[i]);
+    }
+    return this.qs;
+  }
+
+  @Benchmark
+  public Q[] imply_eAll() {
+    this.pIMPLYq.imply_eAll(this.ps, this.qs);
+    return this.qs;
+  }
+
+  @Benchmark
+  public R[] or_eLoop() {
+    for (int i = 0; i < this.pORqs.length; i++) {
+      this.rs[i] = this.pORqs[i].or_e(this.d1, this.d2);
+    }
+    return this.rs;
+  }
+
+  @Benchmark
+  public R[] or_eAll() {
+    Or.or_eAll(this.pORqs, this.d1, this.d2, this.rs);
+    return this.rs;
+  }
+}
@@ -0,0 +1,173 @@
+package curry_howard;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.R;
+
+/**
+ * The effect of polymorphic call sites on ->e and ve.
+ *
+ * Every proof supplies its own Deduction class, so in a real workload the
+ * apply/deduction_step call inside Imply.imply_e and Or.or_e sees many
+ * receiver classes. Here 'shapes' distinct Deduction classes are spread
+ * round-robin over one array of evidence: 1 keeps the call sites
+ * monomorphic, 2 bimorphic, and 3 or more makes them megamorphic, which is
+ * where the JIT stops inlining the sub-proof. The ve benchmark also mixes
+ * Left and Right evidence in the same array.
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Call_Site_Benchmark {
+  private static final int SIZE = 1024;
+
+  @Param({ "1", "2", "3", "4", "8" })
+  public int shapes;
+
+  private P p;
+  private Imply<P, R>[] implies;
+  private Or<P, P>[] ors;
+  private Deduction<P, R>[] deductions;
+
+  static final class D0 implements Deduction<P, R> {
+    final R r = new R();
+    @Override
+    public R deduction_step(P assumptions) {
+      return this.r;
+    }
+  }
+
+  static final class D1 implements Deduction<P, R> {
+    final R r = new R();
+    @Override
+    public R deduction_step(P assumptions) {
+      return this.r;
+    }
+  }
+
+  static final class D2 implements Deduction<P, R> {
+    final R r = new R();
+    @Override
+    public R deduction_step(P assumptions) {
+      return this.r;
+    }
+  }
+
+  static final class D3 implements Deduction<P, R> {
+    final R r = new R();
+    @Override
+    public R deduction_step(P assumptions) {
+      return this.r;
+    }
+  }
+
+  static final class D4 implements Deduction<P, R> {
+    final R r = new R();
+    @Override
+    public R deduction_step(P assumptions) {
+      return this.r;
+    }
+  }
+
+  static final class D5 implements Deduction<P, R> {
+    final R r = new R();
+    @Override
+    public R deduction_step(P assumptions) {
+      return this.r;
+    }
+  }
+
+  static final class D6 implements Deduction<P, R> {
+    final R r = new R();
+    @Override
+    public R deduction_step(P assumptions) {
+      return this.r;
+    }
+  }
+
+  static final class D7 implements Deduction<P, R> {
+    final R r = new R();
+    @Override
+    public R deduction_step(P assumptions) {
+      return this.r;
+    }
+  }
+
+  private static Deduction<P, R> shape(final int i) {
+    switch (i) {
+    case 0:
+      return new D0();
+    case 1:
+      return new D1();
+    case 2:
+      return new D2();
+    case 3:
+      return new D3();
+    case 4:
+      return new D4();
+    case 5:
+      return new D5();
+    case 6:
+      return new D6();
+    default:
+      return new D7();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Setup
+  public void setup() {
+    this.p = new P();
+    this.implies = (Imply<P, R>[]) new Imply<?, ?>[SIZE];
+    this.ors = (Or<P, P>[]) new Or<?, ?>[SIZE];
+    this.deductions = (Deduction<P, R>[]) new Deduction<?, ?>[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      final Deduction<P, R> d = shape(i % this.shapes);
+      this.deductions[i] = d;
+      this.implies[i] = new Imply<P, R>(d);
+      this.ors[i] = (i & 1) == 0 ? Or.<P, P> or_i1(this.p) : Or.<P, P> or_i2(this.p);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void imply_e(final Blackhole bh) {
+    final Imply<P, R>[] implies = this.implies;
+    final P p = this.p;
+    for (int i = 0; i < implies.length; i++) {
+      bh.consume(implies[i].imply_e(p));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void or_e(final Blackhole bh) {
+    final Or<P, P>[] ors = this.ors;
+    final Deduction<P, R>[] deductions = this.deductions;
+    for (int i = 0; i < ors.length; i++) {
+      final Deduction<P, R> d = deductions[i];
+      bh.consume(ors[i].or_e(d, d));
+    }
+  }
+}
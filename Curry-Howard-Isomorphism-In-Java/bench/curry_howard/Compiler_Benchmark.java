@@ -0,0 +1,78 @@
+package curry_howard;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Proof_Compiler.Compiled;
+import curry_howard.Proof_Terms.Term;
+
+/**
+ * example1 three ways: the hand-written method, its Term run by
+ * Proof_Terms.evaluate, and the same Term compiled by Proof_Compiler.
+ *
+ * The compiled proof should score close to the hand-written one, and well
+ * ahead of evaluate.
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Compiler_Benchmark {
+  private P p;
+  private Imply<P, Q> pIMPLYq;
+  private Imply<And<P, Q>, R> pqIMPLYr;
+  private Term example1;
+  private Map<String, Object> premises;
+  private Compiled compiled;
+
+  @Setup
+  public void setup() {
+    this.p = new P();
+    this.pIMPLYq = new Imply<P, Q>((P assumptions) -> new Q());
+    this.pqIMPLYr = new Imply<And<P, Q>, R>((And<P, Q> assumptions) -> new R());
+    final Term h1 = Term.premise("h1");
+    final Term h2 = Term.premise("h2");
+    final Term h3 = Term.premise("h3");
+    this.example1 = Term.imply_e(h1, Term.and_i(h3, Term.imply_e(h2, h3)));
+    this.premises = new HashMap<String, Object>();
+    this.premises.put("h1", this.pqIMPLYr);
+    this.premises.put("h2", this.pIMPLYq);
+    this.premises.put("h3", this.p);
+    this.compiled = Proof_Compiler.compile(this.example1, "h1", "h2", "h3");
+  }
+
+  @Benchmark
+  public R handWritten() {
+    return Curry_Howard_Isomorphism.example1(this.pqIMPLYr, this.pIMPLYq,
+        this.p);
+  }
+
+  @Benchmark
+  public Object evaluated() {
+    return Proof_Terms.evaluate(this.example1, this.premises);
+  }
+
+  @Benchmark
+  public Object compiled() {
+    return this.compiled.evaluate(this.pqIMPLYr, this.pIMPLYq, this.p);
+  }
+}
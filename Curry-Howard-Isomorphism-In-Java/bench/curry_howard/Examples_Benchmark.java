@@ -0,0 +1,128 @@
+package curry_howard;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+
+/**
+ * The example proofs of Curry_Howard_Isomorphism run end to end.
+ *
+ * The premises ("library proofs") are mocked up once in setup, exactly as in
+ * the @Test methods of the examples. Proofs whose conclusion is an
+ * implication (example12, example2, example3, example4) are measured twice:
+ * building the evidence only, and building it and then applying it with ->e
+ * so that the boxed sub-proofs actually run.
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Examples_Benchmark {
+  private final Curry_Howard_Isomorphism examples = new Curry_Howard_Isomorphism();
+
+  private P p;
+  private Q q;
+  private And<P, Q> pANDq;
+  private Or<P, Q> pORq;
+  private Imply<P, Q> pIMPLYq;
+  private Imply<P, R> pIMPLYr;
+  private Imply<Q, R> qIMPLYr;
+  private Imply<And<P, Q>, R> pqIMPLYr;
+  private Imply<Or<P, Q>, R> pORqIMPLYr;
+  private Imply<And<Q, P>, R> qpIMPLYr;
+  private Imply<P, Imply<Q, R>> pIMPLYqir;
+
+  @Setup
+  public void setup() {
+    this.p = new P();
+    this.q = new Q();
+    this.pANDq = new And<P, Q>(this.p, this.q);
+    this.pORq = Or.or_i1(this.p);
+    this.pIMPLYq = new Imply<P, Q>((P assumptions) -> new Q());
+    this.pIMPLYr = new Imply<P, R>((P assumptions) -> new R());
+    this.qIMPLYr = new Imply<Q, R>((Q assumptions) -> new R());
+    this.pqIMPLYr = new Imply<And<P, Q>, R>((And<P, Q> assumptions) -> new R());
+    this.pORqIMPLYr = new Imply<Or<P, Q>, R>((Or<P, Q> assumptions) -> new R());
+    this.qpIMPLYr = new Imply<And<Q, P>, R>((And<Q, P> assumptions) -> new R());
+    final Imply<Q, R> qIMPLYr = this.qIMPLYr;
+    this.pIMPLYqir = new Imply<P, Imply<Q, R>>((P assumptions) -> qIMPLYr);
+  }
+
+  @Benchmark
+  public And<Q, P> and_example() {
+    return Curry_Howard_Isomorphism.and_example(this.pANDq);
+  }
+
+  @Benchmark
+  public Or<Or<P, Q>, R> or_example() {
+    return Curry_Howard_Isomorphism.or_example(this.q);
+  }
+
+  @Benchmark
+  public R example1() {
+    return Curry_Howard_Isomorphism.example1(this.pqIMPLYr, this.pIMPLYq, this.p);
+  }
+
+  @Benchmark
+  public R example11() {
+    return Curry_Howard_Isomorphism.example11(this.pORqIMPLYr, this.q);
+  }
+
+  @Benchmark
+  public Imply<Q, R> example12() {
+    return Curry_Howard_Isomorphism.example12(this.p, this.qpIMPLYr);
+  }
+
+  @Benchmark
+  public R example12_apply() {
+    return Curry_Howard_Isomorphism.example12(this.p, this.qpIMPLYr).imply_e(this.q);
+  }
+
+  @Benchmark
+  public Imply<Or<P, Q>, R> example2() {
+    return this.examples.example2(this.pIMPLYr, this.qIMPLYr);
+  }
+
+  @Benchmark
+  public R example2_apply() {
+    return this.examples.example2(this.pIMPLYr, this.qIMPLYr).imply_e(this.pORq);
+  }
+
+  @Benchmark
+  public Imply<P, And<Q, P>> example3() {
+    return this.examples.example3(this.q);
+  }
+
+  @Benchmark
+  public And<Q, P> example3_apply() {
+    return this.examples.example3(this.q).imply_e(this.p);
+  }
+
+  @Benchmark
+  public Imply<Imply<P, Q>, Imply<P, R>> example4() {
+    return this.examples.example4(this.pIMPLYqir);
+  }
+
+  @Benchmark
+  public R example4_apply() {
+    return this.examples.example4(this.pIMPLYqir).imply_e(this.pIMPLYq).imply_e(this.p);
+  }
+}
@@ -0,0 +1,121 @@
+package curry_howard;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+
+/**
+ * Each inference rule measured on its own.
+ *
+ * The evidence is created once in setup, so the introduction rules measure
+ * one allocation each and the elimination rules measure no allocation at all
+ * (check gc.alloc.rate.norm). Every Deduction used here is the same class, so
+ * the call sites below stay monomorphic; see Call_Site_Benchmark for the
+ * polymorphic case.
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Rules_Benchmark {
+  private P p;
+  private Q q;
+  private And<P, Q> pANDq;
+  private Or<P, Q> pORq_left;
+  private Or<P, Q> pORq_right;
+  private Deduction<P, R> pDEDUCEr;
+  private Deduction<Q, R> qDEDUCEr;
+  private Imply<P, R> pIMPLYr;
+
+  private static final class Constant_R implements Deduction<Object, R> {
+    private final R r = new R();
+
+    @Override
+    public R deduction_step(final Object assumptions) {
+      return this.r;
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @Setup
+  public void setup() {
+    this.p = new P();
+    this.q = new Q();
+    this.pANDq = new And<P, Q>(this.p, this.q);
+    this.pORq_left = Or.or_i1(this.p);
+    this.pORq_right = Or.or_i2(this.q);
+    final Deduction d = new Constant_R();
+    this.pDEDUCEr = d;
+    this.qDEDUCEr = d;
+    this.pIMPLYr = new Imply<P, R>(this.pDEDUCEr);
+  }
+
+  @Benchmark
+  public And<P, Q> and_i() {
+    return new And<P, Q>(this.p, this.q);
+  }
+
+  @Benchmark
+  public P and_e1() {
+    return this.pANDq.and_e1();
+  }
+
+  @Benchmark
+  public Q and_e2() {
+    return this.pANDq.and_e2();
+  }
+
+  @Benchmark
+  public Or<P, Q> or_i1() {
+    return Or.or_i1(this.p);
+  }
+
+  @Benchmark
+  public Or<P, Q> or_i2() {
+    return Or.or_i2(this.q);
+  }
+
+  @Benchmark
+  public R or_e_left() {
+    return this.pORq_left.or_e(this.pDEDUCEr, this.qDEDUCEr);
+  }
+
+  @Benchmark
+  public R or_e_right() {
+    return this.pORq_right.or_e(this.pDEDUCEr, this.qDEDUCEr);
+  }
+
+  @Benchmark
+  public Imply<P, R> imply_i() {
+    return new Imply<P, R>(this.pDEDUCEr);
+  }
+
+  @Benchmark
+  public R imply_e() {
+    return this.pIMPLYr.imply_e(this.p);
+  }
+
+  @Benchmark
+  public R deduction_apply() {
+    return this.pDEDUCEr.apply(this.p);
+  }
+}
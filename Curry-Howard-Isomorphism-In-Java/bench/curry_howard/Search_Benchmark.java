@@ -0,0 +1,73 @@
+package curry_howard;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import curry_howard.Proof_Search.Proof;
+import curry_howard.Propositions.Sequent;
+
+/**
+ * Proof_Search against Parallel_Search on pools of 'threads' workers, on
+ * the sequent of Parallel_Search.testLargeDisjunction: 'width' premises
+ * (pi -> q), and their conjunction in the opposite order to prove.
+ *
+ * sequential does not depend on 'threads'; compare parallel with it for
+ * each pool size to see how far the search scales (and, at 1 thread, what
+ * the tasks and the shared table cost).
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Search_Benchmark {
+  @Param({ "1", "2", "4", "8" })
+  public int threads;
+
+  @Param({ "16", "64" })
+  public int width;
+
+  private Sequent sequent;
+  private ForkJoinPool pool;
+
+  @Setup
+  public void setup() {
+    final StringBuilder from = new StringBuilder("(p1 -> q)");
+    final StringBuilder to = new StringBuilder("p" + this.width + " -> q");
+    for (int i = 2; i <= this.width; i++) {
+      from.append(" ^ (p").append(i).append(" -> q)");
+      to.append(" ^ (p").append(this.width + 1 - i).append(" -> q)");
+    }
+    this.sequent = Sequent.parse(from + " |- " + to);
+    this.pool = new ForkJoinPool(this.threads);
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.pool.shutdown();
+  }
+
+  @Benchmark
+  public Proof sequential() {
+    return Proof_Search.prove(this.sequent);
+  }
+
+  @Benchmark
+  public Proof parallel() {
+    return Parallel_Search.prove(this.sequent, this.pool);
+  }
+}
@@ -0,0 +1,63 @@
+package curry_howard;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.P;
+
+/**
+ * Nested ->e run directly (one Java call per step) against the same chain
+ * run on a Trampoline (constant stack, one small allocation per step).
+ *
+ * Compare the two scores per 'depth' to find the crossover; past the deepest
+ * values here only the trampolined chain still runs on a default-sized
+ * stack.
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Trampoline_Benchmark {
+  @Param({ "1", "2", "4", "8", "16", "64", "256", "1024", "4096" })
+  public int depth;
+
+  private P p;
+  private Imply<P, P> direct;
+  private Imply<P, P> trampolined;
+
+  @Setup
+  public void setup() {
+    this.p = new P();
+    Imply<P, P> next = new Imply<P, P>((P p) -> p);
+    for (int i = 0; i < this.depth; i++) {
+      final Imply<P, P> rest = next;
+      next = new Imply<P, P>((P p) -> rest.imply_e(p));
+    }
+    this.direct = next;
+    this.trampolined = Trampolining.chain(this.depth);
+  }
+
+  @Benchmark
+  public P direct() {
+    return this.direct.imply_e(this.p);
+  }
+
+  @Benchmark
+  public P trampolined() {
+    return this.trampolined.imply_e(this.p);
+  }
+}
@@ -0,0 +1,185 @@
+package curry_howard;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+
+public class Async_Evidence {
+  /**
+   * Proof steps that wait for each other only when they have to.
+   *
+   * imply_e runs the premise's Deduction on the calling thread, so a proof
+   * whose premises are slow "library proofs" (say, ones that do I/O) waits
+   * for each of them in turn, even when one does not need the other's
+   * evidence. Imply.imply_eAsync runs the "->e" step on another thread and
+   * returns a CompletableFuture of its evidence; the methods here continue a
+   * proof from such futures:
+   *
+   * <pre>
+   *   CompletableFuture<Q> q = pIMPLYq.imply_eAsync(p);        // starts now
+   *   CompletableFuture<S> s = pIMPLYs.imply_eAsync(p);        // so does this
+   *   CompletableFuture<And<Q, S>> qANDs = and_i(q, s);        // ^i once both are in
+   * </pre>
+   *
+   * and the proof takes as long as its slowest branch instead of the sum of
+   * them. "^i" only builds the And once both halves have completed, and a
+   * step that fails (its Deduction throws) fails every step that depends on
+   * it.
+   *
+   * Where the JVM has virtual threads (Java 21 and later), every step gets a
+   * virtual thread of its own, so a blocked library proof ties up no
+   * platform thread; elsewhere the steps run on a pool of daemon threads
+   * that grows as needed. An Executor can also be passed explicitly.
+   **/
+
+  private static volatile Executor executor;
+
+  /**
+   * The Executor imply_eAsync uses: one virtual thread per task if the JVM
+   * has them, else a cached pool of daemon threads.
+   **/
+  public static Executor executor() {
+    Executor e = executor;
+    if (e == null) {
+      synchronized (Async_Evidence.class) {
+        e = executor;
+        if (e == null) {
+          executor = e = newExecutor();
+        }
+      }
+    }
+    return e;
+  }
+
+  private static Executor newExecutor() {
+    try {
+      // Java 21+; this class is compiled for Java 8
+      return (Executor) Executors.class.getMethod(
+          "newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (final ReflectiveOperationException e) {
+      final AtomicInteger n = new AtomicInteger();
+      return Executors.newCachedThreadPool(
+          (Runnable r) -> {
+            final Thread t = new Thread(r, "curry_howard-async-"
+                + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          });
+    }
+  }
+
+  /** "^i" of two future halves, once both have completed. */
+  public static <T1, T2> CompletableFuture<And<T1, T2>> and_i(
+      final CompletionStage<? extends T1> v1,
+      final CompletionStage<? extends T2> v2) {
+    return v1.<T2, And<T1, T2>> thenCombine(v2,
+        (T1 x, T2 y) -> new And<T1, T2>(x, y)).toCompletableFuture();
+  }
+
+  /** "->e" on future T1 evidence, run as soon as it is there. */
+  public static <T1, T2> CompletableFuture<T2> imply_e(
+      final Imply<T1, T2> pIMPLYq, final CompletionStage<? extends T1> v) {
+    return v.<T2> thenApplyAsync((T1 x) -> pIMPLYq.imply_e(x), executor())
+        .toCompletableFuture();
+  }
+
+  /** "ve" on future T1 v T2 evidence, run as soon as it is there. */
+  public static <T1, T2, T3> CompletableFuture<T3> or_e(
+      final CompletionStage<? extends Or<T1, T2>> v,
+      final Deduction<T1, T3> d1, final Deduction<T2, T3> d2) {
+    return v.<T3> thenApplyAsync((Or<T1, T2> or) -> or.or_e(d1, d2),
+        executor()).toCompletableFuture();
+  }
+
+  /**
+   * example1, with line 4 (->e) started as soon as the proof begins; line 6
+   * runs once the And of line 5 is complete.
+   **/
+  public static CompletableFuture<R> example1(
+      final Imply<And<P, Q>, R> pqIMPLYr, final Imply<P, Q> pIMPLYq,
+      final P p) {
+    final CompletableFuture<Q> q = pIMPLYq.imply_eAsync(p); //       line 4
+    final CompletableFuture<And<P, Q>> pANDq = and_i( //             line 5
+        CompletableFuture.completedFuture(p), q);
+    return imply_e(pqIMPLYr, pANDq); //                             line 6
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testIndependentPremisesRunTogether() throws Exception {
+    // each library proof waits until both have started: run one after the
+    // other, they would wait forever
+    final CountDownLatch started = new CountDownLatch(2);
+    final Imply<P, Q> pIMPLYq = new Imply<P, Q>((P p) -> {
+      started.countDown();
+      await(started);
+      return new Q();
+    });
+    final Imply<P, R> pIMPLYr = new Imply<P, R>((P p) -> {
+      started.countDown();
+      await(started);
+      return new R();
+    });
+    final P p = new P();
+    final And<Q, R> qANDr = and_i(pIMPLYq.imply_eAsync(p),
+        pIMPLYr.imply_eAsync(p)).get(10, TimeUnit.SECONDS);
+    assertTrue(qANDr.and_e1() instanceof Q && qANDr.and_e2() instanceof R);
+  }
+
+  @Test
+  public void testExample1() throws Exception {
+    final P p = new P();
+    final R r = new R();
+    final Imply<And<P, Q>, R> pqIMPLYr = new Imply<And<P, Q>, R>(
+        (And<P, Q> pq) -> pq.and_e1() == p ? r : null);
+    assertSame(r, example1(pqIMPLYr, new Imply<P, Q>((P p1) -> new Q()), p)
+        .get(10, TimeUnit.SECONDS));
+    // a failing premise fails the steps that need it
+    final CompletableFuture<R> failed = example1(pqIMPLYr,
+        new Imply<P, Q>((P p1) -> {
+          throw new IllegalStateException("no Q today");
+        }), p);
+    try {
+      failed.join();
+      fail();
+    } catch (CompletionException expected) {
+      assertTrue(expected.getCause() instanceof IllegalStateException);
+    }
+    final Or<P, Q> pORq = Or.or_i1(p);
+    assertSame(r, or_e(CompletableFuture.completedFuture(pORq),
+        (P p1) -> r, (Q q) -> null).get(10, TimeUnit.SECONDS));
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      if (!latch.await(10, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("not run concurrently");
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
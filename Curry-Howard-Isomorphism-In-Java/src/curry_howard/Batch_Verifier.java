@@ -0,0 +1,421 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import curry_howard.Proof_Checker.InvalidProofException;
+import curry_howard.Propositions.Sequent;
+
+public class Batch_Verifier {
+  /**
+   * Checking many proofs at once.
+   *
+   * An Obligation is a sequent together with a proof of it, written as the
+   * line-numbered tables Proof_Checker reads. verify() takes any number of
+   * them (from an Iterator, so they can be read as they are needed rather
+   * than all loaded first) and checks up to 'parallelism' at a time, each on
+   * a thread of its own (a virtual thread where the JVM has them, see
+   * Async_Evidence.executor()):
+   *
+   * <pre>
+   *   Report report = Batch_Verifier.verify(obligations, 64, 10,
+   *       TimeUnit.SECONDS, (Outcome o) -> System.out.println(o));
+   * </pre>
+   *
+   * The next obligation is only taken from the Iterator once one of the
+   * running checks has finished, so however long the queue, no more than
+   * 'parallelism' proofs are in memory at a time.
+   *
+   * Each proof ends in an Outcome, handed to the Consumer as soon as it is
+   * known (one at a time, from the worker threads): VALID, INVALID (the
+   * checker found a wrong line), TIMED_OUT (the check was still running
+   * after 'timeout'; its thread is interrupted, which stops the checker the
+   * next time it reads), or FAILED (anything else went wrong, such as a
+   * proof that could not be read). A proof that fails in any of these ways
+   * has no effect on the others.
+   *
+   * The Report returned at the end counts the outcomes and gives latency
+   * percentiles over all the proofs.
+   **/
+
+  public static final class Obligation {
+    private final String name;
+    private final String sequent;
+    private final Supplier<? extends Reader> proof;
+
+    /** A proof given as text. */
+    public Obligation(final String name, final String sequent,
+        final String proof) {
+      this(name, sequent, () -> new StringReader(proof));
+    }
+
+    /** A proof read when it is checked, such as from a file. */
+    public Obligation(final String name, final String sequent,
+        final Supplier<? extends Reader> proof) {
+      this.name = name;
+      this.sequent = sequent;
+      this.proof = proof;
+    }
+
+    public String name() {
+      return this.name;
+    }
+
+    public String sequent() {
+      return this.sequent;
+    }
+
+    @Override
+    public String toString() {
+      return this.name + ": " + this.sequent;
+    }
+  }
+
+  public enum Status {
+    VALID, INVALID, TIMED_OUT, FAILED
+  }
+
+  public static final class Outcome {
+    private final Obligation obligation;
+    private final Status status;
+    private final String message;
+    private final long nanos;
+
+    Outcome(final Obligation obligation, final Status status,
+        final String message, final long nanos) {
+      this.obligation = obligation;
+      this.status = status;
+      this.message = message;
+      this.nanos = nanos;
+    }
+
+    public Obligation obligation() {
+      return this.obligation;
+    }
+
+    public Status status() {
+      return this.status;
+    }
+
+    /** Why the proof is not VALID; null if it is. */
+    public String message() {
+      return this.message;
+    }
+
+    /** From the start of the check to its outcome. */
+    public long nanos() {
+      return this.nanos;
+    }
+
+    @Override
+    public String toString() {
+      return this.obligation.name + " " + this.status
+          + (this.message == null ? "" : " (" + this.message + ")") + " "
+          + this.nanos / 1000 + "us";
+    }
+  }
+
+  public static final class Report {
+    private final Map<Status, Integer> counts;
+    private final long[] nanos;
+
+    Report(final Map<Status, Integer> counts, final long[] nanos) {
+      this.counts = counts;
+      this.nanos = nanos;
+    }
+
+    public int total() {
+      return this.nanos.length;
+    }
+
+    public int count(final Status status) {
+      final Integer n = this.counts.get(status);
+      return n == null ? 0 : n;
+    }
+
+    /**
+     * The latency that 'p' percent of the proofs took at most, such as
+     * percentile(50) or percentile(99.9); 0 for an empty batch.
+     **/
+    public long percentile(final double p) {
+      if (p < 0 || p > 100) {
+        throw new IllegalArgumentException("percentile " + p);
+      }
+      if (this.nanos.length == 0) {
+        return 0;
+      }
+      final int rank = (int) Math.ceil(p / 100 * this.nanos.length);
+      return this.nanos[Math.max(0, rank - 1)];
+    }
+
+    @Override
+    public String toString() {
+      return total() + " proofs: " + this.counts + ", p50 "
+          + percentile(50) / 1000 + "us, p99 " + percentile(99) / 1000
+          + "us, max " + percentile(100) / 1000 + "us";
+    }
+  }
+
+  /**
+   * Checks every obligation, at most 'parallelism' at a time, each for at
+   * most 'timeout'; returns once all of them have an Outcome.
+   **/
+  public static Report verify(final Iterator<Obligation> obligations,
+      final int parallelism, final long timeout, final TimeUnit unit,
+      final Consumer<? super Outcome> results) throws InterruptedException {
+    return verify(obligations, parallelism, timeout, unit, results,
+        Async_Evidence.executor());
+  }
+
+  /** verify, running the checks on 'executor'. */
+  public static Report verify(final Iterator<Obligation> obligations,
+      final int parallelism, final long timeout, final TimeUnit unit,
+      final Consumer<? super Outcome> results, final Executor executor)
+      throws InterruptedException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism " + parallelism);
+    }
+    final Batch batch = new Batch(parallelism, unit.toNanos(timeout), results);
+    try {
+      while (obligations.hasNext()) {
+        batch.slots.acquire();
+        final Check check = new Check(batch, obligations.next());
+        try {
+          executor.execute(check);
+        } catch (final RuntimeException e) {
+          batch.slots.release();
+          check.finish(Status.FAILED, "not started: " + e);
+        }
+      }
+      // wait for the last ones
+      batch.slots.acquire(parallelism);
+    } finally {
+      batch.timer.shutdownNow();
+    }
+    return batch.report();
+  }
+
+  /** What the checks of one verify() share. */
+  private static final class Batch {
+    final Semaphore slots;
+    final long timeout;
+    final Consumer<? super Outcome> results;
+    final ScheduledThreadPoolExecutor timer;
+    final Map<Status, Integer> counts = new EnumMap<Status, Integer>(Status.class);
+    long[] nanos = new long[1024];
+    int done;
+
+    Batch(final int parallelism, final long timeout,
+        final Consumer<? super Outcome> results) {
+      this.slots = new Semaphore(parallelism);
+      this.timeout = timeout;
+      this.results = results;
+      this.timer = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+        final Thread t = new Thread(r, "curry_howard-batch-timer");
+        t.setDaemon(true);
+        return t;
+      });
+      // timeouts of finished checks are cancelled: drop them from the queue
+      this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    synchronized void outcome(final Outcome o) {
+      if (this.done == this.nanos.length) {
+        this.nanos = Arrays.copyOf(this.nanos, this.done * 2);
+      }
+      this.nanos[this.done++] = o.nanos;
+      final Integer n = this.counts.get(o.status);
+      this.counts.put(o.status, n == null ? 1 : n + 1);
+      try {
+        this.results.accept(o);
+      } catch (final RuntimeException e) {
+        // the consumer's problem; the batch goes on
+      }
+    }
+
+    synchronized Report report() {
+      final long[] sorted = Arrays.copyOf(this.nanos, this.done);
+      Arrays.sort(sorted);
+      return new Report(new EnumMap<Status, Integer>(this.counts), sorted);
+    }
+  }
+
+  /** One obligation: checked by a worker, or timed out by the timer. */
+  private static final class Check implements Runnable {
+    private final Batch batch;
+    private final Obligation obligation;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private final long start = System.nanoTime();
+    private Thread worker;
+    /** The timer's TIMED_OUT for this check, cancelled once it is done. */
+    private ScheduledFuture<?> timeout;
+
+    Check(final Batch batch, final Obligation obligation) {
+      this.batch = batch;
+      this.obligation = obligation;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        this.worker = Thread.currentThread();
+      }
+      this.timeout = this.batch.timer.schedule(() -> {
+        if (finish(Status.TIMED_OUT, "after " + this.batch.timeout / 1000000
+            + "ms")) {
+          synchronized (this) {
+            if (this.worker != null) {
+              this.worker.interrupt();
+            }
+          }
+        }
+      }, Math.max(0, this.batch.timeout - (System.nanoTime() - this.start)),
+          TimeUnit.NANOSECONDS);
+      try {
+        final Sequent sequent = Sequent.parse(this.obligation.sequent);
+        try (Reader proof = new Interruptible(this.obligation.proof.get())) {
+          Proof_Checker.check(new SequentFirst(sequent, proof));
+        }
+        finish(Status.VALID, null);
+      } catch (final InvalidProofException e) {
+        finish(Status.INVALID, e.getMessage());
+      } catch (final Throwable t) {
+        finish(Status.FAILED, t.toString());
+      } finally {
+        this.timeout.cancel(false);
+        synchronized (this) {
+          this.worker = null;
+          // the check may have been interrupted by its timeout
+          Thread.interrupted();
+        }
+        this.batch.slots.release();
+      }
+    }
+
+    /** Gives the outcome, if nobody has yet. */
+    boolean finish(final Status status, final String message) {
+      if (!this.finished.compareAndSet(false, true)) {
+        return false;
+      }
+      this.batch.outcome(new Outcome(this.obligation, status, message,
+          System.nanoTime() - this.start));
+      return true;
+    }
+  }
+
+  /** The sequent's line, then the proof, as one input for the checker. */
+  private static final class SequentFirst extends Reader {
+    private final Reader head;
+    private final Reader proof;
+    private boolean inProof;
+
+    SequentFirst(final Sequent sequent, final Reader proof) {
+      this.head = new StringReader(sequent + "\n");
+      this.proof = proof;
+    }
+
+    @Override
+    public int read(final char[] buf, final int off, final int len)
+        throws IOException {
+      if (!this.inProof) {
+        final int n = this.head.read(buf, off, len);
+        if (n > 0) {
+          return n;
+        }
+        this.inProof = true;
+      }
+      return this.proof.read(buf, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.proof.close();
+    }
+  }
+
+  /** Stops reading once the thread has been interrupted. */
+  private static final class Interruptible extends FilterReader {
+    Interruptible(final Reader in) {
+      super(in);
+    }
+
+    @Override
+    public int read(final char[] buf, final int off, final int len)
+        throws IOException {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException("timed out");
+      }
+      return super.read(buf, off, len);
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testBatch() throws InterruptedException {
+    final String andCommutes = "1. p ^ q   premise\n2. q   ^e2 1\n"
+        + "3. p   ^e1 1\n4. q ^ p   ^i 2,3\n";
+    final List<Obligation> obligations = new ArrayList<Obligation>();
+    for (int i = 0; i < 2000; i++) {
+      obligations.add(new Obligation("ok" + i, "p ^ q |- q ^ p", andCommutes));
+    }
+    // the wrong conclusion, and a premise the sequent does not have
+    obligations.add(new Obligation("bad1", "p ^ q |- p ^ q", andCommutes));
+    obligations.add(new Obligation("bad2", "p |- q ^ p", andCommutes));
+    obligations.add(new Obligation("unreadable", "p ^ q |- q ^ p",
+        () -> {
+          throw new IllegalStateException("no such file");
+        }));
+    // a proof that never ends
+    obligations.add(new Obligation("endless", "p |- p", () -> new Reader() {
+      private int line;
+
+      @Override
+      public int read(final char[] buf, final int off, final int len) {
+        final String s = ++this.line + ". p   premise\n";
+        final int n = Math.min(len, s.length());
+        s.getChars(0, n, buf, off);
+        return n;
+      }
+
+      @Override
+      public void close() {
+      }
+    }));
+    final List<Outcome> outcomes = new ArrayList<Outcome>();
+    final Report report = verify(obligations.iterator(), 8, 200,
+        TimeUnit.MILLISECONDS, (Outcome o) -> outcomes.add(o));
+    assertEquals(obligations.size(), report.total());
+    assertEquals(obligations.size(), outcomes.size());
+    assertEquals(2000, report.count(Status.VALID));
+    assertEquals(2, report.count(Status.INVALID));
+    assertEquals(1, report.count(Status.FAILED));
+    assertEquals(1, report.count(Status.TIMED_OUT));
+    assertTrue(report.percentile(50) <= report.percentile(99));
+    assertTrue(report.percentile(100) >= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+}
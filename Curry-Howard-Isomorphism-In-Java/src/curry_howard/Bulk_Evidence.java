@@ -0,0 +1,223 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.Or.Left;
+import curry_howard.Curry_Howard_Isomorphism.Or.Right;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Proof_Tracing.Tracer;
+
+public class Bulk_Evidence {
+  /**
+   * Applying one proof to a great deal of evidence.
+   *
+   * Pushing a million P witnesses through an Imply<P, Q> one imply_e at a
+   * time pays, for each of them, for the Rule_Hooks check and a call
+   * through the Imply. Imply.imply_eAll takes the whole lot (an array, an
+   * Iterable or a Stream) and runs the Deduction over it in one loop: one
+   * call site, always the same Deduction, which the JIT can inline. A
+   * Stream stays as splittable as it was (imply_eAll wraps its Spliterator,
+   * splitting wherever the original splits), so a parallel stream of
+   * evidence is processed in parallel.
+   *
+   * For Or evidence the two cases need different Deductions, and calling
+   * them in whatever order the Lefts and Rights come in makes the call site
+   * jump between the two. Or.or_eAll first sorts the positions of the
+   * array into a run of Lefts and a run of Rights, then runs d1 over all of
+   * the first and d2 over all of the second, each in one loop, writing every
+   * result back to the position its evidence came from.
+   *
+   * If a Rule_Hooks listener is installed (tracing, say), the bulk methods
+   * go through imply_e and or_e for every element instead, so the listener
+   * sees each step as usual.
+   **/
+
+  static <T1, T2> void imply_eAll(final Imply<T1, T2> pIMPLYq, final T1[] in,
+      final T2[] out) {
+    if (out.length < in.length) {
+      throw new IllegalArgumentException("room for " + out.length
+          + " results, " + in.length + " needed");
+    }
+    if (Rule_Hooks.listener != null) {
+      for (int i = 0; i < in.length; i++) {
+        out[i] = pIMPLYq.imply_e(in[i]);
+      }
+      return;
+    }
+    final Deduction<T1, T2> d = pIMPLYq.deduction();
+    for (int i = 0; i < in.length; i++) {
+      out[i] = d.apply(in[i]);
+    }
+  }
+
+  static <T1, T2> List<T2> imply_eAll(final Imply<T1, T2> pIMPLYq,
+      final Iterable<? extends T1> in) {
+    final List<T2> out = in instanceof Collection
+        ? new ArrayList<T2>(((Collection<?>) in).size()) : new ArrayList<T2>();
+    if (Rule_Hooks.listener != null) {
+      for (final T1 v : in) {
+        out.add(pIMPLYq.imply_e(v));
+      }
+      return out;
+    }
+    final Deduction<T1, T2> d = pIMPLYq.deduction();
+    for (final T1 v : in) {
+      out.add(d.apply(v));
+    }
+    return out;
+  }
+
+  static <T1, T2> Stream<T2> imply_eAll(final Imply<T1, T2> pIMPLYq,
+      final Stream<? extends T1> in) {
+    return StreamSupport.stream(new Applying<T1, T2>(pIMPLYq, in.spliterator()),
+        in.isParallel()).onClose(in::close);
+  }
+
+  /**
+   * The T2 evidence of a Spliterator of T1 evidence: splits where it
+   * splits, and runs the Deduction in a loop over each part.
+   **/
+  private static final class Applying<T1, T2> implements Spliterator<T2> {
+    private final Imply<T1, T2> pIMPLYq;
+    private final Spliterator<? extends T1> in;
+
+    Applying(final Imply<T1, T2> pIMPLYq, final Spliterator<? extends T1> in) {
+      this.pIMPLYq = pIMPLYq;
+      this.in = in;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T2> action) {
+      return this.in.tryAdvance((T1 v) -> action.accept(this.pIMPLYq.imply_e(v)));
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super T2> action) {
+      if (Rule_Hooks.listener != null) {
+        this.in.forEachRemaining((T1 v) -> action.accept(this.pIMPLYq.imply_e(v)));
+        return;
+      }
+      final Deduction<T1, T2> d = this.pIMPLYq.deduction();
+      this.in.forEachRemaining((T1 v) -> action.accept(d.apply(v)));
+    }
+
+    @Override
+    public Spliterator<T2> trySplit() {
+      final Spliterator<? extends T1> part = this.in.trySplit();
+      return part == null ? null : new Applying<T1, T2>(this.pIMPLYq, part);
+    }
+
+    @Override
+    public long estimateSize() {
+      return this.in.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+      // the same number of elements in the same order, but no longer
+      // sorted, distinct or non-null
+      return this.in.characteristics()
+          & (SIZED | SUBSIZED | ORDERED | IMMUTABLE | CONCURRENT);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T1, T2, T3> void or_eAll(final Or<T1, T2>[] in,
+      final Deduction<T1, T3> d1, final Deduction<T2, T3> d2, final T3[] out) {
+    if (out.length < in.length) {
+      throw new IllegalArgumentException("room for " + out.length
+          + " results, " + in.length + " needed");
+    }
+    if (Rule_Hooks.listener != null) {
+      for (int i = 0; i < in.length; i++) {
+        out[i] = in[i].or_e(d1, d2);
+      }
+      return;
+    }
+    // positions of the Lefts from the front, of the Rights from the back
+    final int[] at = new int[in.length];
+    int lefts = 0;
+    int rights = in.length;
+    for (int i = 0; i < in.length; i++) {
+      if (in[i] instanceof Left) {
+        at[lefts++] = i;
+      } else {
+        at[--rights] = i;
+      }
+    }
+    for (int k = 0; k < lefts; k++) {
+      final int i = at[k];
+      out[i] = d1.apply(((Left<T1, T2>) in[i]).left());
+    }
+    for (int k = in.length - 1; k >= rights; k--) {
+      final int i = at[k];
+      out[i] = d2.apply(((Right<T1, T2>) in[i]).right());
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testImplyAll() {
+    final Q q = new Q();
+    final Imply<P, Q> pIMPLYq = new Imply<P, Q>((P p) -> q);
+    final P[] ps = new P[10000];
+    for (int i = 0; i < ps.length; i++) {
+      ps[i] = new P();
+    }
+    final Q[] qs = new Q[ps.length];
+    pIMPLYq.imply_eAll(ps, qs);
+    assertSame(q, qs[ps.length - 1]);
+    assertEquals(ps.length, pIMPLYq.imply_eAll(Arrays.asList(ps)).size());
+    // a parallel stream is split up as usual
+    final List<Q> parallel = pIMPLYq.imply_eAll(Arrays.stream(ps).parallel())
+        .collect(Collectors.toList());
+    assertEquals(ps.length, parallel.size());
+    assertSame(q, parallel.get(1234));
+    // with a listener, each ->e is reported
+    try (Tracer t = Proof_Tracing.trace(100)) {
+      pIMPLYq.imply_eAll(Arrays.copyOf(ps, 3), qs);
+      assertEquals(3, t.steps().stream().filter(
+          (Proof_Tracing.Step s) -> s.rule() == Proof_Terms.Rule.IMPLY_E)
+          .count());
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testOrAll() {
+    final P p = new P();
+    final Q q = new Q();
+    final R fromP = new R();
+    final R fromQ = new R();
+    final Or<P, Q>[] pORqs = (Or<P, Q>[]) new Or<?, ?>[1001];
+    for (int i = 0; i < pORqs.length; i++) {
+      pORqs[i] = i % 3 == 0 ? Or.<P, Q> or_i2(q) : Or.<P, Q> or_i1(p);
+    }
+    final R[] rs = new R[pORqs.length];
+    Or.or_eAll(pORqs, (P p1) -> fromP, (Q q1) -> fromQ, rs);
+    for (int i = 0; i < rs.length; i++) {
+      assertSame(i % 3 == 0 ? fromQ : fromP, rs[i]);
+    }
+  }
+}
@@ -1,5 +1,23 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
 import org.junit.Test;
 
+import curry_howard.Trampolining.Trampoline;
+
 public class Curry_Howard_Isomorphism {
   /**
    * To illustrate the relationship between proofs and programs, as described by
@@ -54,6 +72,41 @@ public class Curry_Howard_Isomorphism {
     public And(final T1 x, final T2 y) {
       this.v1 = x;
       this.v2 = y;
+      final Rule_Hooks.Listener l = Rule_Hooks.listener;
+      if (l != null) {
+        l.and_i(this, x, y);
+      }
+    }
+
+    /**
+     * For subclasses that keep their halves themselves (see Lazy_Evidence
+     * and Primitive_Evidence): they override first() and second(), and
+     * report their "^i" with and_i() once they know their halves.
+     **/
+    protected And() {
+      this.v1 = null;
+      this.v2 = null;
+    }
+
+    /** Reports this And's "^i" of x and y to Rule_Hooks listeners. */
+    protected final void and_i(final T1 x, final T2 y) {
+      final Rule_Hooks.Listener l = Rule_Hooks.listener;
+      if (l != null) {
+        l.and_i(this, x, y);
+      }
+    }
+
+    /**
+     * The T1 evidence, for and_e1(), and for code of this package that reads
+     * evidence without applying a rule (Evidence_Codec): nothing is reported.
+     **/
+    protected T1 first() {
+      return this.v1;
+    }
+
+    /** The T2 evidence, for and_e2(); see first(). */
+    protected T2 second() {
+      return this.v2;
     }
 
     /**
@@ -75,8 +128,13 @@ public class Curry_Howard_Isomorphism {
      * Note that the 'this' variable represents the implicit input (of type
      * And<T1, T2>) to this method.
      **/
-    public T1 and_e1() {
-      return this.v1;
+    public final T1 and_e1() {
+      final T1 v = first();
+      final Rule_Hooks.Listener l = Rule_Hooks.listener;
+      if (l != null) {
+        l.and_e1(this, v);
+      }
+      return v;
     }
 
     /**
@@ -98,8 +156,23 @@ public class Curry_Howard_Isomorphism {
      * Note that the 'this' variable represents the implicit input (of type
      * And<T1, T2>) to this method.
      **/
-    public T2 and_e2() {
-      return this.v2;
+    public final T2 and_e2() {
+      final T2 v = second();
+      final Rule_Hooks.Listener l = Rule_Hooks.listener;
+      if (l != null) {
+        l.and_e2(this, v);
+      }
+      return v;
+    }
+
+    /**
+     * Evidence for T1 ^ T2 built from a way to construct T1 evidence and a
+     * way to construct T2 evidence; each one is only run, at most once, when
+     * and_e1() or and_e2() first needs it. See Lazy_Evidence.
+     **/
+    public static <T1, T2> And<T1, T2> lazy(final Supplier<? extends T1> x,
+        final Supplier<? extends T2> y) {
+      return new Lazy_Evidence.LazyAnd<T1, T2>(x, y);
     }
   }
 
@@ -122,7 +195,13 @@ public class Curry_Howard_Isomorphism {
    * However, we do it in way that is a bit cleaner. We create two subclasses of
    * Or<T1,T2> -- one representing the case where T1 is true, and the other
    * representing the case where T2 is true. Then, when we need to do
-   * "or elimination", we can use "instance of" to check which one is true.
+   * "or elimination", each subclass already knows which one is true, so it
+   * simply hands its evidence to the matching subproof.
+   *
+   * Left and Right are the *only* subclasses of Or<T1,T2>: the constructor of
+   * Or is private, so no other class can extend it, and Left and Right are
+   * final. Just like the two cases of the OCaml definition below, there is no
+   * third kind of evidence for T1 v T2.
    *
    * Below is some other technical stuff for people interested in functional
    * programming. [You don't need to understand the rest of the comment.]
@@ -142,42 +221,184 @@ public class Curry_Howard_Isomorphism {
    * Or<T1, T2> = Left<T1, T2> + Right<T1, T2>
    * 
    **/
-  public static class Or<T1, T2> {
-    public Or() {
+  public static abstract class Or<T1, T2> {
+    private Or() {
     }
 
-    public T1 left() {
-      throw new RuntimeException();
-    }
+    /**
+     * Thrown by left() on Right evidence and by right() on Left evidence.
+     *
+     * Asking the wrong side for its evidence is an ordinary thing for code
+     * that probes an Or, so the two possible failures are created once and
+     * carry no stack trace: throwing them costs no allocation and no stack
+     * walk. Use isLeft(), leftOrElse()/rightOrElse() or foldLeft()/foldRight()
+     * to ask without throwing at all.
+     **/
+    public static final class WrongSideException extends RuntimeException {
+      private static final long serialVersionUID = 1L;
+
+      static final WrongSideException NOT_LEFT = new WrongSideException(
+          "left() called on Right evidence");
+      static final WrongSideException NOT_RIGHT = new WrongSideException(
+          "right() called on Left evidence");
 
-    public T2 right() {
-      throw new RuntimeException();
+      private WrongSideException(final String message) {
+        super(message, null, false, false);
+      }
     }
 
-    public static class Left<T1, T2> extends Or<T1, T2> {
+    /**
+     * true if this is evidence of T1 (a Left), false if it is evidence of T2
+     * (a Right).
+     **/
+    public abstract boolean isLeft();
+
+    /**
+     * The evidence of T1 held by a Left; throws WrongSideException on a Right.
+     **/
+    public abstract T1 left();
+
+    /**
+     * The evidence of T2 held by a Right; throws WrongSideException on a Left.
+     **/
+    public abstract T2 right();
+
+    /**
+     * The evidence of T1 held by a Left, or 'other' if this is a Right.
+     **/
+    public abstract T1 leftOrElse(final T1 other);
+
+    /**
+     * The evidence of T2 held by a Right, or 'other' if this is a Left.
+     **/
+    public abstract T2 rightOrElse(final T2 other);
+
+    /**
+     * Like or_e with only the T1 |- T3 subproof: a Left activates d1, a Right
+     * produces the default 'ifRight' instead.
+     **/
+    public abstract <T3> T3 foldLeft(final Deduction<T1, T3> d1,
+        final T3 ifRight);
+
+    /**
+     * Like or_e with only the T2 |- T3 subproof: a Right activates d2, a Left
+     * produces the default 'ifLeft' instead.
+     **/
+    public abstract <T3> T3 foldRight(final Deduction<T2, T3> d2,
+        final T3 ifLeft);
+
+    public static final class Left<T1, T2> extends Or<T1, T2> {
       private final T1 v;
 
       public Left(final T1 v1) {
         v = v1;
+        final Rule_Hooks.Listener l = Rule_Hooks.listener;
+        if (l != null) {
+          l.or_i1(this, v1);
+        }
+      }
+
+      @Override
+      public boolean isLeft() {
+        return true;
       }
 
       @Override
       public T1 left() {
         return this.v;
       }
+
+      @Override
+      public T2 right() {
+        throw WrongSideException.NOT_RIGHT;
+      }
+
+      @Override
+      public T1 leftOrElse(final T1 other) {
+        return this.v;
+      }
+
+      @Override
+      public T2 rightOrElse(final T2 other) {
+        return other;
+      }
+
+      @Override
+      public <T3> T3 foldLeft(final Deduction<T1, T3> d1, final T3 ifRight) {
+        return d1.apply(this.v);
+      }
+
+      @Override
+      public <T3> T3 foldRight(final Deduction<T2, T3> d2, final T3 ifLeft) {
+        return ifLeft;
+      }
+
+      // "ve" for Left evidence: T1 is true, so activate the T1 |- T3 subproof
+      @Override
+      public <T3> T3 or_e(final Deduction<T1, T3> d1, final Deduction<T2, T3> d2) {
+        final Rule_Hooks.Listener l = Rule_Hooks.listener;
+        if (l != null) {
+          return Rule_Hooks.or_e(l, this, true, this.v, d1, d2);
+        }
+        return d1.apply(this.v);
+      }
     }
 
-    public static class Right<T1, T2> extends Or<T1, T2> {
+    public static final class Right<T1, T2> extends Or<T1, T2> {
       private final T2 v;
 
       public Right(final T2 v2) {
         v = v2;
+        final Rule_Hooks.Listener l = Rule_Hooks.listener;
+        if (l != null) {
+          l.or_i2(this, v2);
+        }
+      }
+
+      @Override
+      public boolean isLeft() {
+        return false;
+      }
+
+      @Override
+      public T1 left() {
+        throw WrongSideException.NOT_LEFT;
       }
 
       @Override
       public T2 right() {
         return this.v;
       }
+
+      @Override
+      public T1 leftOrElse(final T1 other) {
+        return other;
+      }
+
+      @Override
+      public T2 rightOrElse(final T2 other) {
+        return this.v;
+      }
+
+      @Override
+      public <T3> T3 foldLeft(final Deduction<T1, T3> d1, final T3 ifRight) {
+        return ifRight;
+      }
+
+      @Override
+      public <T3> T3 foldRight(final Deduction<T2, T3> d2, final T3 ifLeft) {
+        return d2.apply(this.v);
+      }
+
+      // "ve" for Right evidence: T2 is true, so activate the T2 |- T3 subproof
+      @Override
+      public <T3> T3 or_e(final Deduction<T1, T3> d1, final Deduction<T2, T3> d2) {
+        final Rule_Hooks.Listener l = Rule_Hooks.listener;
+        if (l != null) {
+          return Rule_Hooks.or_e(l, this, false, this.v, d2, d1);
+        }
+        return d2.apply(this.v);
+      }
     }
 
     /**
@@ -256,9 +477,9 @@ public class Curry_Howard_Isomorphism {
      * 
      * ...and produces a value of type T3.
      *
-     * 'or_e' works by checking to see whether the class of 'this' is either
-     * Left or Right, and then it calls either the corresponding "getter" method
-     * left() or right().
+     * 'or_e' is implemented separately by each of the two subclasses Left and
+     * Right, so calling it on 'this' dispatches straight to the right case --
+     * no "instance of" check and no call to a "getter" method is needed.
      * 
      * If the class of "this" instance is "Left", then the subproof that proves
      * T3 given T1 is activated to return an object of type T3.
@@ -266,12 +487,18 @@ public class Curry_Howard_Isomorphism {
      * If the class of "this" instance is "Right" then the subproof that proves
      * T3 given T2 is activated to return an object of type T3.
      **/
-    public <T3> T3 or_e(final Deduction<T1, T3> d1, final Deduction<T2, T3> d2) {
-      if (this instanceof Left) {
-        return d1.apply(this.left());
-      } else {
-        return d2.apply(this.right());
-      }
+    public abstract <T3> T3 or_e(final Deduction<T1, T3> d1,
+        final Deduction<T2, T3> d2);
+
+    /**
+     * "ve" on every T1 v T2 evidence of 'in', with the T3 evidence of in[i]
+     * going to out[i]. All the Left evidence is run through d1 first, then
+     * all the Right evidence through d2; see Bulk_Evidence.
+     **/
+    public static <T1, T2, T3> void or_eAll(final Or<T1, T2>[] in,
+        final Deduction<T1, T3> d1, final Deduction<T2, T3> d2,
+        final T3[] out) {
+      Bulk_Evidence.or_eAll(in, d1, d2, out);
     }
   }
 
@@ -292,37 +519,93 @@ public class Curry_Howard_Isomorphism {
    * We can think of such a sub-proof as a method that, if given evidence for
    * T1, it can produce evidence for T2.
    *
-   * We create a special class to wrap this type of method. The class is
-   * Deduction<T1,T2> and objects of the class have a method called
+   * We create a special interface to wrap this type of method. The interface
+   * is Deduction<T1,T2> and objects implementing it have a method called
    * 'deduction_step' that essentially represents a proof of the sequent T1 |-
    * T2.
    * 
    * In the programming world, whenever we want to create a proof of T1 |- T2,
-   * we create an instance of Deduction<T1,T2> and override the deduction_step
-   * method with a method representing a proof of T1 |- T2.
+   * we create an instance of Deduction<T1,T2> with a deduction_step method
+   * representing a proof of T1 |- T2. Since deduction_step is the only method
+   * that has to be written, the easiest way to do that is a lambda:
+   *
+   * <pre>
+   *   Deduction<Q, R> qDEDUCEr = (Q q) -> { ... return r; };
+   * </pre>
+   *
+   * (an anonymous class that overrides deduction_step works just as well).
    *
    * We also create a method called "apply", which intuitively "activates" the
    * subproof to by giving it evidence for T1 which will cause it to produce
    * evidence for T2.
+   *
+   * A sub-proof of T1 |- T2 is just a function from T1 evidence to T2
+   * evidence, so Deduction<T1,T2> is a java.util.function.Function<T1,T2>:
+   * any Function can be turned into a Deduction with Deduction.of, and two
+   * sub-proofs T1 |- T2 and T2 |- T3 can be chained into a sub-proof of
+   * T1 |- T3 with andThen (or compose, in the other order).
    **/
 
-  public static abstract class Deduction<T1, T2> {
+  @FunctionalInterface
+  public interface Deduction<T1, T2> extends Function<T1, T2> {
 
     /**
-     * Override this method to represent a subproof that takes evidence of an
+     * Implement this method to represent a subproof that takes evidence of an
      * assumption T1 and produces evidences for T2.
      * 
      **/
-    public abstract T2 deduction_step(T1 assumptions);
+    T2 deduction_step(T1 assumptions);
 
     /**
      * Use this method to "activate" a subproof -- if evidence of an assumption
      * T1 is given, it will produce evidences for T2.
      * 
      **/
-    public T2 apply(final T1 v1) {
+    @Override
+    default T2 apply(final T1 v1) {
       return deduction_step(v1);
     }
+
+    /**
+     * Like apply, but returns the work as a Trampoline (see Trampolining).
+     * An ordinary subproof simply runs and returns its evidence as one step;
+     * a Trampolining.Step returns its steps without running them.
+     **/
+    default Trampoline<T2> applyDeferred(final T1 v1) {
+      return Trampoline.done(apply(v1));
+    }
+
+    /**
+     * Chains this subproof of T1 |- T2 with a subproof of T2 |- V, giving a
+     * subproof of T1 |- V.
+     **/
+    @Override
+    default <V> Deduction<T1, V> andThen(
+        final Function<? super T2, ? extends V> after) {
+      return (T1 v1) -> after.apply(apply(v1));
+    }
+
+    /**
+     * Chains a subproof of V |- T1 with this subproof of T1 |- T2, giving a
+     * subproof of V |- T2.
+     **/
+    @Override
+    default <V> Deduction<V, T2> compose(
+        final Function<? super V, ? extends T1> before) {
+      return (V v) -> apply(before.apply(v));
+    }
+
+    /**
+     * Views any Function from T1 to T2 as a subproof of T1 |- T2.
+     **/
+    @SuppressWarnings("unchecked")
+    static <T1, T2> Deduction<T1, T2> of(
+        final Function<? super T1, ? extends T2> f) {
+      if (f instanceof Deduction) {
+        return (Deduction<T1, T2>) f;
+      }
+      return (T1 v1) -> f.apply(v1);
+    }
   }
 
   /*****************************************************************/
@@ -363,6 +646,10 @@ public class Curry_Howard_Isomorphism {
      **/
     public Imply(final Deduction<T1, T2> d) {
       this.deduction = d;
+      final Rule_Hooks.Listener l = Rule_Hooks.listener;
+      if (l != null) {
+        l.imply_i(this, d);
+      }
     }
 
     /**
@@ -395,8 +682,92 @@ public class Curry_Howard_Isomorphism {
      * Imply<T1, T2>) to this method.
      **/
     public T2 imply_e(final T1 v) {
+      final Rule_Hooks.Listener l = Rule_Hooks.listener;
+      if (l != null) {
+        return Rule_Hooks.imply_e(l, this, this.deduction, v);
+      }
       return this.deduction.apply(v);
     }
+
+    /**
+     * The same "->e" step as imply_e, but returned as a Trampoline instead of
+     * being run right away: if the deduction is a Trampolining.Step, its
+     * steps are handed back to the caller's trampoline loop, which keeps long
+     * chains of ->e from using one Java stack frame per step. See
+     * Trampolining. Rule_Hooks listeners see the step enter now and exit
+     * when the trampoline gets to its conclusion.
+     **/
+    public Trampoline<T2> imply_eDeferred(final T1 v) {
+      final Rule_Hooks.Listener l = Rule_Hooks.listener;
+      if (l != null) {
+        return Rule_Hooks.imply_eDeferred(l, this, this.deduction, v);
+      }
+      return this.deduction.applyDeferred(v);
+    }
+
+    /**
+     * The same "->e" step as imply_e, run on another thread (a virtual
+     * thread where the JVM has them): the T2 evidence arrives in the
+     * returned future, so ->e steps that do not need each other's evidence
+     * (such as premises that are slow "library proofs") can run at the same
+     * time. See Async_Evidence.
+     **/
+    public CompletableFuture<T2> imply_eAsync(final T1 v) {
+      return imply_eAsync(v, Async_Evidence.executor());
+    }
+
+    /** imply_eAsync, run by 'executor'. */
+    public CompletableFuture<T2> imply_eAsync(final T1 v,
+        final Executor executor) {
+      return CompletableFuture.supplyAsync(() -> imply_e(v), executor);
+    }
+
+    /**
+     * "->e" on every T1 evidence of 'in', in order, with the T2 evidence of
+     * in[i] going to out[i]. One call for the whole array instead of one
+     * imply_e per element; see Bulk_Evidence.
+     **/
+    public void imply_eAll(final T1[] in, final T2[] out) {
+      Bulk_Evidence.imply_eAll(this, in, out);
+    }
+
+    /** "->e" on every T1 evidence of 'in', in order. */
+    public List<T2> imply_eAll(final Iterable<? extends T1> in) {
+      return Bulk_Evidence.imply_eAll(this, in);
+    }
+
+    /**
+     * "->e" on every T1 evidence of 'in', as a stream that splits wherever
+     * 'in' does, so a parallel stream stays parallel.
+     **/
+    public Stream<T2> imply_eAll(final Stream<? extends T1> in) {
+      return Bulk_Evidence.imply_eAll(this, in);
+    }
+
+    Deduction<T1, T2> deduction() {
+      return this.deduction;
+    }
+
+    /**
+     * Evidence for T1 -> T2 like new Imply<T1, T2>(d), except that ->e
+     * remembers the T2 evidence produced for (up to about maxEntries)
+     * recently used T1 evidence, compared with equals(), instead of running
+     * d again. Only for deductions that always give the same answer for the
+     * same evidence. See Memoization.
+     **/
+    public static <T1, T2> Memoization.Memoized<T1, T2> memoized(
+        final Deduction<T1, T2> d, final int maxEntries) {
+      return new Memoization.Memoized<T1, T2>(d, maxEntries, false);
+    }
+
+    /**
+     * Like memoized, but T1 evidence is compared by identity (==), for
+     * evidence classes such as P, Q and R that do not override equals().
+     **/
+    public static <T1, T2> Memoization.Memoized<T1, T2> memoizedByIdentity(
+        final Deduction<T1, T2> d, final int maxEntries) {
+      return new Memoization.Memoized<T1, T2>(d, maxEntries, true);
+    }
   }
 
   /**
@@ -416,11 +787,11 @@ public class Curry_Howard_Isomorphism {
    *
    * Evidence for T1 v T2 is an object with a tag indicating that which of T1 or
    * T2 is true. In our case, the "tag" is represented by the run-time type of a
-   * T1 v T2 object (which is either a Left object or a Right object). We check
-   * the tag by performing an "instance of" operation on the T1 v T2 (i.e.,
-   * Or<T1,T2>) object. If the tag indicates that T1 is true, then the evidence
-   * object for T1 v T2 includes evidence of T1. If T2 is true, then the
-   * evidence object for T1 v T2 includes evidence of T2.
+   * T1 v T2 object (which is either a Left object or a Right object). The tag
+   * is checked by calling or_e on the T1 v T2 (i.e., Or<T1,T2>) object, which
+   * runs the Left or the Right version of or_e. If the tag indicates that T1
+   * is true, then the evidence object for T1 v T2 includes evidence of T1. If
+   * T2 is true, then the evidence object for T1 v T2 includes evidence of T2.
    *
    * Evidence for T1 -> T2 is an object that contains a method that can
    * transform evidence of T1 into evidence of T2.
@@ -496,6 +867,23 @@ public class Curry_Howard_Isomorphism {
     or_example(q);
   }
 
+  @Test
+  public void testOrQueries() {
+    final Q q = new Q();
+    final Or<Or<P, Q>, R> pORqORr = or_example(q);
+    // the evidence is Left(Right(q)): the "p v q" side, and within it the "q" side
+    assertTrue(pORqORr.isLeft());
+    assertNull(pORqORr.rightOrElse(null));
+    assertSame(q, pORqORr.left().rightOrElse(null));
+    assertFalse(pORqORr.left().foldLeft((P p) -> true, false));
+    try {
+      pORqORr.right();
+      fail();
+    } catch (Or.WrongSideException e) {
+      assertEquals(0, e.getStackTrace().length);
+    }
+  }
+
   /**
    * <pre>
    * ----------- Proofs -------------
@@ -534,34 +922,37 @@ public class Curry_Howard_Isomorphism {
     //
     //  We will not bother to document the details for our mocked up library proofs
     //  in the rest of the examples
-    final Imply<P, Q> pIMPLYq = new Imply<P, Q>(new Deduction<P, Q>() {
-
-      @Override
-      public Q deduction_step(P assumptions) {
-        // by "magic", construct some Q evidence -- we do this just to simulate the output
-        // of a library proof that we use appropriate proof steps to get Q evidence from P 
-        // evidence.
-        final Q q = new Q();
-        return q;
-      }
+    final Imply<P, Q> pIMPLYq = new Imply<P, Q>((P assumptions) -> {
+      // by "magic", construct some Q evidence -- we do this just to simulate the output
+      // of a library proof that we use appropriate proof steps to get Q evidence from P 
+      // evidence.
+      final Q q = new Q();
+      return q;
     });
 
     final Imply<And<P, Q>, R> pqIMPLYr = new Imply<And<P, Q>, R>(
-      new Deduction<And<P, Q>, R>() {
-
-      @Override
-      public R deduction_step(And<P, Q> assumptions) {
-         // by "magic", construct some R evidence -- we do this just to simulate the output
-         // of a library proof that we use appropriate proof steps to get R evidence from P ^ Q evidence
-         // evidence.
-         final R r = new R();
-         return r;
-        }
-
+      (And<P, Q> assumptions) -> {
+        // by "magic", construct some R evidence -- we do this just to simulate the output
+        // of a library proof that we use appropriate proof steps to get R evidence from P ^ Q evidence
+        // evidence.
+        final R r = new R();
+        return r;
       });
     example1(pqIMPLYr, pIMPLYq, p);
   }
 
+  @Test
+  public void testDeductionComposition() {
+    // two library proofs P |- Q and Q |- R, chained into a proof of P |- R
+    final Deduction<P, Q> pDEDUCEq = (P p) -> new Q();
+    final Deduction<Q, R> qDEDUCEr = (Q q) -> new R();
+    final Imply<P, R> pIMPLYr = new Imply<P, R>(pDEDUCEq.andThen(qDEDUCEr));
+    assertTrue(pIMPLYr.imply_e(new P()) instanceof R);
+    // ...and any java.util.function.Function is a Deduction
+    final Function<R, P> rTOp = (R r) -> new P();
+    assertTrue(Deduction.of(rTOp).compose(qDEDUCEr).apply(new Q()) instanceof P);
+  }
+
   /**
    * <pre>
    * ----------- Proofs -------------
@@ -585,14 +976,9 @@ public class Curry_Howard_Isomorphism {
   public void testExample11() {
     final Q q = new Q();
     final Imply<Or<P, Q>, R> pORqIMPLYr = new Imply<Or<P, Q>, R>(
-        new Deduction<Or<P, Q>, R>() {
-
-          @Override
-          public R deduction_step(Or<P, Q> assumptions) {
-            final R r = new R();
-            return r;
-          }
-
+        (Or<P, Q> assumptions) -> {
+          final R r = new R();
+          return r;
         });
     example11(pORqIMPLYr, q);
   }
@@ -614,13 +1000,11 @@ public class Curry_Howard_Isomorphism {
       final Imply<And<Q, P>, R> qpIMPLYr) {
     // premise: P p                                            line 1
     // premise: Imply<And<Q, P>, R> qpIMPLYr                   line 2
-    Deduction<Q, R> qDEDUCEr = new Deduction<Q, R>() {
-      public R deduction_step(Q q) {
-        // assumption: Q q                                     line 3
-        And<Q, P> qANDp = new And<Q, P>(q, p); //              line 4 ^i  applied to Q and P
-        R r = qpIMPLYr.imply_e(qANDp); //                      line 5 ->e applied to (Q ^ P) -> R and Q ^ P
-        return r;
-      }
+    Deduction<Q, R> qDEDUCEr = (Q q) -> {
+      // assumption: Q q                                       line 3
+      And<Q, P> qANDp = new And<Q, P>(q, p); //                line 4 ^i  applied to Q and P
+      R r = qpIMPLYr.imply_e(qANDp); //                        line 5 ->e applied to (Q ^ P) -> R and Q ^ P
+      return r;
     };
     Imply<Q, R> qIMPLYr = new Imply<Q, R>(qDEDUCEr); //        line 6 ->i applied to deduction (... Q assume ... R)
 
@@ -631,13 +1015,9 @@ public class Curry_Howard_Isomorphism {
   public void testExample12() {
     final P p = new P();
     final Imply<And<Q, P>, R> qpIMPLYr = new Imply<And<Q, P>, R>(
-        new Deduction<And<Q, P>, R>() {
-
-          @Override
-          public R deduction_step(And<Q, P> assumptions) {
-            final R r = new R();
-            return r;
-          }
+        (And<Q, P> assumptions) -> {
+          final R r = new R();
+          return r;
         });
     example12(p, qpIMPLYr);
   }
@@ -665,30 +1045,24 @@ public class Curry_Howard_Isomorphism {
       final Imply<Q, R> qIMPLYr) {
     // premise: Imply<P, R> pIMPLYr                                     line 1 
     // premise: Imply<Q, R> qIMPLYr                                     line 2
-    Deduction<Or<P, Q>, R> pqDEDUCEr = new Deduction<Or<P, Q>, R>() {
-      public R deduction_step(Or<P, Q> pORq) {
-        // assumption: P v Q                                            line 3
-        Deduction<P, R> pDEDUCEr = new Deduction<P, R>() {
-          public R deduction_step(P p) {
-            // assumption: P p                                          line 4
-            R r = pIMPLYr.imply_e(p); //                                line 5 ->e applied to P -> R and P
-            return r;
-          }
-        };
-
-        Deduction<Q, R> qDEDUCEr = new Deduction<Q, R>() {
-          public R deduction_step(Q q) {
-            // assumption: Q q                                          line 6
-            R r = qIMPLYr.imply_e(q); //                                line 7 ->e applied to Q -> R and Q
-            return r;
-          }
-        };
-
-        R r = pORq.or_e(pDEDUCEr, qDEDUCEr); //                         line 8 ve  applied to P v Q, and
-        //                                                                deduction (... P assume ... R), and 
-        //                                                                deduction (... Q assume ... R)
+    Deduction<Or<P, Q>, R> pqDEDUCEr = (Or<P, Q> pORq) -> {
+      // assumption: P v Q                                              line 3
+      Deduction<P, R> pDEDUCEr = (P p) -> {
+        // assumption: P p                                              line 4
+        R r = pIMPLYr.imply_e(p); //                                    line 5 ->e applied to P -> R and P
         return r;
-      }
+      };
+
+      Deduction<Q, R> qDEDUCEr = (Q q) -> {
+        // assumption: Q q                                              line 6
+        R r = qIMPLYr.imply_e(q); //                                    line 7 ->e applied to Q -> R and Q
+        return r;
+      };
+
+      R r = pORq.or_e(pDEDUCEr, qDEDUCEr); //                           line 8 ve  applied to P v Q, and
+      //                                                                  deduction (... P assume ... R), and 
+      //                                                                  deduction (... Q assume ... R)
+      return r;
     };
 
     Imply<Or<P, Q>, R> pqIMPLYr = new Imply<Or<P, Q>, R>(pqDEDUCEr); // line 9 ->i applied to deduction (... P V Q assume ... R)
@@ -697,21 +1071,13 @@ public class Curry_Howard_Isomorphism {
 
   @Test
   public void testExample2() {
-    final Imply<P, R> pIMPLYr = new Imply<P, R>(new Deduction<P, R>() {
-
-      @Override
-      public R deduction_step(P assumptions) {
-        final R r = new R();
-        return r;
-      }
+    final Imply<P, R> pIMPLYr = new Imply<P, R>((P assumptions) -> {
+      final R r = new R();
+      return r;
     });
-    final Imply<Q, R> qIMPLYr = new Imply<Q, R>(new Deduction<Q, R>() {
-
-      @Override
-      public R deduction_step(Q assumptions) {
-        final R r = new R();
-        return r;
-      }
+    final Imply<Q, R> qIMPLYr = new Imply<Q, R>((Q assumptions) -> {
+      final R r = new R();
+      return r;
     });
     example2(pIMPLYr, qIMPLYr);
   }
@@ -729,12 +1095,10 @@ public class Curry_Howard_Isomorphism {
    **/
   public Imply<P, And<Q, P>> example3(final Q q) {
     // premise: Q q                                                       line 1
-    Deduction<P, And<Q, P>> pDEDUCEqp = new Deduction<P, And<Q, P>>() {
-      public And<Q, P> deduction_step(P p) {
-        // assumption: P p                                                line 2
-        And<Q, P> qANDp = new And<Q, P>(q, p); //                         line 3 ^i  applied to Q and P
-        return qANDp;
-      }
+    Deduction<P, And<Q, P>> pDEDUCEqp = (P p) -> {
+      // assumption: P p                                                  line 2
+      And<Q, P> qANDp = new And<Q, P>(q, p); //                           line 3 ^i  applied to Q and P
+      return qANDp;
     };
 
     Imply<P, And<Q, P>> pIMPLYqp = new Imply<P, And<Q, P>>(pDEDUCEqp); // line 4 ->i applied to deduction (... P assume ... Q ^ P)
@@ -754,33 +1118,29 @@ public class Curry_Howard_Isomorphism {
    * 
    * 1. p -> (q -> r)     premise
    * ... 2. (p -> q)      assumption    ...apply the ->i tactic
-   * 		... 3. p         assumption
-   * 	... 4. q -> r    ->e 1,3
-   * 	... 5. q         ->e 2,3
-   * 	... 6. r         ->e 4,5
+   * ... ... 3. p         assumption
+   * ... ... 4. q -> r    ->e 1,3
+   * ... ... 5. q         ->e 2,3
+   * ... ... 6. r         ->e 4,5
    * ... 7. p -> r        ->i 3-6
-   * 8. (p -> q) -> (p -> r)
+   * 8. (p -> q) -> (p -> r)    ->i 2-7
    * </pre>
    **/
   public Imply<Imply<P, Q>, Imply<P, R>> example4(
       final Imply<P, Imply<Q, R>> pIMPLYqir) {
     // premise: Imply<P, Imply<Q, R>> pIMPLYqir                                 line 1
-    Deduction<Imply<P, Q>, Imply<P, R>> piqDEDUCEpir = new Deduction<Imply<P, Q>, Imply<P, R>>() {
-      public Imply<P, R> deduction_step(final Imply<P, Q> pIMPLYq) {
-        // assumption: P -> Q                                                   line 2
-        Deduction<P, R> pDEDUCEr = new Deduction<P, R>() {
-          public R deduction_step(P p) {
-            // assumption: P p                                                  line 3
-            Imply<Q, R> qIMPLYr = pIMPLYqir.imply_e(p); //                      line 4 ->e applied to P -> (Q -> R) and P
-            Q q = pIMPLYq.imply_e(p); //                                        line 5 ->e applied to P -> Q P
-            R r = qIMPLYr.imply_e(q); //                                        line 6 ->e applied to Q -> R and Q
-            return r;
-          }
-        };
-        // Imply introduction
-        Imply<P, R> pIMPLYr = new Imply<P, R>(pDEDUCEr); //                     line 7 ->i applied to deduction (... P assume ... R)
-        return pIMPLYr;
-      }
+    Deduction<Imply<P, Q>, Imply<P, R>> piqDEDUCEpir = (final Imply<P, Q> pIMPLYq) -> {
+      // assumption: P -> Q                                                     line 2
+      Deduction<P, R> pDEDUCEr = (P p) -> {
+        // assumption: P p                                                      line 3
+        Imply<Q, R> qIMPLYr = pIMPLYqir.imply_e(p); //                          line 4 ->e applied to P -> (Q -> R) and P
+        Q q = pIMPLYq.imply_e(p); //                                            line 5 ->e applied to P -> Q P
+        R r = qIMPLYr.imply_e(q); //                                            line 6 ->e applied to Q -> R and Q
+        return r;
+      };
+      // Imply introduction
+      Imply<P, R> pIMPLYr = new Imply<P, R>(pDEDUCEr); //                       line 7 ->i applied to deduction (... P assume ... R)
+      return pIMPLYr;
     };
 
     Imply<Imply<P, Q>, Imply<P, R>> piqIMPLYpir = new Imply<Imply<P, Q>, Imply<P, R>>(
@@ -0,0 +1,629 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Proof_Terms.Rule;
+import curry_howard.Proof_Terms.Term;
+
+public class Evidence_Codec {
+  /**
+   * Evidence and proofs on disk.
+   *
+   * And, Or and proof Terms are trees (or, when parts are shared, graphs)
+   * of small objects. encode() writes one as bytes: a string table with
+   * each name once, then one node per object, children before parents,
+   * each node a tag byte followed by either the index of its name in the
+   * table or, for each child, how many bytes back the child starts, as a
+   * varint (7 bits a byte, so a nearby child costs one byte). A part that
+   * is shared is written once and pointed to from every place it is used.
+   *
+   * <pre>
+   *   "CHEV" version root            header (root: an int, from the nodes)
+   *   count (length utf-8)*          string table
+   *   LEAF name                      evidence of an atom, such as a P
+   *   AND back1 back2                an And
+   *   LEFT back, RIGHT back          an Or.Left, an Or.Right
+   *   NULL                           null evidence
+   *   TERM+rule name | back*         a Proof_Terms.Term
+   * </pre>
+   *
+   * A View reads such bytes where they are, such as a memory-mapped file
+   * (map()): opening one reads only the header and the string table, and
+   * nodes are then visited by position (kind(), child(), name()) without
+   * building any objects. read() and readTerm() build the objects of just
+   * the part asked for.
+   *
+   * Evidence of an atom is a Java object of the program (a P, a Q, ...);
+   * a Leaves names it for writing and makes it again for reading. The
+   * default, CLASSES, writes the class name and reads by calling the public
+   * no-argument constructor, which is what P, Q and R have. Imply evidence
+   * is a program and cannot be written.
+   **/
+
+  /** How evidence of atoms is named in the file, and made again. */
+  public interface Leaves {
+    String name(Object leaf);
+
+    Object leaf(String name);
+  }
+
+  /** Leaves by class name, made with the public no-argument constructor. */
+  public static final Leaves CLASSES = new Leaves() {
+    @Override
+    public String name(final Object leaf) {
+      return leaf.getClass().getName();
+    }
+
+    @Override
+    public Object leaf(final String name) {
+      try {
+        return Class.forName(name).getConstructor().newInstance();
+      } catch (final ReflectiveOperationException e) {
+        throw new IllegalArgumentException("cannot make a " + name, e);
+      }
+    }
+  };
+
+  public enum Kind {
+    LEAF, AND, LEFT, RIGHT, NULL, TERM
+  }
+
+  private static final byte[] MAGIC = { 'C', 'H', 'E', 'V' };
+  private static final int VERSION = 1;
+  private static final int HEADER = MAGIC.length + 1 + 4;
+
+  private static final int LEAF = 0;
+  private static final int AND = 1;
+  private static final int LEFT = 2;
+  private static final int RIGHT = 3;
+  private static final int NULL = 4;
+  private static final int TERM = 16;
+
+  /** The bytes of 'evidence' (And, Or and leaves), leaves named by CLASSES. */
+  public static byte[] encode(final Object evidence) {
+    return encode(evidence, CLASSES);
+  }
+
+  public static byte[] encode(final Object evidence, final Leaves leaves) {
+    final Encoder e = new Encoder(leaves);
+    return e.finish(e.evidence(evidence));
+  }
+
+  /** The bytes of a proof Term. */
+  public static byte[] encode(final Term term) {
+    final Encoder e = new Encoder(CLASSES);
+    return e.finish(e.term(term));
+  }
+
+  public static void write(final byte[] encoded, final Path file)
+      throws IOException {
+    try (OutputStream out = Files.newOutputStream(file)) {
+      out.write(encoded);
+    }
+  }
+
+  /** A View of 'file', memory-mapped; nothing is read until asked for. */
+  public static View map(final Path file) throws IOException {
+    try (FileChannel c = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new View(c.map(FileChannel.MapMode.READ_ONLY, 0, c.size()));
+    }
+  }
+
+  /** A View of encoded bytes. */
+  public static View view(final ByteBuffer bytes) {
+    return new View(bytes);
+  }
+
+  /*****************************************************************/
+  /** Writing */
+  /*****************************************************************/
+
+  private static final class Encoder {
+    private final Leaves leaves;
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+    private final Bytes strings = new Bytes();
+    private final Bytes nodes = new Bytes();
+    private final IdentityHashMap<Object, Integer> written = new IdentityHashMap<Object, Integer>();
+    private Integer nullNode;
+
+    Encoder(final Leaves leaves) {
+      this.leaves = leaves;
+    }
+
+    /**
+     * Writes 'root' and everything under it, children first, without
+     * recursion (evidence can be nested very deeply); returns its position.
+     **/
+    int evidence(final Object root) {
+      final ArrayDeque<Object> todo = new ArrayDeque<Object>();
+      todo.push(root == null ? Kind.NULL : root);
+      while (!todo.isEmpty()) {
+        final Object v = todo.peek();
+        if (v == Kind.NULL) {
+          todo.pop();
+          if (this.nullNode == null) {
+            this.nullNode = this.nodes.size;
+            this.nodes.add(NULL);
+          }
+          continue;
+        }
+        if (this.written.containsKey(v)) {
+          todo.pop();
+          continue;
+        }
+        if (v instanceof Imply) {
+          throw new IllegalArgumentException("Imply evidence cannot be written");
+        }
+        if (v instanceof And) {
+          final And<?, ?> and = (And<?, ?>) v;
+          final Object a = orNull(and.first());
+          final Object b = orNull(and.second());
+          if (pending(a, todo) | pending(b, todo)) {
+            continue;
+          }
+          todo.pop();
+          final int at = this.nodes.size;
+          this.nodes.add(AND);
+          this.nodes.varint(at - position(a));
+          this.nodes.varint(at - position(b));
+          this.written.put(v, at);
+        } else if (v instanceof Or) {
+          final Or<?, ?> or = (Or<?, ?>) v;
+          final Object a = orNull(or.isLeft() ? or.left() : or.right());
+          if (pending(a, todo)) {
+            continue;
+          }
+          todo.pop();
+          final int at = this.nodes.size;
+          this.nodes.add(or.isLeft() ? LEFT : RIGHT);
+          this.nodes.varint(at - position(a));
+          this.written.put(v, at);
+        } else {
+          todo.pop();
+          final int at = this.nodes.size;
+          this.nodes.add(LEAF);
+          this.nodes.varint(name(this.leaves.name(v)));
+          this.written.put(v, at);
+        }
+      }
+      return position(root == null ? Kind.NULL : root);
+    }
+
+    int term(final Term root) {
+      final ArrayDeque<Term> todo = new ArrayDeque<Term>();
+      todo.push(root);
+      while (!todo.isEmpty()) {
+        final Term t = todo.peek();
+        if (this.written.containsKey(t)) {
+          todo.pop();
+          continue;
+        }
+        final int arity = t.rule().arity;
+        boolean ready = true;
+        for (int i = arity - 1; i >= 0; i--) {
+          if (!this.written.containsKey(t.child(i))) {
+            todo.push(t.child(i));
+            ready = false;
+          }
+        }
+        if (!ready) {
+          continue;
+        }
+        todo.pop();
+        final int at = this.nodes.size;
+        this.nodes.add(TERM + t.rule().ordinal());
+        if (arity == 0) {
+          this.nodes.varint(name(t.name()));
+        }
+        for (int i = 0; i < arity; i++) {
+          this.nodes.varint(at - this.written.get(t.child(i)));
+        }
+        this.written.put(t, at);
+      }
+      return this.written.get(root);
+    }
+
+    private static Object orNull(final Object v) {
+      return v == null ? Kind.NULL : v;
+    }
+
+    /** Queues 'v' unless it is written already; true if it was queued. */
+    private boolean pending(final Object v, final ArrayDeque<Object> todo) {
+      if (v == Kind.NULL ? this.nullNode != null : this.written.containsKey(v)) {
+        return false;
+      }
+      todo.push(v);
+      return true;
+    }
+
+    private int position(final Object v) {
+      return v == Kind.NULL ? this.nullNode : this.written.get(v);
+    }
+
+    private int name(final String s) {
+      Integer i = this.names.get(s);
+      if (i == null) {
+        i = this.names.size();
+        this.names.put(s, i);
+        final byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        this.strings.varint(utf8.length);
+        this.strings.add(utf8);
+      }
+      return i;
+    }
+
+    byte[] finish(final int root) {
+      final Bytes out = new Bytes();
+      out.add(MAGIC);
+      out.add(VERSION);
+      out.add(root >>> 24);
+      out.add(root >>> 16);
+      out.add(root >>> 8);
+      out.add(root);
+      out.varint(this.names.size());
+      out.add(this.strings.toArray());
+      out.add(this.nodes.toArray());
+      return out.toArray();
+    }
+  }
+
+  /** A growable byte array. */
+  private static final class Bytes {
+    byte[] a = new byte[256];
+    int size;
+
+    void add(final int b) {
+      if (this.size == this.a.length) {
+        this.a = Arrays.copyOf(this.a, this.size * 2);
+      }
+      this.a[this.size++] = (byte) b;
+    }
+
+    void add(final byte[] b) {
+      if (this.size + b.length > this.a.length) {
+        this.a = Arrays.copyOf(this.a, Math.max(this.size * 2,
+            this.size + b.length));
+      }
+      System.arraycopy(b, 0, this.a, this.size, b.length);
+      this.size += b.length;
+    }
+
+    void varint(int v) {
+      while ((v & ~0x7f) != 0) {
+        add((v & 0x7f) | 0x80);
+        v >>>= 7;
+      }
+      add(v);
+    }
+
+    byte[] toArray() {
+      return Arrays.copyOf(this.a, this.size);
+    }
+  }
+
+  /*****************************************************************/
+  /** Reading */
+  /*****************************************************************/
+
+  /**
+   * Encoded evidence, read in place. Nodes are named by their position
+   * (an int); root() is where to start.
+   **/
+  public static final class View {
+    private final ByteBuffer bytes;
+    private final int[] stringAt;
+    private final String[] strings;
+    private final int nodes;
+    private final int root;
+
+    View(final ByteBuffer buffer) {
+      this.bytes = buffer.duplicate();
+      for (int i = 0; i < MAGIC.length; i++) {
+        if (this.bytes.get(i) != MAGIC[i]) {
+          throw new IllegalArgumentException("not encoded evidence");
+        }
+      }
+      if (this.bytes.get(MAGIC.length) != VERSION) {
+        throw new IllegalArgumentException("version "
+            + this.bytes.get(MAGIC.length));
+      }
+      final int rootAt = this.bytes.getInt(MAGIC.length + 1);
+      int p = HEADER;
+      final int count = varint(p);
+      p = skip(p);
+      this.stringAt = new int[count];
+      this.strings = new String[count];
+      for (int i = 0; i < count; i++) {
+        this.stringAt[i] = p;
+        p = skip(p) + varint(p);
+      }
+      this.nodes = p;
+      this.root = p + rootAt;
+    }
+
+    public int root() {
+      return this.root;
+    }
+
+    public Kind kind(final int node) {
+      final int tag = this.bytes.get(node) & 0xff;
+      if (tag >= TERM) {
+        return Kind.TERM;
+      }
+      switch (tag) {
+      case LEAF:
+        return Kind.LEAF;
+      case AND:
+        return Kind.AND;
+      case LEFT:
+        return Kind.LEFT;
+      case RIGHT:
+        return Kind.RIGHT;
+      case NULL:
+        return Kind.NULL;
+      default:
+        throw new IllegalArgumentException("bad tag " + tag + " at " + node);
+      }
+    }
+
+    /** The rule of a TERM node. */
+    public Rule rule(final int node) {
+      return Rule.values()[(this.bytes.get(node) & 0xff) - TERM];
+    }
+
+    /** The number of children of 'node'. */
+    public int arity(final int node) {
+      final Kind k = kind(node);
+      return k == Kind.TERM ? rule(node).arity : k == Kind.AND ? 2
+          : k == Kind.LEFT || k == Kind.RIGHT ? 1 : 0;
+    }
+
+    /** Child 'i' of 'node'. */
+    public int child(final int node, final int i) {
+      if (i < 0 || i >= arity(node)) {
+        throw new IndexOutOfBoundsException("child " + i + " of " + node);
+      }
+      int p = node + 1;
+      for (int j = 0; j < i; j++) {
+        p = skip(p);
+      }
+      return node - varint(p);
+    }
+
+    /** The name of a LEAF node, or of a premise or assumption TERM. */
+    public String name(final int node) {
+      final int i = varint(node + 1);
+      String s = this.strings[i];
+      if (s == null) {
+        final int at = this.stringAt[i];
+        final byte[] utf8 = new byte[varint(at)];
+        final ByteBuffer b = this.bytes.duplicate();
+        b.position(skip(at));
+        b.get(utf8);
+        this.strings[i] = s = new String(utf8, StandardCharsets.UTF_8);
+      }
+      return s;
+    }
+
+    /** The evidence at 'node', leaves made by CLASSES. */
+    public <T> T read(final int node) {
+      return read(node, CLASSES);
+    }
+
+    /** The evidence at 'node'; shared parts are made once. */
+    @SuppressWarnings("unchecked")
+    public <T> T read(final int node, final Leaves leaves) {
+      final Map<Integer, Object> made = new HashMap<Integer, Object>();
+      final ArrayDeque<Integer> todo = new ArrayDeque<Integer>();
+      todo.push(node);
+      while (!todo.isEmpty()) {
+        final int n = todo.peek();
+        if (made.containsKey(n)) {
+          todo.pop();
+          continue;
+        }
+        final int arity = arity(n);
+        boolean ready = true;
+        for (int i = 0; i < arity; i++) {
+          final int c = child(n, i);
+          if (!made.containsKey(c)) {
+            todo.push(c);
+            ready = false;
+          }
+        }
+        if (!ready) {
+          continue;
+        }
+        todo.pop();
+        switch (kind(n)) {
+        case LEAF:
+          made.put(n, leaves.leaf(name(n)));
+          break;
+        case AND:
+          made.put(n, new And<Object, Object>(made.get(child(n, 0)),
+              made.get(child(n, 1))));
+          break;
+        case LEFT:
+          made.put(n, Or.or_i1(made.get(child(n, 0))));
+          break;
+        case RIGHT:
+          made.put(n, Or.or_i2(made.get(child(n, 0))));
+          break;
+        case NULL:
+          made.put(n, null);
+          break;
+        default:
+          throw new IllegalArgumentException("a proof term, not evidence, at "
+              + n);
+        }
+      }
+      return (T) made.get(node);
+    }
+
+    /** The proof Term at 'node'. */
+    public Term readTerm(final int node) {
+      final Map<Integer, Term> made = new HashMap<Integer, Term>();
+      final ArrayDeque<Integer> todo = new ArrayDeque<Integer>();
+      todo.push(node);
+      while (!todo.isEmpty()) {
+        final int n = todo.peek();
+        if (made.containsKey(n)) {
+          todo.pop();
+          continue;
+        }
+        if (kind(n) != Kind.TERM) {
+          throw new IllegalArgumentException("evidence, not a proof term, at "
+              + n);
+        }
+        final int arity = arity(n);
+        final Term[] c = new Term[arity];
+        boolean ready = true;
+        for (int i = 0; i < arity; i++) {
+          c[i] = made.get(child(n, i));
+          if (c[i] == null) {
+            todo.push(child(n, i));
+            ready = false;
+          }
+        }
+        if (!ready) {
+          continue;
+        }
+        todo.pop();
+        made.put(n, term(rule(n), n, c));
+      }
+      return made.get(node);
+    }
+
+    private Term term(final Rule rule, final int n, final Term[] c) {
+      switch (rule) {
+      case PREMISE:
+        return Term.premise(name(n));
+      case ASSUMPTION:
+        return Term.assumption(name(n));
+      case AND_I:
+        return Term.and_i(c[0], c[1]);
+      case AND_E1:
+        return Term.and_e1(c[0]);
+      case AND_E2:
+        return Term.and_e2(c[0]);
+      case OR_I1:
+        return Term.or_i1(c[0]);
+      case OR_I2:
+        return Term.or_i2(c[0]);
+      case OR_E:
+        return Term.or_e(c[0], c[1], c[2], c[3], c[4]);
+      case IMPLY_I:
+        return Term.imply_i(c[0], c[1]);
+      default:
+        return Term.imply_e(c[0], c[1]);
+      }
+    }
+
+    private int varint(int p) {
+      int v = 0;
+      for (int shift = 0;; shift += 7) {
+        final byte b = this.bytes.get(p++);
+        v |= (b & 0x7f) << shift;
+        if (b >= 0) {
+          return v;
+        }
+      }
+    }
+
+    /** The position after the varint at 'p'. */
+    private int skip(int p) {
+      while (this.bytes.get(p++) < 0) {
+      }
+      return p;
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    // or_example's Or<Or<P, Q>, R>, and an And sharing it twice
+    final Or<Or<P, Q>, R> pqORr = Curry_Howard_Isomorphism.or_example(new Q());
+    final And<Or<Or<P, Q>, R>, Or<Or<P, Q>, R>> twice = new And<Or<Or<P, Q>, R>, Or<Or<P, Q>, R>>(
+        pqORr, pqORr);
+    final byte[] bytes = encode(twice);
+    // writing evidence is not inference: nothing for a Tracer to see
+    try (Proof_Tracing.Tracer t = Proof_Tracing.trace(16)) {
+      encode(twice);
+      assertEquals(0, t.steps().size());
+    }
+    final Path file = Files.createTempFile("evidence", ".chev");
+    try {
+      write(bytes, file);
+      final View view = map(file);
+      // walk to the Q without making anything
+      final int root = view.root();
+      assertEquals(Kind.AND, view.kind(root));
+      assertEquals(view.child(root, 0), view.child(root, 1));
+      final int pORq = view.child(view.child(root, 0), 0);
+      assertEquals(Kind.LEFT, view.kind(view.child(root, 0)));
+      assertEquals(Kind.RIGHT, view.kind(pORq));
+      assertEquals(Q.class.getName(), view.name(view.child(pORq, 0)));
+      // and make it all
+      final And<Or<Or<P, Q>, R>, Or<Or<P, Q>, R>> read = view.read(root);
+      assertSame(read.and_e1(), read.and_e2());
+      assertTrue(read.and_e1().left().right() instanceof Q);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testDeepEvidenceAndTerms() {
+    // a million nested Lefts: neither side recurses
+    Object v = new P();
+    for (int i = 0; i < 1000000; i++) {
+      v = Or.or_i1(v);
+    }
+    final byte[] bytes = encode(v);
+    // tag and a one-byte offset per Or, and one P
+    assertTrue(bytes.length < 2000100);
+    Or<?, ?> read = view(ByteBuffer.wrap(bytes)).read(
+        view(ByteBuffer.wrap(bytes)).root());
+    for (int i = 1; i < 1000000; i++) {
+      read = (Or<?, ?>) read.left();
+    }
+    assertTrue(read.left() instanceof P);
+
+    // proof terms come back as the very same (interned) Term
+    final Term x = Term.assumption("x0");
+    final Term t = Term.imply_i(x, Term.or_e(x, Term.assumption("x1"),
+        Term.and_i(Term.premise("h1"), Term.assumption("x1")),
+        Term.assumption("x1"), Term.and_i(Term.premise("h1"),
+            Term.assumption("x1"))));
+    final View view = view(ByteBuffer.wrap(encode(t)));
+    assertSame(t, view.readTerm(view.root()));
+    assertEquals(Rule.IMPLY_I, view.rule(view.root()));
+  }
+}
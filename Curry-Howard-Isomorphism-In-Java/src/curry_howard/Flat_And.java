@@ -0,0 +1,263 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Propositions.Proposition;
+
+public class Flat_And {
+  /**
+   * Wide conjunctions in one object.
+   *
+   * Evidence for p ^ q ^ r is an And holding an And (p ^ q groups first),
+   * and k conjuncts take k - 1 Ands: getting to the first conjunct of a
+   * long one means one and_e1() per level, each on a different object.
+   * And3 and And4 hold three or four conjuncts in fields of one object, and
+   * AndN any number in an array, so every conjunct is one step away:
+   *
+   * <pre>
+   *   And3<P, Q, R> pANDqANDr = And3.of(nested);   // from And<And<P, Q>, R>
+   *   P p = pANDqANDr.and_e1();
+   * </pre>
+   *
+   * And3.of / And4.of take the left-nested And that "^" groups to, and
+   * toAnd() gives it back. AndN.flatten() takes nested And evidence of any
+   * grouping, by the Proposition it is evidence for (every "^" at the top of
+   * the Proposition is one level of And, the rest are the conjuncts, numbered
+   * left to right from 0), and unflatten() builds the nested Ands again.
+   *
+   * Flattening reads every level with and_e1() / and_e2(), so it runs the
+   * halves of lazy Ands, and is reported to Rule_Hooks listeners as such;
+   * the projections of the flat forms are not.
+   **/
+
+  public static final class And3<T1, T2, T3> {
+    private final T1 v1;
+    private final T2 v2;
+    private final T3 v3;
+
+    public And3(final T1 v1, final T2 v2, final T3 v3) {
+      this.v1 = v1;
+      this.v2 = v2;
+      this.v3 = v3;
+    }
+
+    public T1 and_e1() {
+      return this.v1;
+    }
+
+    public T2 and_e2() {
+      return this.v2;
+    }
+
+    public T3 and_e3() {
+      return this.v3;
+    }
+
+    public static <T1, T2, T3> And3<T1, T2, T3> of(final And<And<T1, T2>, T3> v) {
+      final And<T1, T2> v12 = v.and_e1();
+      return new And3<T1, T2, T3>(v12.and_e1(), v12.and_e2(), v.and_e2());
+    }
+
+    public And<And<T1, T2>, T3> toAnd() {
+      return new And<And<T1, T2>, T3>(new And<T1, T2>(this.v1, this.v2),
+          this.v3);
+    }
+  }
+
+  public static final class And4<T1, T2, T3, T4> {
+    private final T1 v1;
+    private final T2 v2;
+    private final T3 v3;
+    private final T4 v4;
+
+    public And4(final T1 v1, final T2 v2, final T3 v3, final T4 v4) {
+      this.v1 = v1;
+      this.v2 = v2;
+      this.v3 = v3;
+      this.v4 = v4;
+    }
+
+    public T1 and_e1() {
+      return this.v1;
+    }
+
+    public T2 and_e2() {
+      return this.v2;
+    }
+
+    public T3 and_e3() {
+      return this.v3;
+    }
+
+    public T4 and_e4() {
+      return this.v4;
+    }
+
+    public static <T1, T2, T3, T4> And4<T1, T2, T3, T4> of(
+        final And<And<And<T1, T2>, T3>, T4> v) {
+      final And<And<T1, T2>, T3> v123 = v.and_e1();
+      final And<T1, T2> v12 = v123.and_e1();
+      return new And4<T1, T2, T3, T4>(v12.and_e1(), v12.and_e2(),
+          v123.and_e2(), v.and_e2());
+    }
+
+    public And<And<And<T1, T2>, T3>, T4> toAnd() {
+      return new And<And<And<T1, T2>, T3>, T4>(new And<And<T1, T2>, T3>(
+          new And<T1, T2>(this.v1, this.v2), this.v3), this.v4);
+    }
+  }
+
+  /** Evidence of any number of conjuncts, in an array. */
+  public static final class AndN {
+    private final Object[] values;
+
+    /** "^i" of all of 'values', in order. */
+    public AndN(final Object... values) {
+      this.values = values.clone();
+    }
+
+    private AndN(final List<Object> values) {
+      this.values = values.toArray();
+    }
+
+    public int width() {
+      return this.values.length;
+    }
+
+    /** The evidence of conjunct 'i', from 0. */
+    public Object and_e(final int i) {
+      return this.values[i];
+    }
+
+    /**
+     * The nested And evidence 'v' of 'shape' as one AndN, its conjuncts the
+     * parts of 'shape' that are not a "^" under a "^".
+     **/
+    public static AndN flatten(final Object v, final Proposition shape) {
+      final List<Object> values = new ArrayList<Object>();
+      // left to right: the right half waits under the left
+      final ArrayDeque<Proposition> shapes = new ArrayDeque<Proposition>();
+      final ArrayDeque<Object> evidence = new ArrayDeque<Object>();
+      shapes.push(shape);
+      evidence.push(v);
+      while (!shapes.isEmpty()) {
+        final Proposition p = shapes.pop();
+        final Object e = evidence.pop();
+        if (p.kind() == Proposition.Kind.AND) {
+          final And<?, ?> and = (And<?, ?>) e;
+          // ^e1 before ^e2, as the lazy halves and the listeners expect
+          final Object left = and.and_e1();
+          final Object right = and.and_e2();
+          shapes.push(p.right());
+          evidence.push(right);
+          shapes.push(p.left());
+          evidence.push(left);
+        } else {
+          values.add(e);
+        }
+      }
+      return new AndN(values);
+    }
+
+    /** This as nested And evidence of 'shape'. */
+    public Object unflatten(final Proposition shape) {
+      // post-order: each "^" once both of its halves are built
+      final ArrayDeque<Proposition> todo = new ArrayDeque<Proposition>();
+      final ArrayDeque<Boolean> expanded = new ArrayDeque<Boolean>();
+      final ArrayDeque<Object> built = new ArrayDeque<Object>();
+      int next = 0;
+      todo.push(shape);
+      expanded.push(false);
+      while (!todo.isEmpty()) {
+        final Proposition p = todo.pop();
+        final boolean done = expanded.pop();
+        if (p.kind() != Proposition.Kind.AND) {
+          if (next == this.values.length) {
+            throw new IllegalArgumentException(shape + " has more than "
+                + this.values.length + " conjuncts");
+          }
+          built.push(this.values[next++]);
+        } else if (done) {
+          final Object right = built.pop();
+          built.push(new And<Object, Object>(built.pop(), right));
+        } else {
+          todo.push(p);
+          expanded.push(true);
+          todo.push(p.right());
+          expanded.push(false);
+          todo.push(p.left());
+          expanded.push(false);
+        }
+      }
+      if (next != this.values.length) {
+        throw new IllegalArgumentException(shape + " has " + next
+            + " conjuncts, not " + this.values.length);
+      }
+      return built.pop();
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testAnd3() {
+    final P p = new P();
+    final Q q = new Q();
+    final R r = new R();
+    final And3<P, Q, R> pANDqANDr = And3.of(new And<And<P, Q>, R>(
+        new And<P, Q>(p, q), r));
+    assertSame(p, pANDqANDr.and_e1());
+    assertSame(r, pANDqANDr.and_e3());
+    assertSame(q, pANDqANDr.toAnd().and_e1().and_e2());
+    assertSame(q, And4.of(new And4<P, Q, R, P>(p, q, r, p).toAnd()).and_e2());
+  }
+
+  @Test
+  public void testAndN() {
+    // p1 ^ ... ^ p1000, grouped to the left, and p ^ (q ^ r)
+    final StringBuilder text = new StringBuilder("p1");
+    Object nested = new P();
+    final P last = new P();
+    for (int i = 2; i <= 1000; i++) {
+      text.append(" ^ p").append(i);
+      nested = new And<Object, P>(nested, i == 1000 ? last : new P());
+    }
+    final Proposition shape = Proposition.parse(text.toString());
+    final AndN flat = AndN.flatten(nested, shape);
+    assertEquals(1000, flat.width());
+    assertSame(last, flat.and_e(999));
+    final And<?, ?> back = (And<?, ?>) flat.unflatten(shape);
+    assertSame(last, back.and_e2());
+
+    final P p = new P();
+    final R r = new R();
+    final AndN pqr = AndN.flatten(new And<P, And<Q, R>>(p, new And<Q, R>(
+        new Q(), r)), Proposition.parse("p ^ (q ^ r)"));
+    assertSame(p, pqr.and_e(0));
+    assertSame(r, pqr.and_e(2));
+
+    // the halves of a lazy And are run left to right
+    final StringBuilder order = new StringBuilder();
+    AndN.flatten(And.lazy(() -> {
+      order.append("p");
+      return p;
+    }, () -> {
+      order.append("r");
+      return r;
+    }), Proposition.parse("p ^ r"));
+    assertEquals("pr", order.toString());
+  }
+}
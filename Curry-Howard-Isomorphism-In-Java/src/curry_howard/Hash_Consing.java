@@ -0,0 +1,52 @@
+package curry_howard;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+final class Hash_Consing<T> {
+  /**
+   * The table behind hash-consed values (Proof_Terms' Terms, Propositions'
+   * Propositions): one shared instance of each value that is still alive.
+   *
+   * It is split into independently locked stripes. Each stripe maps a value
+   * to a weak reference to itself, so the table neither keeps values alive
+   * nor stops them from being found while they are.
+   **/
+
+  private final WeakHashMap<T, WeakReference<T>>[] stripes;
+
+  @SuppressWarnings("unchecked")
+  Hash_Consing() {
+    this.stripes = (WeakHashMap<T, WeakReference<T>>[]) new WeakHashMap<?, ?>[32];
+    for (int i = 0; i < this.stripes.length; i++) {
+      this.stripes[i] = new WeakHashMap<T, WeakReference<T>>();
+    }
+  }
+
+  /** The shared value equal to 'v', which is 'v' itself if there was none. */
+  T intern(final T v) {
+    final int h = v.hashCode();
+    final WeakHashMap<T, WeakReference<T>> stripe = this.stripes[(h ^ (h >>> 16))
+        & (this.stripes.length - 1)];
+    synchronized (stripe) {
+      final WeakReference<T> ref = stripe.get(v);
+      final T shared = ref == null ? null : ref.get();
+      if (shared != null) {
+        return shared;
+      }
+      stripe.put(v, new WeakReference<T>(v));
+      return v;
+    }
+  }
+
+  /** Number of distinct values currently alive. */
+  int size() {
+    int n = 0;
+    for (final WeakHashMap<T, WeakReference<T>> stripe : this.stripes) {
+      synchronized (stripe) {
+        n += stripe.size();
+      }
+    }
+    return n;
+  }
+}
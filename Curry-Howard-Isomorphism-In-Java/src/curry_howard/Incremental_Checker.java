@@ -0,0 +1,560 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import curry_howard.Proof_Checker.InvalidProofException;
+import curry_howard.Proof_Checker.Line;
+import curry_howard.Proof_Checker.Scope;
+import curry_howard.Propositions.Proposition;
+import curry_howard.Propositions.Sequent;
+
+public class Incremental_Checker {
+  /**
+   * Checking a proof while it is being edited.
+   *
+   * Proof_Checker reads a proof once, from the first line to the last. A
+   * tool that edits a long proof and wants it checked after every change
+   * would have it read every line again each time, although a change to one
+   * line can only make a difference to the lines that use it. A Draft keeps
+   * the proof, and with it the lines each line refers to ("->e 1,5" uses
+   * lines 1 and 5; "ve 3,4-5,6-7" uses line 3 and the first and last lines
+   * of the two boxes), and the other way round, which lines use each line:
+   *
+   * <pre>
+   *   Draft draft = Incremental_Checker.open(proof);
+   *   draft.edit(4, "... 4. q ^ p   ^i 3,1");   // checks line 4 and its users
+   *   draft.error(4);                           // null: the line is right
+   *   draft.valid();                            // the whole proof
+   * </pre>
+   *
+   * Each line has a verdict of its own (error(): is its rule applied
+   * correctly to the lines it refers to, and are they in scope?) and is
+   * sound() if its verdict is good and every line it refers to is sound.
+   * edit() checks the edited line again, and the lines that refer to it;
+   * soundness is then passed on to the lines that depend on them, in line
+   * order, only as far as it changes. Changing the premises of the sequent
+   * (sequent()) checks the "premise" lines again. A line added at the end
+   * is checked on its own.
+   *
+   * What boxes there are, and so what is in scope where, depends on the
+   * "..." and the assumptions of every line. An edit that changes either
+   * (opens or closes a box) works out the boxes again and checks every line;
+   * edits that only change a proposition, rule or references, which is what
+   * most keystrokes do, check the few lines above.
+   *
+   * The rules are those of Proof_Checker, which a proof that a Draft finds
+   * valid() also passes. Lines are only replaced and added at the end, since
+   * inserting one would renumber those after it. A Draft is not safe for use
+   * by several threads at once.
+   **/
+
+  /** A proof read from 'in', in the form Proof_Checker reads. */
+  public static Draft open(final Reader in) throws IOException {
+    final BufferedReader lines = in instanceof BufferedReader
+        ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+    final Draft draft = new Draft();
+    long input = 0;
+    String text;
+    while ((text = lines.readLine()) != null) {
+      input++;
+      final Line l = Line.read(text);
+      if (l == null) {
+        final int i = Line.start(text);
+        if (!text.startsWith("...", i) && draft.count == 0
+            && draft.sequent == null && text.indexOf("|-", i) >= 0) {
+          try {
+            draft.sequent = Sequent.parse(text, i);
+          } catch (IllegalArgumentException e) {
+            throw new InvalidProofException(input, e.getMessage());
+          }
+        }
+      } else if (l.number != draft.count + 1) {
+        throw new InvalidProofException(input, "line " + (draft.count + 1)
+            + " expected, not " + l.number);
+      } else {
+        draft.append(l);
+      }
+    }
+    draft.rechecked = draft.count;
+    return draft;
+  }
+
+  public static Draft open(final String proof) {
+    try {
+      return open(new StringReader(proof));
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static final class Draft {
+    private static final int OPEN = -1;
+
+    private Sequent sequent;
+    private int count;
+    // by line number, from 1
+    private Line[] lines = new Line[16];
+    private String[] errors = new String[16];
+    private boolean[] sound = new boolean[16];
+    private int unsound;
+    private String proofError = "no proof";
+    private long rechecked;
+
+    // which lines use each line
+    private int[][] users = new int[16][];
+    private int[] userCount = new int[16];
+
+    // the boxes: the first line of the innermost box each line is in (0 if
+    // none), and for the first line of each box, its last line (OPEN while
+    // it lasts to the end of the proof) and the box it is in
+    private int[] box = new int[16];
+    private int[] boxEnd = new int[16];
+    private int[] boxParent = new int[16];
+    private String[] misplaced = new String[16];
+    // the boxes open after the last line, outermost first
+    private int[] open = new int[16];
+    private int depth;
+
+    // the line being checked, for 'scope'
+    private int at;
+    private final Scope scope = new InScope();
+
+    Draft() {
+    }
+
+    /**
+     * Replaces the premises and conclusion of the sequent ("p, q |- r"; null
+     * for none) and checks the premise lines again.
+     **/
+    public void sequent(final String text) {
+      this.sequent = text == null || text.trim().isEmpty() ? null
+          : Sequent.parse(text);
+      final BitSet changed = new BitSet();
+      this.rechecked = 0;
+      for (int i = 1; i <= this.count; i++) {
+        if ("premise".equals(this.lines[i].rule)) {
+          recheck(i, changed);
+        }
+      }
+      settle(changed);
+      conclude();
+    }
+
+    /**
+     * Replaces line 'n' with 'text' (numbered n), or adds it if n is one
+     * past the last line, and checks what it affects.
+     *
+     * @throws IllegalArgumentException if 'text' is not line n
+     **/
+    public void edit(final long n, final String text) {
+      final Line l = Line.read(text);
+      if (l == null || l.number != n || n < 1 || n > this.count + 1) {
+        throw new IllegalArgumentException("line " + n + " of 1-"
+            + (this.count + 1) + " expected: \"" + text + "\"");
+      }
+      final int i = (int) n;
+      if (i == this.count + 1) {
+        this.rechecked = 0;
+        append(l);
+        return;
+      }
+      final Line old = this.lines[i];
+      unlink(i);
+      this.lines[i] = l;
+      link(i);
+      final BitSet changed = new BitSet();
+      this.rechecked = 0;
+      if (old.depth != l.depth || old.isAssumption() != l.isAssumption()) {
+        restructure();
+        for (int j = 1; j <= this.count; j++) {
+          recheck(j, changed);
+        }
+      } else {
+        recheck(i, changed);
+        for (int k = 0; k < this.userCount[i]; k++) {
+          recheck(this.users[i][k], changed);
+        }
+      }
+      settle(changed);
+      conclude();
+    }
+
+    /** Adds 'text' as the next line. */
+    public void append(final String text) {
+      edit(this.count + 1, text);
+    }
+
+    /** Number of lines. */
+    public int lines() {
+      return this.count;
+    }
+
+    /** What is wrong with line 'n' itself, or null if nothing is. */
+    public String error(final long n) {
+      return this.errors[index(n)];
+    }
+
+    /** Whether line 'n' and every line it depends on are right. */
+    public boolean sound(final long n) {
+      return this.sound[index(n)];
+    }
+
+    /**
+     * What is wrong with the proof as a whole (it is empty, ends inside a
+     * box, or does not end with the sequent's conclusion), or null.
+     **/
+    public String proofError() {
+      return this.proofError;
+    }
+
+    /** Whether every line is sound and the proof proves the sequent. */
+    public boolean valid() {
+      return this.unsound == 0 && this.proofError == null;
+    }
+
+    /** Number of lines checked by the last change. */
+    public long rechecked() {
+      return this.rechecked;
+    }
+
+    private int index(final long n) {
+      if (n < 1 || n > this.count) {
+        throw new IndexOutOfBoundsException("line " + n + " of 1-"
+            + this.count);
+      }
+      return (int) n;
+    }
+
+    private void append(final Line l) {
+      final int i = ++this.count;
+      if (i == this.lines.length) {
+        final int n = i * 2;
+        this.lines = Arrays.copyOf(this.lines, n);
+        this.errors = Arrays.copyOf(this.errors, n);
+        this.sound = Arrays.copyOf(this.sound, n);
+        this.users = Arrays.copyOf(this.users, n);
+        this.userCount = Arrays.copyOf(this.userCount, n);
+        this.box = Arrays.copyOf(this.box, n);
+        this.boxEnd = Arrays.copyOf(this.boxEnd, n);
+        this.boxParent = Arrays.copyOf(this.boxParent, n);
+        this.misplaced = Arrays.copyOf(this.misplaced, n);
+      }
+      this.lines[i] = l;
+      this.unsound++;
+      link(i);
+      place(i);
+      final BitSet changed = new BitSet();
+      recheck(i, changed);
+      settle(changed);
+      conclude();
+    }
+
+    /*****************************************************************/
+    /** Boxes */
+    /*****************************************************************/
+
+    private void restructure() {
+      this.depth = 0;
+      for (int i = 1; i <= this.count; i++) {
+        place(i);
+      }
+    }
+
+    /**
+     * Puts line i in its box, closing the boxes it is not in, as
+     * Proof_Checker does; a line that cannot be where it is gets a verdict
+     * saying so and is treated as if it were in the innermost open box.
+     **/
+    private void place(final int i) {
+      final Line l = this.lines[i];
+      final int d = l.depth;
+      boolean assumption = l.isAssumption();
+      this.misplaced[i] = null;
+      if (assumption && d == 0) {
+        this.misplaced[i] = "an assumption starts a box, so it needs a '...'";
+        assumption = false;
+      }
+      final int target = assumption ? d - 1 : d;
+      while (this.depth > target) {
+        this.boxEnd[this.open[--this.depth]] = i - 1;
+      }
+      if (this.depth != target) {
+        this.misplaced[i] = assumption ? "an assumption opens one box at a time"
+            : "only an assumption can open a box";
+        assumption = false;
+      }
+      if (assumption) {
+        this.boxParent[i] = this.depth > 0 ? this.open[this.depth - 1] : 0;
+        this.boxEnd[i] = OPEN;
+        if (this.depth == this.open.length) {
+          this.open = Arrays.copyOf(this.open, this.depth * 2);
+        }
+        this.open[this.depth++] = i;
+      }
+      this.box[i] = this.depth > 0 ? this.open[this.depth - 1] : 0;
+    }
+
+    private int end(final int first) {
+      return this.boxEnd[first] == OPEN ? this.count : this.boxEnd[first];
+    }
+
+    /** The lines and boxes in scope at line 'at'. */
+    private final class InScope implements Scope {
+      @Override
+      public Proposition line(final long n) {
+        if (n < 1 || n >= Draft.this.at) {
+          throw new IllegalArgumentException("line " + n
+              + " is not in scope here");
+        }
+        final int r = (int) n;
+        final int b = Draft.this.box[r];
+        if (b != 0 && end(b) < Draft.this.at) {
+          throw new IllegalArgumentException("line " + n
+              + " is not in scope here");
+        }
+        return proposition(r);
+      }
+
+      @Override
+      public int box(final long first, final long last) {
+        if (first < 1 || first >= Draft.this.at || last >= Draft.this.at
+            || Draft.this.box[(int) first] != first || end((int) first) != last) {
+          throw new IllegalArgumentException("there is no box " + first + "-"
+              + last + " in scope here");
+        }
+        final int parent = Draft.this.boxParent[(int) first];
+        if (parent != 0 && end(parent) < Draft.this.at) {
+          throw new IllegalArgumentException("there is no box " + first + "-"
+              + last + " in scope here");
+        }
+        proposition((int) last);
+        return (int) first;
+      }
+
+      @Override
+      public Proposition assumes(final int box) {
+        return proposition(box);
+      }
+
+      @Override
+      public Proposition concludes(final int box) {
+        return proposition(end(box));
+      }
+    }
+
+    private Proposition proposition(final int n) {
+      final Line l = this.lines[n];
+      if (l.problem != null) {
+        throw new IllegalArgumentException("line " + n + " cannot be read");
+      }
+      return l.proposition;
+    }
+
+    /*****************************************************************/
+    /** Checking and passing on soundness */
+    /*****************************************************************/
+
+    private void recheck(final int i, final BitSet changed) {
+      this.rechecked++;
+      changed.set(i);
+      final Line l = this.lines[i];
+      if (l.problem != null) {
+        this.errors[i] = l.problem;
+      } else if (this.misplaced[i] != null) {
+        this.errors[i] = this.misplaced[i];
+      } else {
+        this.at = i;
+        try {
+          Proof_Checker.justify(l, this.sequent, this.scope);
+          this.errors[i] = null;
+        } catch (final IllegalArgumentException e) {
+          this.errors[i] = e.getMessage();
+        }
+      }
+    }
+
+    /**
+     * Works out sound() again for the lines in 'changed', in line order, and
+     * for the lines that use a line whose soundness changed.
+     **/
+    private void settle(final BitSet changed) {
+      for (int i = changed.nextSetBit(1); i >= 0; i = changed.nextSetBit(i + 1)) {
+        final boolean s = this.errors[i] == null && depsSound(i);
+        if (s != this.sound[i]) {
+          this.sound[i] = s;
+          this.unsound += s ? -1 : 1;
+          for (int k = 0; k < this.userCount[i]; k++) {
+            changed.set(this.users[i][k]);
+          }
+        }
+      }
+    }
+
+    private boolean depsSound(final int i) {
+      final long[] r = this.lines[i].refs;
+      if (r == null) {
+        return true;
+      }
+      for (final long n : r) {
+        if (n >= 1 && n < i && !this.sound[(int) n]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void conclude() {
+      if (this.count == 0) {
+        this.proofError = "no proof";
+        return;
+      }
+      final Line last = this.lines[this.count];
+      if (last.depth != 0) {
+        this.proofError = "the proof ends inside a box";
+      } else if (this.sequent != null && last.problem == null
+          && !last.proposition.equals(this.sequent.conclusion())) {
+        this.proofError = "the proof ends with " + last.proposition
+            + ", not " + this.sequent.conclusion();
+      } else {
+        this.proofError = null;
+      }
+    }
+
+    /*****************************************************************/
+    /** The dependency graph */
+    /*****************************************************************/
+
+    /** Records line i as a user of each earlier line it refers to. */
+    private void link(final int i) {
+      final long[] r = this.lines[i].refs;
+      if (r == null) {
+        return;
+      }
+      for (int k = 0; k < r.length; k++) {
+        final long n = r[k];
+        if (n >= 1 && n < i && (k % 2 == 0 || n != r[k - 1])) {
+          addUser((int) n, i);
+        }
+      }
+    }
+
+    private void unlink(final int i) {
+      final long[] r = this.lines[i].refs;
+      if (r == null) {
+        return;
+      }
+      for (int k = 0; k < r.length; k++) {
+        final long n = r[k];
+        if (n >= 1 && n < i && (k % 2 == 0 || n != r[k - 1])) {
+          removeUser((int) n, i);
+        }
+      }
+    }
+
+    private void addUser(final int n, final int user) {
+      int[] u = this.users[n];
+      if (u == null) {
+        u = this.users[n] = new int[2];
+      } else if (this.userCount[n] == u.length) {
+        u = this.users[n] = Arrays.copyOf(u, u.length * 2);
+      }
+      u[this.userCount[n]++] = user;
+    }
+
+    private void removeUser(final int n, final int user) {
+      final int[] u = this.users[n];
+      for (int k = 0; k < this.userCount[n]; k++) {
+        if (u[k] == user) {
+          u[k] = u[--this.userCount[n]];
+          return;
+        }
+      }
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  private static final String EXAMPLE12 = String.join("\n",
+      "p,  (q ^ p) -> r  |-  q -> r",
+      "1. p                      premise",
+      "2. (q ^ p) -> r           premise",
+      "... 3. q                  assumption",
+      "... 4. q ^ p              ^i 3,1",
+      "... 5. r                  ->e 2,4",
+      "6. q -> r                 ->i 3-5");
+
+  @Test
+  public void testEdits() {
+    final Draft draft = open(EXAMPLE12);
+    assertTrue(draft.valid());
+    // a mistake in line 4: it and line 5, which uses it, are checked again,
+    // and the lines that depend on them (5, then 6) are no longer sound
+    draft.edit(4, "... 4. p ^ q   ^i 3,1");
+    assertEquals(2, draft.rechecked());
+    assertNotNull(draft.error(4));
+    assertNotNull(draft.error(5));
+    assertNull(draft.error(6));
+    assertFalse(draft.sound(6));
+    assertTrue(draft.sound(3));
+    assertFalse(draft.valid());
+    draft.edit(4, "... 4. q ^ p   ^i 3,1");
+    assertEquals(2, draft.rechecked());
+    assertTrue(draft.valid());
+
+    // the premises changed: line 2 no longer is one
+    draft.sequent("p |- q -> r");
+    assertEquals(2, draft.rechecked());
+    assertNotNull(draft.error(2));
+    assertFalse(draft.valid());
+    draft.sequent("p, (q ^ p) -> r |- q -> r");
+    assertTrue(draft.valid());
+
+    // taking line 5 out of the box moves the box's end: everything is
+    // checked again, and ->i 3-5 no longer names a box
+    draft.edit(5, "5. r   ->e 2,4");
+    assertEquals(6, draft.rechecked());
+    assertNotNull(draft.error(6));
+    assertFalse(draft.valid());
+  }
+
+  @Test
+  public void testLongProof() {
+    // as Proof_Checker.testLongProof: p, then blocks proving p again
+    final int blocks = 50000;
+    final Draft draft = open("p |- p\n1. p   premise\n");
+    for (int b = 0; b < blocks; b++) {
+      final int a = 2 + 5 * b;
+      draft.append("... " + a + ". p   assumption");
+      draft.append("... " + (a + 1) + ". p ^ p   ^i " + a + "," + a);
+      draft.append("... " + (a + 2) + ". p   ^e1 " + (a + 1));
+      draft.append((a + 3) + ". p -> p   ->i " + a + "-" + (a + 2));
+      draft.append((a + 4) + ". p   ->e " + (a + 3) + ",1");
+      assertEquals(1, draft.rechecked());
+    }
+    assertTrue(draft.valid());
+    // an edit in the middle looks at the line and its one user
+    final int a = 2 + 5 * (blocks / 2);
+    draft.edit(a + 1, "... " + (a + 1) + ". p ^ q   ^i " + a + "," + a);
+    assertEquals(2, draft.rechecked());
+    assertFalse(draft.valid());
+    assertFalse(draft.sound(a + 4));
+    assertTrue(draft.sound(a + 5));
+    draft.edit(a + 1, "... " + (a + 1) + ". p ^ p   ^i " + a + "," + a);
+    assertTrue(draft.valid());
+  }
+}
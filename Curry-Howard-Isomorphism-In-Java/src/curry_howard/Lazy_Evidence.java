@@ -0,0 +1,216 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+
+public class Lazy_Evidence {
+  /**
+   * Evidence for T1 ^ T2 whose two halves are only built when they are asked
+   * for.
+   *
+   * The "^i" constructor of And needs evidence of T1 and of T2 right away.
+   * When evidence is expensive to construct and the proof only ever uses one
+   * side (with "^e1" or "^e2"), the other side is built for nothing. A
+   * LazyAnd instead takes a way to construct each side (a Supplier) and runs
+   * it the first time and_e1() or and_e2() needs that side. After that the
+   * evidence is kept, so each Supplier runs at most once, even when several
+   * threads ask for the same side at the same time.
+   *
+   * A LazyAnd is an And, so it can be used by any proof that expects an
+   * And<T1, T2>:
+   *
+   * <pre>
+   *   And<P, Q> pANDq = And.lazy(() -> expensiveP(), () -> expensiveQ());
+   *   P p = pANDq.and_e1();   // builds P only
+   * </pre>
+   *
+   * Each side has its own lock, so a slow Supplier holds up only the
+   * threads waiting for its side.
+   *
+   * Rule_Hooks listeners see the "^i" of a LazyAnd when its second half is
+   * built, with both halves, and not at all if one is never needed: its
+   * "^e1" / "^e2" may come before its "^i" (a Recorder sees it as an
+   * unnamed premise until then).
+   **/
+
+  public static final class LazyAnd<T1, T2> extends And<T1, T2> {
+    private static final Object UNSET = new Object();
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<LazyAnd> REPORTED = AtomicIntegerFieldUpdater
+        .newUpdater(LazyAnd.class, "reported");
+
+    private final Object lock1 = new Object();
+    private final Object lock2 = new Object();
+    private Supplier<? extends T1> s1;
+    private Supplier<? extends T2> s2;
+    private volatile Object v1 = UNSET;
+    private volatile Object v2 = UNSET;
+    private volatile int reported;
+
+    LazyAnd(final Supplier<? extends T1> s1, final Supplier<? extends T2> s2) {
+      this.s1 = s1;
+      this.s2 = s2;
+    }
+
+    /** Reports "^i" once both halves are there, from whichever came last. */
+    @SuppressWarnings("unchecked")
+    private void built() {
+      if (Rule_Hooks.listener != null && this.v1 != UNSET
+          && this.v2 != UNSET && REPORTED.compareAndSet(this, 0, 1)) {
+        and_i((T1) this.v1, (T2) this.v2);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected T1 first() {
+      Object v = this.v1;
+      if (v == UNSET) {
+        synchronized (this.lock1) {
+          v = this.v1;
+          if (v == UNSET) {
+            v = this.s1.get();
+            this.v1 = v;
+            this.s1 = null;
+          }
+        }
+        built();
+      }
+      return (T1) v;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected T2 second() {
+      Object v = this.v2;
+      if (v == UNSET) {
+        synchronized (this.lock2) {
+          v = this.v2;
+          if (v == UNSET) {
+            v = this.s2.get();
+            this.v2 = v;
+            this.s2 = null;
+          }
+        }
+        built();
+      }
+      return (T2) v;
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testLazyAndExample() {
+    final AtomicInteger qBuilt = new AtomicInteger();
+    final P p = new P();
+    final And<P, Q> pANDq = And.lazy(() -> p, () -> {
+      qBuilt.incrementAndGet();
+      return new Q();
+    });
+    // ^e1 alone never builds the Q evidence
+    assertSame(p, pANDq.and_e1());
+    assertEquals(0, qBuilt.get());
+    // and_example uses both sides, so Q is built now -- once
+    final Q q = Curry_Howard_Isomorphism.and_example(pANDq).and_e1();
+    assertSame(q, pANDq.and_e2());
+    assertEquals(1, qBuilt.get());
+  }
+
+  @Test
+  public void testLazyAndBuildsOnce() throws InterruptedException {
+    final AtomicInteger pBuilt = new AtomicInteger();
+    final And<P, Q> pANDq = And.lazy(() -> {
+      pBuilt.incrementAndGet();
+      return new P();
+    }, () -> new Q());
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> threads = new ArrayList<Thread>();
+    final P[] seen = new P[8];
+    for (int i = 0; i < seen.length; i++) {
+      final int n = i;
+      final Thread t = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        seen[n] = pANDq.and_e1();
+      });
+      t.start();
+      threads.add(t);
+    }
+    start.countDown();
+    for (final Thread t : threads) {
+      t.join();
+    }
+    assertEquals(1, pBuilt.get());
+    for (final P p : seen) {
+      assertSame(seen[0], p);
+    }
+  }
+
+  @Test
+  public void testLazyWhileTraced() throws InterruptedException {
+    final AtomicInteger qBuilt = new AtomicInteger();
+    final P p = new P();
+    final CountDownLatch inP = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    try (Proof_Tracing.Tracer t = Proof_Tracing.trace(100)) {
+      final And<P, Q> pANDq = And.lazy(() -> {
+        inP.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return p;
+      }, () -> {
+        qBuilt.incrementAndGet();
+        return new Q();
+      });
+      // nothing is built, or reported, until a side is asked for
+      assertEquals(0, qBuilt.get());
+      assertEquals(0, t.steps().size());
+
+      // a slow P does not hold up ^e2
+      final Thread slow = new Thread(() -> pANDq.and_e1());
+      slow.start();
+      inP.await();
+      pANDq.and_e2();
+      assertEquals(1, qBuilt.get());
+      release.countDown();
+      slow.join();
+    }
+    try (Proof_Tracing.Tracer t = Proof_Tracing.trace(100)) {
+      final And<P, Q> pANDq = And.lazy(() -> p, () -> new Q());
+      pANDq.and_e1();
+      pANDq.and_e2();
+      // "^i" once the second half is built, before its "^e2"
+      final List<Proof_Terms.Rule> rules = new ArrayList<Proof_Terms.Rule>();
+      for (final Proof_Tracing.Step s : t.steps()) {
+        if (s.rule() != Proof_Terms.Rule.PREMISE) {
+          rules.add(s.rule());
+        }
+      }
+      assertEquals(Arrays.asList(Proof_Terms.Rule.AND_E1,
+          Proof_Terms.Rule.AND_I, Proof_Terms.Rule.AND_E2), rules);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+
+public class Memoization {
+  /**
+   * Evidence for T1 -> T2 that remembers its answers.
+   *
+   * A plain Imply runs its Deduction again on every ->e, even when it is given
+   * the same T1 evidence as before. If the deduction is pure (the same T1
+   * evidence always leads to the same T2 evidence) that work can be skipped:
+   * a Memoized Imply keeps the last T2 evidence it produced for each T1
+   * evidence in a bounded cache and answers ->e from the cache when it can.
+   *
+   * <pre>
+   *   Imply<P, Imply<Q, R>> pIMPLYqir = Imply.memoizedByIdentity(library, 1024);
+   *   ...
+   *   pIMPLYqir.imply_e(p);   // runs the library proof
+   *   pIMPLYqir.imply_e(p);   // cache hit
+   * </pre>
+   *
+   * Imply.memoized looks T1 evidence up by equals()/hashCode().
+   * Imply.memoizedByIdentity looks it up by object identity, which is what
+   * evidence classes that do not override equals (such as P, Q and R) need.
+   *
+   * The cache is split into independently locked segments, each of which
+   * evicts its least recently used entry once it is full, so it can be shared
+   * by many threads and never holds more than about maxEntries answers. The
+   * deduction itself runs outside of any lock, so a memoized proof may use
+   * itself (or other memoized proofs) recursively; two threads that miss on
+   * the same evidence at the same time may both run the deduction, and the
+   * first answer stored wins.
+   **/
+
+  public static final class Memoized<T1, T2> extends Imply<T1, T2> {
+    private final Memo<T1, T2> memo;
+
+    Memoized(final Deduction<T1, T2> d, final int maxEntries,
+        final boolean byIdentity) {
+      this(new Memo<T1, T2>(d, maxEntries, byIdentity));
+    }
+
+    private Memoized(final Memo<T1, T2> memo) {
+      super(memo);
+      this.memo = memo;
+    }
+
+    /** Number of ->e answered from the cache. */
+    public long hits() {
+      return this.memo.hits.sum();
+    }
+
+    /** Number of ->e that had to run the deduction. */
+    public long misses() {
+      return this.memo.misses.sum();
+    }
+
+    /** Number of answers dropped to stay within maxEntries. */
+    public long evictions() {
+      return this.memo.evictions.sum();
+    }
+
+    /** Number of answers currently cached. */
+    public int size() {
+      int n = 0;
+      for (final Segment<T2> segment : this.memo.segments) {
+        synchronized (segment) {
+          n += segment.size();
+        }
+      }
+      return n;
+    }
+
+    /** Forgets every cached answer (the counters are kept). */
+    public void clear() {
+      for (final Segment<T2> segment : this.memo.segments) {
+        synchronized (segment) {
+          segment.clear();
+        }
+      }
+    }
+  }
+
+  /**
+   * The memoizing deduction wrapped by a Memoized Imply.
+   **/
+  private static final class Memo<T1, T2> implements Deduction<T1, T2> {
+    private final Deduction<T1, T2> deduction;
+    private final boolean byIdentity;
+    private final Segment<T2>[] segments;
+    private final int mask;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    Memo(final Deduction<T1, T2> d, final int maxEntries,
+        final boolean byIdentity) {
+      if (maxEntries <= 0) {
+        throw new IllegalArgumentException("maxEntries must be positive: "
+            + maxEntries);
+      }
+      this.deduction = d;
+      this.byIdentity = byIdentity;
+      // one segment per 64 entries, at most 16, and a power of two
+      int n = 1;
+      while (n < 16 && n * 64 < maxEntries) {
+        n <<= 1;
+      }
+      this.segments = (Segment<T2>[]) new Segment<?>[n];
+      final int perSegment = (maxEntries + n - 1) / n;
+      for (int i = 0; i < n; i++) {
+        this.segments[i] = new Segment<T2>(perSegment, this.evictions);
+      }
+      this.mask = n - 1;
+    }
+
+    @Override
+    public T2 deduction_step(final T1 assumptions) {
+      final Object key = this.byIdentity ? new Identity_Key(assumptions)
+          : assumptions;
+      final int h = key == null ? 0 : key.hashCode();
+      final Segment<T2> segment = this.segments[(h ^ (h >>> 16)) & this.mask];
+      T2 v;
+      synchronized (segment) {
+        v = segment.get(key);
+      }
+      if (v != null) {
+        this.hits.increment();
+        return v;
+      }
+      this.misses.increment();
+      v = this.deduction.apply(assumptions);
+      if (v != null) {
+        synchronized (segment) {
+          final T2 first = segment.putIfAbsent(key, v);
+          if (first != null) {
+            v = first;
+          }
+        }
+      }
+      return v;
+    }
+  }
+
+  /**
+   * One independently locked part of the cache: a LinkedHashMap in access
+   * order, which drops its least recently used entry when it grows past
+   * 'capacity'. Guarded by its own monitor.
+   **/
+  private static final class Segment<V> extends LinkedHashMap<Object, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    private final LongAdder evictions;
+
+    Segment(final int capacity, final LongAdder evictions) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+      this.evictions = evictions;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<Object, V> eldest) {
+      if (size() > this.capacity) {
+        this.evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A cache key that compares evidence by identity rather than equals().
+   **/
+  private static final class Identity_Key {
+    private final Object evidence;
+
+    Identity_Key(final Object evidence) {
+      this.evidence = evidence;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this.evidence);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof Identity_Key
+          && ((Identity_Key) o).evidence == this.evidence;
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testMemoizedByIdentity() {
+    final AtomicInteger runs = new AtomicInteger();
+    final Memoized<P, Q> pIMPLYq = Imply.memoizedByIdentity((P p) -> {
+      runs.incrementAndGet();
+      return new Q();
+    }, 2);
+    final P p1 = new P();
+    final P p2 = new P();
+    final Q q1 = pIMPLYq.imply_e(p1);
+    assertSame(q1, pIMPLYq.imply_e(p1));
+    pIMPLYq.imply_e(p2);
+    assertEquals(2, runs.get());
+    assertEquals(1, pIMPLYq.hits());
+    assertEquals(2, pIMPLYq.misses());
+
+    // a third piece of evidence pushes the least recently used one (p1) out
+    pIMPLYq.imply_e(p2);
+    pIMPLYq.imply_e(new P());
+    assertEquals(2, pIMPLYq.size());
+    assertEquals(1, pIMPLYq.evictions());
+    pIMPLYq.imply_e(p1);
+    assertEquals(4, runs.get());
+  }
+
+  @Test
+  public void testMemoizedExample4() {
+    final Curry_Howard_Isomorphism examples = new Curry_Howard_Isomorphism();
+    final AtomicInteger runs = new AtomicInteger();
+    final Imply<Q, R> qIMPLYr = new Imply<Q, R>((Q q) -> new R());
+    final Memoized<P, Imply<Q, R>> pIMPLYqir = Imply.memoizedByIdentity(
+        (P p) -> {
+          runs.incrementAndGet();
+          return qIMPLYr;
+        }, 16);
+    final Imply<P, R> pIMPLYr = examples.example4(pIMPLYqir)
+        .imply_e(new Imply<P, Q>((P p) -> new Q()));
+    final P p = new P();
+    for (int i = 0; i < 10; i++) {
+      assertTrue(pIMPLYr.imply_e(p) instanceof R);
+    }
+    assertEquals(1, runs.get());
+    assertEquals(9, pIMPLYqir.hits());
+  }
+}
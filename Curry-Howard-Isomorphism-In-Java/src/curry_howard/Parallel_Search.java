@@ -0,0 +1,319 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.junit.Test;
+
+import curry_howard.Proof_Search.Key;
+import curry_howard.Proof_Search.Proof;
+import curry_howard.Proof_Search.Search;
+import curry_howard.Proof_Terms.Term;
+import curry_howard.Propositions.Sequent;
+
+public class Parallel_Search {
+  /**
+   * Proof_Search on all cores.
+   *
+   * Many sub-goals of a search do not depend on each other: the two halves
+   * of "^i", the two boxes of "ve" (lines 4-5 and 6-7 of example2), and the
+   * different choices tried when no rule applies for sure. prove() runs
+   * them as ForkJoinPool tasks, which idle threads steal from busy ones.
+   *
+   * A sub-goal is only split off when the pool is short of work (fewer than
+   * a few tasks queued on the current thread); otherwise it is searched
+   * right away, as Proof_Search would, which keeps the cost of tasks away
+   * from the many small sub-goals near the leaves.
+   *
+   * Once one choice succeeds the others cannot change the answer, and once
+   * one of the sub-goals of a choice fails neither can its siblings, so the
+   * tasks still working on them are cancelled: each task checks its group's
+   * flag (and its ancestors') before every sub-goal and gives up. A
+   * cancelled sub-goal is never written to the table, which is shared by
+   * all tasks, so no thread searches a sub-goal another one has already
+   * settled.
+   *
+   * The proof term is built afterwards, on the calling thread, exactly as
+   * Proof_Search does.
+   **/
+
+  /** A proof of 'sequent' found with the common pool, or null. */
+  public static Proof prove(final String sequent) {
+    return prove(Sequent.parse(sequent), ForkJoinPool.commonPool());
+  }
+
+  /** A proof of 'sequent' found with 'pool', or null if there is none. */
+  public static Proof prove(final Sequent sequent, final ForkJoinPool pool) {
+    final Search search = new Search(new ConcurrentHashMap<Key, Boolean>());
+    int[] ids = new int[0];
+    Term[] terms = new Term[0];
+    for (int i = 0; i < sequent.premises().size(); i++) {
+      final int id = search.id(sequent.premises().get(i));
+      final int at = Arrays.binarySearch(ids, id);
+      if (at < 0) {
+        ids = Proof_Search.with(ids, id);
+        terms = Proof_Search.insert(terms, -at - 1,
+            Term.premise(Proof_Search.premiseName(i)));
+      }
+    }
+    final Key key = new Key(ids, search.id(sequent.conclusion()));
+    if (pool.invoke(new Solve(search, key, null, null)) != YES) {
+      return null;
+    }
+    return new Proof(sequent, search.build(ids, terms, key.goal));
+  }
+
+  private static final int NO = 0;
+  private static final int YES = 1;
+  private static final int CANCELLED = 2;
+
+  /** Split sub-goals off only while fewer tasks than this are queued. */
+  private static final int SURPLUS = 3;
+
+  /**
+   * A group of sibling tasks that can be called off together; a group is
+   * also called off when any group it is part of is.
+   **/
+  private static final class Cancel {
+    private final Cancel parent;
+    private volatile boolean cancelled;
+
+    Cancel(final Cancel parent) {
+      this.parent = parent;
+    }
+
+    boolean cancelled() {
+      for (Cancel c = this; c != null; c = c.parent) {
+        if (c.cancelled) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void cancel() {
+      this.cancelled = true;
+    }
+  }
+
+  /** The sub-goals the current branch is in the middle of (loop check). */
+  private static final class Path {
+    final Key key;
+    final Path next;
+
+    Path(final Key key, final Path next) {
+      this.key = key;
+      this.next = next;
+    }
+
+    static boolean contains(final Path path, final Key key) {
+      for (Path p = path; p != null; p = p.next) {
+        if (p.key.hashCode() == key.hashCode() && p.key.equals(key)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class Solve extends RecursiveTask<Integer> {
+    private static final long serialVersionUID = 1L;
+
+    private final Search search;
+    private final Key key;
+    private final Cancel cancel;
+    private final Path path;
+
+    Solve(final Search search, final Key key, final Cancel cancel,
+        final Path path) {
+      this.search = search;
+      this.key = key;
+      this.cancel = cancel;
+      this.path = path;
+    }
+
+    @Override
+    protected Integer compute() {
+      return solve(this.search, this.key, this.cancel, this.path);
+    }
+  }
+
+  /** All the sub-goals of one choice, as a task. */
+  private static final class All extends RecursiveTask<Integer> {
+    private static final long serialVersionUID = 1L;
+
+    private final Search search;
+    private final Key[] all;
+    private final Cancel cancel;
+    private final Path path;
+
+    All(final Search search, final Key[] all, final Cancel cancel,
+        final Path path) {
+      this.search = search;
+      this.all = all;
+      this.cancel = cancel;
+      this.path = path;
+    }
+
+    @Override
+    protected Integer compute() {
+      return all(this.search, this.all, this.cancel, this.path);
+    }
+  }
+
+  private static int solve(final Search search, final Key key,
+      final Cancel cancel, final Path path) {
+    if (cancel != null && cancel.cancelled()) {
+      return CANCELLED;
+    }
+    final Boolean known = search.known(key.ctx, key.goal);
+    if (known != null) {
+      return known ? YES : NO;
+    }
+    if (Path.contains(path, key)) {
+      return NO;
+    }
+    final Key[][] choices = search.choices(key);
+    final Path here = new Path(key, path);
+    final int result = choices.length == 1 ? all(search, choices[0], cancel, here)
+        : any(search, choices, cancel, here);
+    if (result != CANCELLED) {
+      search.learn(key, result == YES);
+    }
+    return result;
+  }
+
+  /** YES if every sub-goal is provable. */
+  private static int all(final Search search, final Key[] all,
+      final Cancel cancel, final Path path) {
+    if (all.length < 2 || ForkJoinTask.getSurplusQueuedTaskCount() >= SURPLUS) {
+      for (final Key sub : all) {
+        final int r = solve(search, sub, cancel, path);
+        if (r != YES) {
+          return r;
+        }
+      }
+      return YES;
+    }
+    final Cancel group = new Cancel(cancel);
+    final Solve[] forked = new Solve[all.length - 1];
+    for (int i = 1; i < all.length; i++) {
+      forked[i - 1] = new Solve(search, all[i], group, path);
+      forked[i - 1].fork();
+    }
+    int result = solve(search, all[0], group, path);
+    if (result == NO) {
+      // one fails: so does the choice, whatever the others say
+      group.cancel();
+    }
+    for (final Solve task : forked) {
+      final int r = join(task);
+      if (r == NO && result != NO) {
+        group.cancel();
+        result = NO;
+      } else if (r == CANCELLED && result == YES) {
+        result = CANCELLED;
+      }
+    }
+    return result == CANCELLED && (cancel == null || !cancel.cancelled())
+        ? NO : result;
+  }
+
+  /** YES if any choice has all its sub-goals provable. */
+  private static int any(final Search search, final Key[][] choices,
+      final Cancel cancel, final Path path) {
+    if (choices.length < 2
+        || ForkJoinTask.getSurplusQueuedTaskCount() >= SURPLUS) {
+      for (final Key[] choice : choices) {
+        final int r = all(search, choice, cancel, path);
+        if (r != NO) {
+          return r;
+        }
+      }
+      return NO;
+    }
+    final Cancel group = new Cancel(cancel);
+    final All[] forked = new All[choices.length - 1];
+    for (int i = 1; i < choices.length; i++) {
+      forked[i - 1] = new All(search, choices[i], group, path);
+      forked[i - 1].fork();
+    }
+    int result = all(search, choices[0], group, path);
+    if (result == YES) {
+      // one succeeds: the rest are not needed
+      group.cancel();
+    }
+    for (final All task : forked) {
+      final int r = join(task);
+      if (r == YES && result != YES) {
+        group.cancel();
+        result = YES;
+      } else if (r == CANCELLED && result == NO) {
+        result = CANCELLED;
+      }
+    }
+    return result == CANCELLED && (cancel == null || !cancel.cancelled())
+        ? NO : result;
+  }
+
+  /**
+   * The task's result; a task nobody has started yet is run here, unless
+   * its group has been called off already.
+   **/
+  private static int join(final RecursiveTask<Integer> task) {
+    if (task.tryUnfork()) {
+      return task.invoke();
+    }
+    return task.join();
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testSameAnswersAsSequential() {
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (final String sequent : new String[] {
+          "p -> (q -> r) |- (p -> q) -> (p -> r)",
+          "p -> r, q -> r |- (p v q) -> r",
+          "(p v q) ^ (p v r) |- p v (q ^ r)",
+          "|- p v (p -> q)",
+          "|- ((p -> q) -> p) -> p" }) {
+        final Proof sequential = Proof_Search.prove(sequent);
+        final Proof parallel = prove(Sequent.parse(sequent), pool);
+        if (sequential == null) {
+          assertNull(sequent, parallel);
+        } else {
+          assertNotNull(sequent, parallel);
+          assertEquals(sequent, sequential.sequent().conclusion(),
+              parallel.sequent().conclusion());
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testLargeDisjunction() {
+    final int n = 120;
+    final StringBuilder from = new StringBuilder("(p1 -> q)");
+    final StringBuilder to = new StringBuilder("p" + n + " -> q");
+    for (int i = 2; i <= n; i++) {
+      from.append(" ^ (p").append(i).append(" -> q)");
+      to.append(" ^ (p").append(n + 1 - i).append(" -> q)");
+    }
+    final Proof proof = prove(from + " |- (p1 v p" + n / 2 + ") -> q");
+    assertNotNull(proof);
+    assertNotNull(prove(from + " |- " + to));
+  }
+}
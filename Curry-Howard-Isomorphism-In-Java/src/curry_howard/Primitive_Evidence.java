@@ -0,0 +1,439 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+
+public class Primitive_Evidence {
+  /**
+   * Evidence that is a number.
+   *
+   * The classes of Curry_Howard_Isomorphism are generic, and Java generics
+   * only range over objects, so evidence of type int, long or double is
+   * boxed (an Integer, Long or Double object is allocated) every time it goes
+   * through ^i, ^e1, ^e2, vi1, vi2 or ve.
+   *
+   * The classes below are the same rules, specialized by hand for primitive
+   * evidence, the same way java.util.function has IntFunction,
+   * ToLongFunction and so on next to Function:
+   *
+   * <pre>
+   *   IntAnd, LongAnd, DoubleAnd, LongDoubleAnd     int ^ int, ..., long ^ double
+   *   IntOr, LongOr, DoubleOr                       int v int, ...
+   *   IntDeduction, LongDeduction, DoubleDeduction  int |- T2, ...
+   *   ToIntDeduction, ToLongDeduction, ...          T1 |- int, ...
+   * </pre>
+   *
+   * Each of them is still an ordinary piece of evidence: the And classes
+   * extend And (so they can be passed wherever an And<Integer, Integer> etc.
+   * is expected, and and_e1()/and_e2() box on demand), the Deduction
+   * interfaces extend Deduction (so they can be given to Imply and to
+   * Or.or_e), and the Or classes convert to an Or with toOr(). Only the
+   * primitive methods (and_e1AsInt(), or_e(IntDeduction, IntDeduction),
+   * applyAsLong(), ...) avoid the boxing.
+   **/
+
+  /*****************************************************************/
+  /** Primitive Deductions: int |- T2, T1 |- long, ...             */
+  /*****************************************************************/
+
+  /**
+   * A subproof int |- T2. Implement deduction_step(int).
+   **/
+  @FunctionalInterface
+  public interface IntDeduction<T2> extends Deduction<Integer, T2> {
+    T2 deduction_step(int assumptions);
+
+    default T2 apply(final int v1) {
+      return deduction_step(v1);
+    }
+
+    @Override
+    default T2 deduction_step(final Integer assumptions) {
+      return deduction_step(assumptions.intValue());
+    }
+  }
+
+  /**
+   * A subproof long |- T2. Implement deduction_step(long).
+   **/
+  @FunctionalInterface
+  public interface LongDeduction<T2> extends Deduction<Long, T2> {
+    T2 deduction_step(long assumptions);
+
+    default T2 apply(final long v1) {
+      return deduction_step(v1);
+    }
+
+    @Override
+    default T2 deduction_step(final Long assumptions) {
+      return deduction_step(assumptions.longValue());
+    }
+  }
+
+  /**
+   * A subproof double |- T2. Implement deduction_step(double).
+   **/
+  @FunctionalInterface
+  public interface DoubleDeduction<T2> extends Deduction<Double, T2> {
+    T2 deduction_step(double assumptions);
+
+    default T2 apply(final double v1) {
+      return deduction_step(v1);
+    }
+
+    @Override
+    default T2 deduction_step(final Double assumptions) {
+      return deduction_step(assumptions.doubleValue());
+    }
+  }
+
+  /**
+   * A subproof T1 |- int. Implement deduction_stepAsInt.
+   **/
+  @FunctionalInterface
+  public interface ToIntDeduction<T1> extends Deduction<T1, Integer> {
+    int deduction_stepAsInt(T1 assumptions);
+
+    default int applyAsInt(final T1 v1) {
+      return deduction_stepAsInt(v1);
+    }
+
+    @Override
+    default Integer deduction_step(final T1 assumptions) {
+      return deduction_stepAsInt(assumptions);
+    }
+  }
+
+  /**
+   * A subproof T1 |- long. Implement deduction_stepAsLong.
+   **/
+  @FunctionalInterface
+  public interface ToLongDeduction<T1> extends Deduction<T1, Long> {
+    long deduction_stepAsLong(T1 assumptions);
+
+    default long applyAsLong(final T1 v1) {
+      return deduction_stepAsLong(v1);
+    }
+
+    @Override
+    default Long deduction_step(final T1 assumptions) {
+      return deduction_stepAsLong(assumptions);
+    }
+  }
+
+  /**
+   * A subproof T1 |- double. Implement deduction_stepAsDouble.
+   **/
+  @FunctionalInterface
+  public interface ToDoubleDeduction<T1> extends Deduction<T1, Double> {
+    double deduction_stepAsDouble(T1 assumptions);
+
+    default double applyAsDouble(final T1 v1) {
+      return deduction_stepAsDouble(v1);
+    }
+
+    @Override
+    default Double deduction_step(final T1 assumptions) {
+      return deduction_stepAsDouble(assumptions);
+    }
+  }
+
+  /*****************************************************************/
+  /** Primitive And: int ^ int, long ^ long, ...                    */
+  /*****************************************************************/
+
+  /**
+   * Evidence of int ^ int. The constructor is "^i", and_e1AsInt() and
+   * and_e2AsInt() are "^e1" and "^e2" without boxing.
+   **/
+  public static class IntAnd extends And<Integer, Integer> {
+    private final int v1;
+    private final int v2;
+
+    public IntAnd(final int x, final int y) {
+      this.v1 = x;
+      this.v2 = y;
+      if (Rule_Hooks.listener != null) {
+        and_i(x, y);
+      }
+    }
+
+    public int and_e1AsInt() {
+      return this.v1;
+    }
+
+    public int and_e2AsInt() {
+      return this.v2;
+    }
+
+    @Override
+    protected Integer first() {
+      return this.v1;
+    }
+
+    @Override
+    protected Integer second() {
+      return this.v2;
+    }
+  }
+
+  /**
+   * Evidence of long ^ long.
+   **/
+  public static class LongAnd extends And<Long, Long> {
+    private final long v1;
+    private final long v2;
+
+    public LongAnd(final long x, final long y) {
+      this.v1 = x;
+      this.v2 = y;
+      if (Rule_Hooks.listener != null) {
+        and_i(x, y);
+      }
+    }
+
+    public long and_e1AsLong() {
+      return this.v1;
+    }
+
+    public long and_e2AsLong() {
+      return this.v2;
+    }
+
+    @Override
+    protected Long first() {
+      return this.v1;
+    }
+
+    @Override
+    protected Long second() {
+      return this.v2;
+    }
+  }
+
+  /**
+   * Evidence of double ^ double.
+   **/
+  public static class DoubleAnd extends And<Double, Double> {
+    private final double v1;
+    private final double v2;
+
+    public DoubleAnd(final double x, final double y) {
+      this.v1 = x;
+      this.v2 = y;
+      if (Rule_Hooks.listener != null) {
+        and_i(x, y);
+      }
+    }
+
+    public double and_e1AsDouble() {
+      return this.v1;
+    }
+
+    public double and_e2AsDouble() {
+      return this.v2;
+    }
+
+    @Override
+    protected Double first() {
+      return this.v1;
+    }
+
+    @Override
+    protected Double second() {
+      return this.v2;
+    }
+  }
+
+  /**
+   * Evidence of long ^ double.
+   **/
+  public static class LongDoubleAnd extends And<Long, Double> {
+    private final long v1;
+    private final double v2;
+
+    public LongDoubleAnd(final long x, final double y) {
+      this.v1 = x;
+      this.v2 = y;
+      if (Rule_Hooks.listener != null) {
+        and_i(x, y);
+      }
+    }
+
+    public long and_e1AsLong() {
+      return this.v1;
+    }
+
+    public double and_e2AsDouble() {
+      return this.v2;
+    }
+
+    @Override
+    protected Long first() {
+      return this.v1;
+    }
+
+    @Override
+    protected Double second() {
+      return this.v2;
+    }
+  }
+
+  /*****************************************************************/
+  /** Primitive Or: int v int, long v long, ...                     */
+  /*****************************************************************/
+
+  /**
+   * Evidence of int v int.
+   *
+   * Or<T1,T2> is closed (only Left and Right extend it), so the tag here is a
+   * boolean field rather than the run-time class. or_i1/or_i2 are "vi1" and
+   * "vi2", or_e with two IntDeductions is "ve" without boxing, and toOr()
+   * gives the equivalent (boxed) Or<Integer, Integer> for code that works
+   * with Or.or_e.
+   **/
+  public static final class IntOr {
+    private final boolean left;
+    private final int v;
+
+    private IntOr(final boolean left, final int v) {
+      this.left = left;
+      this.v = v;
+    }
+
+    public static IntOr or_i1(final int v1) {
+      return new IntOr(true, v1);
+    }
+
+    public static IntOr or_i2(final int v2) {
+      return new IntOr(false, v2);
+    }
+
+    public boolean isLeft() {
+      return this.left;
+    }
+
+    public <T3> T3 or_e(final IntDeduction<T3> d1, final IntDeduction<T3> d2) {
+      return this.left ? d1.apply(this.v) : d2.apply(this.v);
+    }
+
+    public Or<Integer, Integer> toOr() {
+      return this.left ? Or.<Integer, Integer> or_i1(this.v)
+          : Or.<Integer, Integer> or_i2(this.v);
+    }
+  }
+
+  /**
+   * Evidence of long v long.
+   **/
+  public static final class LongOr {
+    private final boolean left;
+    private final long v;
+
+    private LongOr(final boolean left, final long v) {
+      this.left = left;
+      this.v = v;
+    }
+
+    public static LongOr or_i1(final long v1) {
+      return new LongOr(true, v1);
+    }
+
+    public static LongOr or_i2(final long v2) {
+      return new LongOr(false, v2);
+    }
+
+    public boolean isLeft() {
+      return this.left;
+    }
+
+    public <T3> T3 or_e(final LongDeduction<T3> d1, final LongDeduction<T3> d2) {
+      return this.left ? d1.apply(this.v) : d2.apply(this.v);
+    }
+
+    public Or<Long, Long> toOr() {
+      return this.left ? Or.<Long, Long> or_i1(this.v)
+          : Or.<Long, Long> or_i2(this.v);
+    }
+  }
+
+  /**
+   * Evidence of double v double.
+   **/
+  public static final class DoubleOr {
+    private final boolean left;
+    private final double v;
+
+    private DoubleOr(final boolean left, final double v) {
+      this.left = left;
+      this.v = v;
+    }
+
+    public static DoubleOr or_i1(final double v1) {
+      return new DoubleOr(true, v1);
+    }
+
+    public static DoubleOr or_i2(final double v2) {
+      return new DoubleOr(false, v2);
+    }
+
+    public boolean isLeft() {
+      return this.left;
+    }
+
+    public <T3> T3 or_e(final DoubleDeduction<T3> d1,
+        final DoubleDeduction<T3> d2) {
+      return this.left ? d1.apply(this.v) : d2.apply(this.v);
+    }
+
+    public Or<Double, Double> toOr() {
+      return this.left ? Or.<Double, Double> or_i1(this.v)
+          : Or.<Double, Double> or_i2(this.v);
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  /**
+   * <pre>
+   * int ^ int  |-  int ^ int        (the and_example, with ints)
+   * </pre>
+   **/
+  @Test
+  public void testIntAnd() {
+    final IntAnd pANDq = new IntAnd(1, 2);
+    final IntAnd qANDp = new IntAnd(pANDq.and_e2AsInt(), pANDq.and_e1AsInt());
+    assertEquals(2, qANDp.and_e1AsInt());
+    // still an And<Integer, Integer> for the generic rules
+    final And<Integer, Integer> boxed = qANDp;
+    assertEquals(Integer.valueOf(1), boxed.and_e2());
+  }
+
+  @Test
+  public void testPrimitiveDeductions() {
+    final ToLongDeduction<LongDoubleAnd> sum = (LongDoubleAnd a) -> a.and_e1AsLong()
+        + (long) a.and_e2AsDouble();
+    assertEquals(5L, sum.applyAsLong(new LongDoubleAnd(3L, 2.0)));
+    // a ToLongDeduction is a Deduction<LongDoubleAnd, Long>, so it can be used by ->i/->e
+    final Imply<LongDoubleAnd, Long> imply = new Imply<LongDoubleAnd, Long>(sum);
+    assertEquals(Long.valueOf(5L), imply.imply_e(new LongDoubleAnd(3L, 2.0)));
+
+    final IntDeduction<Boolean> even = (int v) -> (v & 1) == 0;
+    final IntDeduction<Boolean> odd = (int v) -> (v & 1) == 1;
+    final IntOr n = IntOr.or_i2(3);
+    assertFalse(n.isLeft());
+    assertTrue(n.or_e(even, odd));
+    // ...and an IntDeduction is a Deduction<Integer, T3> for Or.or_e
+    assertTrue(n.toOr().or_e(even, odd));
+  }
+}
@@ -0,0 +1,585 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Proof_Search.Proof;
+import curry_howard.Proof_Terms.Term;
+import curry_howard.Propositions.Proposition;
+import curry_howard.Propositions.Sequent;
+
+public class Proof_Cache {
+  /**
+   * Proofs that are found once, not on every run.
+   *
+   * Proof_Search starts from nothing each time, so a program that proves
+   * the same sequents on every run (the ones behind example1 to example4,
+   * say) searches for them every time. A Cache keeps what Proof_Search
+   * found in a directory and answers from there next time:
+   *
+   * <pre>
+   *   try (Cache cache = Proof_Cache.open(dir, 64 << 20)) {
+   *     Proof proof = cache.prove("(p ^ q) -> r, p -> q, p |- r");
+   *   }
+   * </pre>
+   *
+   * Entries are keyed by the canonical form of the sequent: its atoms
+   * renamed a1, a2, ... in the order they first appear, premises first,
+   * then the conclusion (canonical()). The names of atoms make no
+   * difference to a proof Term, so "s ^ t |- t ^ s" is answered by the proof
+   * found for "p ^ q |- q ^ p". That a sequent has no proof is remembered
+   * too.
+   *
+   * The directory holds two files. proofs.log is only ever appended to:
+   * each entry is a record of its length, a CRC-32, the key and the proof
+   * Term (as Evidence_Codec writes it). proofs.idx is a snapshot of where
+   * each key's record is, written on close() and after compaction, so that
+   * open() reads the index and only scans the records appended since. A
+   * record cut short or damaged (by a crash mid-write) ends the log: it and
+   * anything after it are dropped when the cache is opened. Appends are not
+   * forced to disk one by one; close() forces them.
+   *
+   * Once proofs.log grows past maxBytes, compact() rewrites it with one
+   * record per key, leaving out the least recently used entries until it is
+   * down to three quarters of maxBytes. compact() can also be called
+   * directly.
+   *
+   * A Cache is safe to share between threads; proofs are searched for
+   * outside of its lock.
+   **/
+
+  private static final byte[] LOG_MAGIC = { 'C', 'H', 'P', 'L' };
+  private static final byte[] INDEX_MAGIC = { 'C', 'H', 'P', 'I' };
+  private static final byte VERSION = 1;
+  // magic, version, generation
+  private static final int LOG_HEADER = 4 + 1 + 8;
+  // length and CRC-32 of the body
+  private static final int RECORD_HEADER = 4 + 4;
+
+  private static final byte PROOF = 1;
+  private static final byte NO_PROOF = 2;
+
+  /**
+   * 'sequent' with its atoms renamed a1, a2, ... in the order they first
+   * appear, written out as a Sequent.
+   **/
+  public static String canonical(final Sequent sequent) {
+    final Map<String, Proposition> names = new LinkedHashMap<String, Proposition>();
+    final List<Proposition> premises = new ArrayList<Proposition>();
+    for (final Proposition p : sequent.premises()) {
+      premises.add(rename(p, names));
+    }
+    return new Sequent(premises, rename(sequent.conclusion(), names))
+        .toString();
+  }
+
+  private static Proposition rename(final Proposition p,
+      final Map<String, Proposition> names) {
+    switch (p.kind()) {
+    case ATOM:
+      Proposition a = names.get(p.name());
+      if (a == null) {
+        a = Proposition.atom("a" + (names.size() + 1));
+        names.put(p.name(), a);
+      }
+      return a;
+    case AND:
+      return Proposition.and(rename(p.left(), names), rename(p.right(), names));
+    case OR:
+      return Proposition.or(rename(p.left(), names), rename(p.right(), names));
+    default:
+      return Proposition.imply(rename(p.left(), names),
+          rename(p.right(), names));
+    }
+  }
+
+  /**
+   * The cache in 'directory' (created if need be), compacted whenever its
+   * log grows past 'maxBytes'.
+   **/
+  public static Cache open(final Path directory, final long maxBytes)
+      throws IOException {
+    if (maxBytes <= LOG_HEADER) {
+      throw new IllegalArgumentException("maxBytes too small: " + maxBytes);
+    }
+    Files.createDirectories(directory);
+    return new Cache(directory, maxBytes);
+  }
+
+  public static final class Cache implements Closeable {
+    private final Path log;
+    private final Path index;
+    private final long maxBytes;
+    // least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(
+        16, 0.75f, true);
+    private FileChannel channel;
+    private long generation;
+    private long end;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    Cache(final Path directory, final long maxBytes) throws IOException {
+      this.log = directory.resolve("proofs.log");
+      this.index = directory.resolve("proofs.idx");
+      this.maxBytes = maxBytes;
+      if (!Files.exists(this.log) || Files.size(this.log) < LOG_HEADER) {
+        create(this.log, new Random().nextLong()).close();
+      }
+      this.channel = FileChannel.open(this.log, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      try {
+        final ByteBuffer header = read(0, LOG_HEADER);
+        if (!magic(header, LOG_MAGIC) || header.get() != VERSION) {
+          throw new IOException(this.log + " is not a proof cache");
+        }
+        this.generation = header.getLong();
+        scan(loadIndex());
+      } catch (final IOException | RuntimeException e) {
+        this.channel.close();
+        throw e;
+      }
+    }
+
+    /** A proof of 'sequent', from the cache if it is there. */
+    public Proof prove(final String sequent) {
+      return prove(Sequent.parse(sequent));
+    }
+
+    /**
+     * A proof of 'sequent', or null if there is none: from the cache if it
+     * is there, else found by Proof_Search and added to the cache.
+     *
+     * @throws UncheckedIOException if the cache cannot be read or written
+     **/
+    public Proof prove(final Sequent sequent) {
+      final String key = canonical(sequent);
+      final Optional<Term> cached;
+      synchronized (this) {
+        cached = lookup(key);
+      }
+      if (cached != null) {
+        this.hits.increment();
+        return cached.isPresent() ? new Proof(sequent, cached.get()) : null;
+      }
+      this.misses.increment();
+      final Proof proof = Proof_Search.prove(sequent);
+      synchronized (this) {
+        if (!this.entries.containsKey(key)) {
+          try {
+            append(key, proof);
+          } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      }
+      return proof;
+    }
+
+    /** Number of sequents answered from the cache. */
+    public long hits() {
+      return this.hits.sum();
+    }
+
+    /** Number of sequents that had to be searched for. */
+    public long misses() {
+      return this.misses.sum();
+    }
+
+    /** Number of entries left out by compaction to stay within maxBytes. */
+    public long evictions() {
+      return this.evictions.sum();
+    }
+
+    /** Number of sequents in the cache. */
+    public synchronized int size() {
+      return this.entries.size();
+    }
+
+    /** The size of the log, in bytes. */
+    public synchronized long bytes() {
+      return this.end;
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each key, leaving out
+     * the least recently used while it is larger than maxBytes.
+     **/
+    public synchronized void compact() throws IOException {
+      compact(this.maxBytes);
+    }
+
+    /** Writes the index and closes the log. */
+    @Override
+    public synchronized void close() throws IOException {
+      if (this.channel.isOpen()) {
+        try {
+          this.channel.force(false);
+          writeIndex();
+        } finally {
+          this.channel.close();
+        }
+      }
+    }
+
+    /**
+     * The Term stored for 'key', Optional.empty() if it has no proof, or
+     * null if it is not in the cache.
+     **/
+    private Optional<Term> lookup(final String key) {
+      final Entry e = this.entries.get(key);
+      if (e == null) {
+        return null;
+      }
+      try {
+        final ByteBuffer body = body(e.offset);
+        if (body == null) {
+          throw new IOException("damaged record at " + e.offset + " of "
+              + this.log);
+        }
+        final byte type = body.get();
+        if (type == NO_PROOF) {
+          return Optional.empty();
+        }
+        final int keyLength = body.getInt();
+        body.position(body.position() + keyLength);
+        final Evidence_Codec.View view = Evidence_Codec.view(body.slice());
+        return Optional.of(view.readTerm(view.root()));
+      } catch (final IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    private void append(final String key, final Proof proof)
+        throws IOException {
+      final byte[] k = key.getBytes(StandardCharsets.UTF_8);
+      final byte[] term = proof == null ? new byte[0]
+          : Evidence_Codec.encode(proof.term());
+      final ByteBuffer body = ByteBuffer.allocate(1 + 4 + k.length
+          + term.length);
+      body.put(proof == null ? NO_PROOF : PROOF).putInt(k.length).put(k)
+          .put(term);
+      final Entry e = new Entry(this.end, RECORD_HEADER + body.capacity());
+      write(record(body.array()), this.end);
+      this.end += e.length;
+      this.entries.put(key, e);
+      if (this.end > this.maxBytes) {
+        compact(this.maxBytes * 3 / 4);
+      }
+    }
+
+    private static ByteBuffer record(final byte[] body) {
+      final CRC32 crc = new CRC32();
+      crc.update(body);
+      final ByteBuffer r = ByteBuffer.allocate(RECORD_HEADER + body.length);
+      r.putInt(body.length).putInt((int) crc.getValue()).put(body);
+      r.flip();
+      return r;
+    }
+
+    /**
+     * The body of the record at 'offset', or null if it runs past the end
+     * of the log or fails its CRC.
+     **/
+    private ByteBuffer body(final long offset) throws IOException {
+      if (offset + RECORD_HEADER > this.end) {
+        return null;
+      }
+      final ByteBuffer header = read(offset, RECORD_HEADER);
+      final int length = header.getInt();
+      final int crc = header.getInt();
+      if (length < 5 || offset + RECORD_HEADER + length > this.end) {
+        return null;
+      }
+      final ByteBuffer body = read(offset + RECORD_HEADER, length);
+      final CRC32 check = new CRC32();
+      check.update(body.array());
+      return (int) check.getValue() == crc ? body : null;
+    }
+
+    /**
+     * Adds the records from 'from' to the end of the log, and cuts the log
+     * short at the first that is incomplete or damaged.
+     **/
+    private void scan(long from) throws IOException {
+      this.end = this.channel.size();
+      ByteBuffer body;
+      while ((body = body(from)) != null) {
+        body.get();
+        final byte[] k = new byte[body.getInt()];
+        body.get(k);
+        final int length = RECORD_HEADER + body.capacity();
+        this.entries.put(new String(k, StandardCharsets.UTF_8), new Entry(
+            from, length));
+        from += length;
+      }
+      if (from < this.end) {
+        this.channel.truncate(from);
+        this.end = from;
+      }
+    }
+
+    /**
+     * Reads the index if it is for this log, and returns where the records
+     * it does not cover begin.
+     **/
+    private long loadIndex() throws IOException {
+      if (!Files.exists(this.index)) {
+        return LOG_HEADER;
+      }
+      final ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(this.index));
+      try {
+        if (!magic(in, INDEX_MAGIC) || in.get() != VERSION
+            || in.getLong() != this.generation) {
+          return LOG_HEADER;
+        }
+        final long covered = in.getLong();
+        if (covered > this.channel.size()) {
+          return LOG_HEADER;
+        }
+        for (int n = in.getInt(); n > 0; n--) {
+          final byte[] k = new byte[in.getInt()];
+          in.get(k);
+          this.entries.put(new String(k, StandardCharsets.UTF_8), new Entry(
+              in.getLong(), in.getInt()));
+        }
+        return covered;
+      } catch (final RuntimeException e) {
+        // cut short: scan the whole log instead
+        this.entries.clear();
+        return LOG_HEADER;
+      }
+    }
+
+    private void writeIndex() throws IOException {
+      int size = 4 + 1 + 8 + 8 + 4;
+      final List<byte[]> keys = new ArrayList<byte[]>(this.entries.size());
+      for (final String key : this.entries.keySet()) {
+        final byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        keys.add(k);
+        size += 4 + k.length + 8 + 4;
+      }
+      final ByteBuffer out = ByteBuffer.allocate(size);
+      out.put(INDEX_MAGIC).put(VERSION).putLong(this.generation)
+          .putLong(this.end).putInt(this.entries.size());
+      final Iterator<byte[]> k = keys.iterator();
+      for (final Entry e : this.entries.values()) {
+        final byte[] key = k.next();
+        out.putInt(key.length).put(key).putLong(e.offset).putInt(e.length);
+      }
+      final Path tmp = this.index.resolveSibling(this.index.getFileName()
+          + ".tmp");
+      Files.write(tmp, out.array());
+      Files.move(tmp, this.index, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copies the live records, most recently used last, to a new log of a
+     * new generation, leaving out the least recently used while the total
+     * is over 'budget' (and the log over maxBytes), then replaces the log
+     * and the index with it.
+     **/
+    private void compact(final long budget) throws IOException {
+      long live = LOG_HEADER;
+      for (final Entry e : this.entries.values()) {
+        live += e.length;
+      }
+      final long target = live > this.maxBytes ? budget : live;
+      final Iterator<Entry> it = this.entries.values().iterator();
+      while (live > target && it.hasNext()) {
+        live -= it.next().length;
+        it.remove();
+        this.evictions.increment();
+      }
+      final long generation = new Random().nextLong();
+      final Path tmp = this.log.resolveSibling(this.log.getFileName() + ".tmp");
+      try (FileChannel out = create(tmp, generation)) {
+        long at = LOG_HEADER;
+        for (final Entry e : this.entries.values()) {
+          final ByteBuffer r = read(e.offset, e.length);
+          while (r.hasRemaining()) {
+            out.write(r, at + r.position());
+          }
+          e.offset = at;
+          at += e.length;
+        }
+        out.force(false);
+      }
+      this.channel.close();
+      Files.move(tmp, this.log, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      this.channel = FileChannel.open(this.log, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      this.generation = generation;
+      this.end = this.channel.size();
+      writeIndex();
+    }
+
+    private static FileChannel create(final Path file, final long generation)
+        throws IOException {
+      final FileChannel c = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER);
+      header.put(LOG_MAGIC).put(VERSION).putLong(generation).flip();
+      while (header.hasRemaining()) {
+        c.write(header, header.position());
+      }
+      return c;
+    }
+
+    private ByteBuffer read(final long offset, final int length)
+        throws IOException {
+      final ByteBuffer b = ByteBuffer.allocate(length);
+      while (b.hasRemaining()) {
+        if (this.channel.read(b, offset + b.position()) < 0) {
+          throw new IOException("unexpected end of " + this.log);
+        }
+      }
+      b.flip();
+      return b;
+    }
+
+    private void write(final ByteBuffer b, final long offset)
+        throws IOException {
+      while (b.hasRemaining()) {
+        this.channel.write(b, offset + b.position());
+      }
+    }
+
+    private static boolean magic(final ByteBuffer b, final byte[] magic) {
+      for (final byte m : magic) {
+        if (b.get() != m) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Where a record is in the log. */
+  private static final class Entry {
+    long offset;
+    final int length;
+
+    Entry(final long offset, final int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  private static final String[] EXAMPLES = {
+      "(p ^ q) -> r, p -> q, p |- r", //                             example1
+      "p -> r, q -> r |- (p v q) -> r", //                           example2
+      "q |- p -> (q ^ p)", //                                        example3
+      "p -> (q -> r) |- (p -> q) -> (p -> r)" }; //                  example4
+
+  @Test
+  public void testWarmCache() throws IOException {
+    final Path dir = Files.createTempDirectory("proofs");
+    try {
+      try (Cache cache = open(dir, 1 << 20)) {
+        for (final String s : EXAMPLES) {
+          assertNotNull(cache.prove(s));
+        }
+        assertNull(cache.prove("|- p v (p -> q)"));
+        assertEquals(5, cache.misses());
+        // sequents are found under any names
+        final And<Q, P> qANDp = cache.prove("s ^ t |- t ^ s")
+            .evidence(new And<P, Q>(new P(), new Q()));
+        assertTrue(qANDp.and_e1() instanceof Q);
+        assertEquals("a1 ^ a2 |- a2 ^ a1", canonical(Sequent.parse(
+            "s ^ t |- t ^ s")));
+        assertNull(cache.prove("|- x v (x -> y)"));
+        assertEquals(6, cache.misses());
+        assertEquals(1, cache.hits());
+      }
+      // the next run finds them all, even with half a record at the end
+      try (FileChannel log = FileChannel.open(dir.resolve("proofs.log"),
+          StandardOpenOption.APPEND)) {
+        log.write(ByteBuffer.wrap(new byte[] { 0, 0, 1, 0, 42 }));
+      }
+      try (Cache cache = open(dir, 1 << 20)) {
+        assertEquals(6, cache.size());
+        for (final String s : EXAMPLES) {
+          assertNotNull(cache.prove(s));
+        }
+        assertEquals(4, cache.hits());
+        assertEquals(0, cache.misses());
+      }
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    final Path dir = Files.createTempDirectory("proofs");
+    try {
+      // chains p1, p1 -> p2, ..., p(n-1) -> pn |- pn, of growing size
+      String chain = "p1";
+      try (Cache cache = open(dir, 4096)) {
+        for (int n = 2; n <= 60; n++) {
+          chain += ", p" + (n - 1) + " -> p" + n;
+          assertNotNull(cache.prove(chain + " |- p" + n));
+          assertTrue(cache.bytes() <= 4096);
+        }
+        assertTrue(cache.evictions() > 0);
+        assertEquals(59, cache.size() + cache.evictions());
+        // the most recent are kept
+        cache.prove(chain + " |- p60");
+        assertEquals(1, cache.hits());
+      }
+      try (Cache cache = open(dir, 4096)) {
+        cache.prove(chain + " |- p60");
+        assertEquals(1, cache.hits());
+      }
+    } finally {
+      delete(dir);
+    }
+  }
+
+  private static void delete(final Path dir) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+      for (final Path f : files) {
+        Files.delete(f);
+      }
+    }
+    Files.delete(dir);
+  }
+}
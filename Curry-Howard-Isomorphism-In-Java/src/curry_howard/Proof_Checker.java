@@ -0,0 +1,647 @@
+package curry_howard;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import curry_howard.Propositions.Proposition;
+import curry_howard.Propositions.Proposition.Kind;
+import curry_howard.Propositions.Sequent;
+
+public class Proof_Checker {
+  /**
+   * Checking the line-numbered proofs in the documentation.
+   *
+   * Each example of Curry_Howard_Isomorphism documents its proof as a table,
+   * one line per step: a line number, the proposition that step proves, and
+   * the rule that justifies it with the lines (or boxes, a-b) it uses. Each
+   * "..." in front of a line puts it one box deeper; a box starts with an
+   * assumption and ends at the last line before the proof leaves it (or
+   * before another assumption starts a new box at the same depth):
+   *
+   * <pre>
+   *   p,  (q ^ p) -> r  |-  q -> r
+   *
+   *   1. p                      premise
+   *   2. (q ^ p) -> r           premise
+   *   ... 3. q                  assumption
+   *   ... 4. q ^ p              ^i 3,1
+   *   ... 5. r                  ->e 2,4
+   *   6. q -> r                 ->i 3-5
+   * </pre>
+   *
+   * check() reads such a proof and verifies every line against the rule it
+   * names, exactly as And, Or and Imply model them:
+   *
+   * <pre>
+   *   premise             (outside any box) one of the sequent's premises
+   *   assumption          starts a box
+   *   ^i a,b              a ^ b
+   *   ^e1 a, ^e2 a        the left or right half of a ^ b
+   *   vi1 a, vi2 a        a v _, _ v a
+   *   ve a,b-c,d-e        a is t1 v t2, box b-c assumes t1 and box d-e
+   *                       assumes t2, and both boxes conclude this line
+   *   ->i a-b             box a-b assumes t1 and concludes t2: t1 -> t2
+   *   ->e a,b             a is t1 -> this line, b is t1 (in either order)
+   * </pre>
+   *
+   * and that every line it uses is still in scope: earlier, and not inside a
+   * box that has been closed. If a sequent ("premises |- conclusion") comes
+   * first, the last line must prove its conclusion. Text after "..." at the
+   * end of a line, blank lines and lines that are not numbered are ignored,
+   * as is the leading "*" of a doc comment, so a proof can be checked right
+   * out of the documentation.
+   *
+   * The proof is read in one pass. Only the lines that can still be used are
+   * kept, in a table ordered by line number; when a box closes its lines are
+   * dropped and only its first and last propositions are kept, so memory
+   * grows with the proof's outermost lines rather than with all of them.
+   **/
+
+  public static final class InvalidProofException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long line;
+
+    InvalidProofException(final long line, final String message) {
+      super("line " + line + ": " + message);
+      this.line = line;
+    }
+
+    /** The line of the input (counting from 1) that is wrong. */
+    public long line() {
+      return this.line;
+    }
+  }
+
+  public static final class Result {
+    private final long lines;
+    private final Proposition conclusion;
+
+    Result(final long lines, final Proposition conclusion) {
+      this.lines = lines;
+      this.conclusion = conclusion;
+    }
+
+    /** Number of proof lines checked. */
+    public long lines() {
+      return this.lines;
+    }
+
+    /** What the last line proves. */
+    public Proposition conclusion() {
+      return this.conclusion;
+    }
+  }
+
+  /**
+   * Checks the proof read from 'in'.
+   *
+   * @throws InvalidProofException at the first line that is wrong
+   **/
+  public static Result check(final Reader in) throws IOException {
+    final BufferedReader lines = in instanceof BufferedReader
+        ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+    final Checker checker = new Checker();
+    String line;
+    while ((line = lines.readLine()) != null) {
+      checker.line(line);
+    }
+    return checker.end();
+  }
+
+  /** Checks the proof in 'file' (UTF-8). */
+  public static Result check(final Path file) throws IOException {
+    try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return check(in);
+    }
+  }
+
+  private static final String[] RULES = { "premise", "assumption", "^i", "^e1",
+      "^e2", "vi1", "vi2", "ve", "->i", "->e", "-->i", "-->e" };
+
+  /**
+   * One numbered line of a proof, as written: its number, how many boxes
+   * deep it is, and the proposition, rule and references that follow. If
+   * the rest of the line cannot be read, 'problem' says why.
+   **/
+  static final class Line {
+    final long number;
+    final int depth;
+    final Proposition proposition;
+    final String rule;
+    // pairs: {n,n} for line n, {a,b} for box a-b
+    final long[] refs;
+    // 'l' for a line, 'b' for a box, e.g. "l,b,b" for ve; "" if none
+    final String shape;
+    final String problem;
+
+    private Line(final long number, final int depth,
+        final Proposition proposition, final String rule, final long[] refs,
+        final String shape, final String problem) {
+      this.number = number;
+      this.depth = depth;
+      this.proposition = proposition;
+      this.rule = rule;
+      this.refs = refs;
+      this.shape = shape;
+      this.problem = problem;
+    }
+
+    private static Line problem(final long number, final int depth,
+        final String problem) {
+      return new Line(number, depth, null, null, null, null, problem);
+    }
+
+    /** The line 'text' if it is numbered, else null. */
+    static Line read(final String text) {
+      int i = start(text);
+      // "..." once per box
+      int d = 0;
+      while (text.startsWith("...", i)) {
+        d++;
+        i = skipSpaces(text, i + 3);
+      }
+      if (i >= text.length() || !isDigit(text.charAt(i))) {
+        return null;
+      }
+      long n = 0;
+      while (i < text.length() && isDigit(text.charAt(i))) {
+        n = n * 10 + text.charAt(i++) - '0';
+      }
+      if (i >= text.length() || text.charAt(i) != '.') {
+        return problem(n, d, "'.' expected after the line number");
+      }
+      i++;
+      int end = text.indexOf("...", i);
+      if (end < 0) {
+        end = text.length();
+      }
+      // the rule is the last word that names one; its references follow it
+      final String[] words = text.substring(i, end).trim().split("\\s+");
+      int k = words.length - 1;
+      while (k > 0 && Arrays.asList(RULES).indexOf(words[k]) < 0) {
+        k--;
+      }
+      if (k <= 0) {
+        return problem(n, d, "a proposition and a rule expected");
+      }
+      final String rule = words[k];
+      final StringBuilder refs = new StringBuilder();
+      for (int j = k + 1; j < words.length; j++) {
+        if (refs.length() > 0) {
+          refs.append(' ');
+        }
+        refs.append(words[j]);
+      }
+      final int formulaEnd = text.lastIndexOf(rule, end);
+      final Proposition p;
+      try {
+        p = Proposition.parse(text, i, formulaEnd);
+      } catch (IllegalArgumentException e) {
+        return problem(n, d, e.getMessage());
+      }
+      if (refs.length() == 0) {
+        return new Line(n, d, p, rule, new long[0], "", null);
+      }
+      final String[] items = refs.toString().split(",", -1);
+      final long[] r = new long[items.length * 2];
+      for (int j = 0; j < items.length; j++) {
+        // "1 2" is not line 12
+        if (items[j].indexOf(' ') >= 0) {
+          return problem(n, d, "references are separated by ',' only, not '"
+              + refs + "'");
+        }
+        final int dash = items[j].indexOf('-');
+        try {
+          if (dash < 0) {
+            r[2 * j] = r[2 * j + 1] = Long.parseLong(items[j]);
+          } else {
+            r[2 * j] = Long.parseLong(items[j].substring(0, dash));
+            r[2 * j + 1] = Long.parseLong(items[j].substring(dash + 1));
+          }
+        } catch (NumberFormatException e) {
+          return problem(n, d, "bad reference '" + items[j] + "'");
+        }
+      }
+      return new Line(n, d, p, rule, r, shape(items), null);
+    }
+
+    private static String shape(final String[] items) {
+      final StringBuilder sb = new StringBuilder();
+      for (final String item : items) {
+        if (sb.length() > 0) {
+          sb.append(',');
+        }
+        sb.append(item.indexOf('-') < 0 ? 'l' : 'b');
+      }
+      return sb.toString();
+    }
+
+    /** Where the text of 'line' starts, after a doc comment's "*". */
+    static int start(final String line) {
+      final int i = skipSpaces(line, 0);
+      if (i < line.length() && line.charAt(i) == '*'
+          && !line.startsWith("*/", i)) {
+        return skipSpaces(line, i + 1);
+      }
+      return i;
+    }
+
+    boolean isAssumption() {
+      return "assumption".equals(this.rule);
+    }
+  }
+
+  /**
+   * The lines and closed boxes a line can use. line() and box() throw
+   * IllegalArgumentException for ones that are not in scope.
+   **/
+  interface Scope {
+    Proposition line(long n);
+
+    /** A handle for box first-last, for assumes() and concludes(). */
+    int box(long first, long last);
+
+    Proposition assumes(int box);
+
+    Proposition concludes(int box);
+  }
+
+  /**
+   * Checks that the rule of 'l' proves its proposition from what it refers
+   * to in 'scope' (the box structure itself is the caller's business).
+   *
+   * @throws IllegalArgumentException saying what is wrong
+   **/
+  static void justify(final Line l, final Sequent sequent, final Scope scope) {
+    final long[] r = l.refs;
+    final Proposition p = l.proposition;
+    switch (l.rule) {
+    case "premise":
+      expect(l, "");
+      if (l.depth != 0) {
+        throw new IllegalArgumentException("a premise cannot be inside a box");
+      }
+      if (sequent != null && !sequent.premises().contains(p)) {
+        throw new IllegalArgumentException(p
+            + " is not a premise of the sequent");
+      }
+      break;
+    case "assumption":
+      expect(l, "");
+      break;
+    case "^i":
+      expect(l, "l,l");
+      need(p.is(Kind.AND, scope.line(r[0]), scope.line(r[2])), l);
+      break;
+    case "^e1":
+      expect(l, "l");
+      need(isKind(scope.line(r[0]), Kind.AND, p, null), l);
+      break;
+    case "^e2":
+      expect(l, "l");
+      need(isKind(scope.line(r[0]), Kind.AND, null, p), l);
+      break;
+    case "vi1":
+      expect(l, "l");
+      need(isKind(p, Kind.OR, scope.line(r[0]), null), l);
+      break;
+    case "vi2":
+      expect(l, "l");
+      need(isKind(p, Kind.OR, null, scope.line(r[0])), l);
+      break;
+    case "ve": {
+      expect(l, "l,b,b");
+      final Proposition t = scope.line(r[0]);
+      final int b1 = scope.box(r[2], r[3]);
+      final int b2 = scope.box(r[4], r[5]);
+      need(t.kind() == Kind.OR && t.left().equals(scope.assumes(b1))
+          && t.right().equals(scope.assumes(b2))
+          && p.equals(scope.concludes(b1)) && p.equals(scope.concludes(b2)),
+          l);
+      break;
+    }
+    case "->i":
+    case "-->i": {
+      expect(l, "b");
+      final int b = scope.box(r[0], r[1]);
+      need(p.is(Kind.IMPLY, scope.assumes(b), scope.concludes(b)), l);
+      break;
+    }
+    default: {
+      // ->e, -->e
+      expect(l, "l,l");
+      final Proposition a = scope.line(r[0]);
+      final Proposition b = scope.line(r[2]);
+      need(isKind(a, Kind.IMPLY, b, p) || isKind(b, Kind.IMPLY, a, p), l);
+    }
+    }
+  }
+
+  private static void expect(final Line l, final String shape) {
+    if (!l.shape.equals(shape)) {
+      throw new IllegalArgumentException("expected references of the form "
+          + (shape.isEmpty() ? "(none)" : shape.replace("l", "n").replace(
+              "b", "n-m")));
+    }
+  }
+
+  private static void need(final boolean ok, final Line l) {
+    if (!ok) {
+      throw new IllegalArgumentException(l.rule + " does not prove "
+          + l.proposition + " here");
+    }
+  }
+
+  private static boolean isKind(final Proposition p, final Kind kind,
+      final Proposition left, final Proposition right) {
+    return p.kind() == kind && (left == null || p.left().equals(left))
+        && (right == null || p.right().equals(right));
+  }
+
+  private static final class Checker implements Scope {
+    private long input;
+    private long last;
+    private int lastDepth;
+    private Sequent sequent;
+
+    // lines still in scope, by increasing line number
+    private long[] liveNo = new long[64];
+    private Proposition[] live = new Proposition[64];
+    private int liveCount;
+
+    // the first line of each open box, outermost first
+    private long[] open = new long[16];
+    private int depth;
+
+    // closed boxes still in scope, by increasing first line
+    private long[] boxFirst = new long[16];
+    private long[] boxLast = new long[16];
+    private Proposition[] boxAssumes = new Proposition[16];
+    private Proposition[] boxConcludes = new Proposition[16];
+    private int boxCount;
+
+    void line(final String text) {
+      this.input++;
+      final Line l = Line.read(text);
+      if (l == null) {
+        final int i = Line.start(text);
+        if (!text.startsWith("...", i) && this.last == 0
+            && this.sequent == null && text.indexOf("|-", i) >= 0) {
+          try {
+            this.sequent = Sequent.parse(text, i);
+          } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+          }
+        }
+        return;
+      }
+      if (l.problem != null) {
+        throw error(l.problem);
+      }
+      if (l.number != this.last + 1) {
+        throw error("line " + (this.last + 1) + " expected, not " + l.number);
+      }
+      step(l);
+    }
+
+    private void step(final Line l) {
+      final long n = l.number;
+      final int d = l.depth;
+      final boolean assumption = l.isAssumption();
+      if (assumption && d == 0) {
+        throw error("an assumption starts a box, so it needs a '...'");
+      }
+      // leave the boxes this line is not in
+      while (this.depth > (assumption ? d - 1 : d)) {
+        closeBox();
+      }
+      if (this.depth != (assumption ? d - 1 : d)) {
+        throw error(assumption ? "an assumption opens one box at a time"
+            : "only an assumption can open a box");
+      }
+      try {
+        justify(l, this.sequent, this);
+      } catch (IllegalArgumentException e) {
+        throw error(e.getMessage());
+      }
+      if (assumption) {
+        if (this.depth == this.open.length) {
+          this.open = Arrays.copyOf(this.open, this.depth * 2);
+        }
+        this.open[this.depth++] = n;
+      }
+      if (this.liveCount == this.live.length) {
+        this.live = Arrays.copyOf(this.live, this.liveCount * 2);
+        this.liveNo = Arrays.copyOf(this.liveNo, this.liveCount * 2);
+      }
+      this.live[this.liveCount] = l.proposition;
+      this.liveNo[this.liveCount++] = n;
+      this.last = n;
+      this.lastDepth = d;
+    }
+
+    Result end() {
+      if (this.last == 0) {
+        throw error("no proof");
+      }
+      if (this.lastDepth != 0) {
+        throw error("the proof ends inside a box");
+      }
+      final Proposition conclusion = this.live[this.liveCount - 1];
+      if (this.sequent != null
+          && !conclusion.equals(this.sequent.conclusion())) {
+        throw error("the proof ends with " + conclusion + ", not "
+            + this.sequent.conclusion());
+      }
+      return new Result(this.last, conclusion);
+    }
+
+    /**
+     * Closes the innermost box: its lines go out of scope, and it is kept
+     * as (first line, last line, assumption, conclusion) for ->i and ve.
+     **/
+    private void closeBox() {
+      final long first = this.open[--this.depth];
+      final int at = find(this.liveNo, this.liveCount, first);
+      final Proposition assumes = this.live[at];
+      final Proposition concludes = this.live[this.liveCount - 1];
+      final long last = this.liveNo[this.liveCount - 1];
+      Arrays.fill(this.live, at, this.liveCount, null);
+      this.liveCount = at;
+      // boxes closed inside this one are out of scope too
+      while (this.boxCount > 0 && this.boxFirst[this.boxCount - 1] > first) {
+        this.boxAssumes[--this.boxCount] = null;
+        this.boxConcludes[this.boxCount] = null;
+      }
+      if (this.boxCount == this.boxFirst.length) {
+        final int n = this.boxCount * 2;
+        this.boxFirst = Arrays.copyOf(this.boxFirst, n);
+        this.boxLast = Arrays.copyOf(this.boxLast, n);
+        this.boxAssumes = Arrays.copyOf(this.boxAssumes, n);
+        this.boxConcludes = Arrays.copyOf(this.boxConcludes, n);
+      }
+      this.boxFirst[this.boxCount] = first;
+      this.boxLast[this.boxCount] = last;
+      this.boxAssumes[this.boxCount] = assumes;
+      this.boxConcludes[this.boxCount++] = concludes;
+    }
+
+    @Override
+    public Proposition line(final long n) {
+      final int at = find(this.liveNo, this.liveCount, n);
+      if (at < 0) {
+        throw new IllegalArgumentException("line " + n
+            + " is not in scope here");
+      }
+      return this.live[at];
+    }
+
+    @Override
+    public int box(final long first, final long last) {
+      final int at = find(this.boxFirst, this.boxCount, first);
+      if (at < 0 || this.boxLast[at] != last) {
+        throw new IllegalArgumentException("there is no box " + first + "-"
+            + last + " in scope here");
+      }
+      return at;
+    }
+
+    @Override
+    public Proposition assumes(final int box) {
+      return this.boxAssumes[box];
+    }
+
+    @Override
+    public Proposition concludes(final int box) {
+      return this.boxConcludes[box];
+    }
+
+    private InvalidProofException error(final String message) {
+      return new InvalidProofException(this.input, message);
+    }
+  }
+
+  private static int find(final long[] keys, final int count, final long key) {
+    final int at = Arrays.binarySearch(keys, 0, count, key);
+    return at < 0 ? -1 : at;
+  }
+
+  private static int skipSpaces(final String s, int i) {
+    while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isDigit(final char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testDocumentedProofs() throws IOException {
+    final String source = new String(Files.readAllBytes(Paths.get("src",
+        "curry_howard", "Curry_Howard_Isomorphism.java")),
+        StandardCharsets.UTF_8);
+    int proofs = 0;
+    int at = 0;
+    while ((at = source.indexOf("Proofs ---", at)) >= 0) {
+      final int start = source.lastIndexOf('\n', at) + 1;
+      final int end = source.indexOf("</pre>", at);
+      check(new StringReader(source.substring(start, end)));
+      proofs++;
+      at = end;
+    }
+    assertEquals(8, proofs);
+  }
+
+  @Test
+  public void testInvalidProofs() throws IOException {
+    final String[] bad = {
+        // the wrong half
+        "p ^ q |- p\n1. p ^ q   premise\n2. p   ^e2 1\n",
+        // using a line of a box after it closed
+        "1. p   premise\n... 2. q   assumption\n3. q -> q   ->i 2-2\n4. q ^ p   ^i 2,1\n",
+        // a box that does not end where it is said to
+        "1. p   premise\n... 2. q   assumption\n... 3. q ^ p   ^i 2,1\n4. q -> q   ->i 2-2\n",
+        // not the sequent's conclusion
+        "p |- p ^ p\n1. p   premise\n",
+    };
+    final long[] lines = { 3, 4, 4, 2 };
+    for (int i = 0; i < bad.length; i++) {
+      try {
+        check(new StringReader(bad[i]));
+        fail(bad[i]);
+      } catch (InvalidProofException e) {
+        assertEquals(bad[i], lines[i], e.line());
+      }
+    }
+  }
+
+  @Test
+  public void testSpacedReferences() {
+    assertNotNull(Line.read("13. p   ^e1 1 2").problem);
+    assertNotNull(Line.read("13. p   ->e 1, 2").problem);
+    final Line l = Line.read("13. p   ->e 1,2");
+    assertNull(l.problem);
+    assertArrayEquals(new long[] { 1, 1, 2, 2 }, l.refs);
+  }
+
+  @Test
+  public void testLongProof() throws IOException {
+    // 1. p premise, then over and over: p -> p by a box, and ->e with line 1
+    final int blocks = 200000;
+    final Reader generated = new Reader() {
+      private int block = -1;
+      private String pending = "p |- p\n1. p   premise\n";
+      private int pos;
+
+      @Override
+      public int read(final char[] buf, final int off, final int len) {
+        if (this.pos == this.pending.length()) {
+          if (++this.block == blocks) {
+            return -1;
+          }
+          final int a = 2 + 5 * this.block;
+          this.pending = "... " + a + ". p   assumption\n"
+              + "... " + (a + 1) + ". p ^ p   ^i " + a + "," + a + "\n"
+              + "... " + (a + 2) + ". p   ^e1 " + (a + 1) + "\n"
+              + (a + 3) + ". p -> p   ->i " + a + "-" + (a + 2) + "\n"
+              + (a + 4) + ". p   ->e " + (a + 3) + ",1\n";
+          this.pos = 0;
+        }
+        final int n = Math.min(len, this.pending.length() - this.pos);
+        this.pending.getChars(this.pos, this.pos + n, buf, off);
+        this.pos += n;
+        return n;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    final Result result = check(generated);
+    assertEquals(1 + 5L * blocks, result.lines());
+    assertTrue(result.conclusion().equals(Proposition.atom("p")));
+  }
+}
@@ -0,0 +1,662 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Proof_Terms.Rule;
+import curry_howard.Proof_Terms.Term;
+
+public class Proof_Compiler {
+  /**
+   * Proof terms compiled to method handles.
+   *
+   * Proof_Terms.evaluate walks a Term every time it runs: a switch per
+   * rule, a linked list to look up each assumption, and a new Imply with a
+   * lambda for every box. compile() does that walk once and builds a
+   * java.lang.invoke.MethodHandle that does only the work left over: the
+   * premises and assumptions become its arguments, "^i" a call to the And
+   * constructor, "^e1" a call to and_e1, "ve" an isLeft() test choosing
+   * between the two boxes, and so on. The JVM compiles such a tree of
+   * handles to machine code as it would a method written by hand, so a
+   * proof that is run over and over (example1 on millions of premises)
+   * pays for the Term once.
+   *
+   * Two steps are done at compile time rather than at run time: a box that
+   * is applied right where it is written, "->e(->i([x] b), a)", simply runs
+   * b with x set to a, without building the Imply; and "ve" takes Left and
+   * Right apart directly instead of calling or_e with two lambdas. A
+   * compiled proof therefore does not report those steps to Rule_Hooks.
+   * Everything else (->i boxes passed on as evidence, ->e of premises,
+   * ^i, ...) builds and uses the same And, Or and Imply objects as the
+   * hand-written examples.
+   *
+   * Terms are hash-consed, so a proof is a DAG: the same subterm may be
+   * used in many places. Each one is compiled once per box it is used in,
+   * and when it is used more than once it is also run once: the first use
+   * stores its evidence in a small array belonging to the innermost box
+   * whose assumption it uses (or to the whole proof, if it uses none), and
+   * every later use, in that run of the box, reads it from there. Such a
+   * step is reported to Rule_Hooks once. (Imply evidence of a box that is
+   * run on several threads at once may run a shared step once per thread.)
+   *
+   * The handles take one argument per premise and per enclosing box, and a
+   * method handle can take at most 255, so a Term with more than
+   * MAX_VARIABLES of them in scope at once is refused.
+   **/
+
+  /** The most premises and assumptions a compiled Term may have in scope. */
+  public static final int MAX_VARIABLES = 250;
+
+  public static final class Compiled {
+    private final Term term;
+    private final List<String> premises;
+    private final MethodHandle handle;
+    private final MethodHandle spread;
+
+    private Compiled(final Term term, final List<String> premises,
+        final MethodHandle handle) {
+      this.term = term;
+      this.premises = premises;
+      this.handle = handle;
+      this.spread = handle.asSpreader(Object[].class, premises.size());
+    }
+
+    public Term term() {
+      return this.term;
+    }
+
+    /** The names of the premises, in the order evaluate() takes them. */
+    public List<String> premises() {
+      return this.premises;
+    }
+
+    /**
+     * The compiled Term: takes the evidence of each premise (as Objects,
+     * in the order of premises()) and returns the evidence of the Term.
+     **/
+    public MethodHandle handle() {
+      return this.handle;
+    }
+
+    /**
+     * The evidence the Term describes, given the evidence of each premise
+     * in the order of premises().
+     **/
+    @SuppressWarnings("unchecked")
+    public <T> T evaluate(final Object... evidence) {
+      if (evidence.length != this.premises.size()) {
+        throw new IllegalArgumentException(this.premises.size()
+            + " premises expected, got " + evidence.length);
+      }
+      try {
+        return (T) (Object) this.spread.invokeExact(evidence);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+  }
+
+  /**
+   * Compiles 't', whose premises are the names given.
+   *
+   * @throws IllegalArgumentException if 't' uses another premise, an
+   *     assumption outside its box, or too many variables
+   **/
+  public static Compiled compile(final Term t, final String... premises) {
+    final List<String> names = Collections.unmodifiableList(
+        new ArrayList<String>(Arrays.asList(premises)));
+    final Compiler c = new Compiler(t);
+    for (final String name : names) {
+      c.scope.add(Term.premise(name));
+    }
+    return new Compiled(t, names, c.compileProof(t));
+  }
+
+  /*****************************************************************/
+  /** Compiling */
+  /*****************************************************************/
+
+  private static final MethodHandle AND_I;
+  private static final MethodHandle AND_E1;
+  private static final MethodHandle AND_E2;
+  private static final MethodHandle OR_I1;
+  private static final MethodHandle OR_I2;
+  private static final MethodHandle IS_LEFT;
+  private static final MethodHandle LEFT;
+  private static final MethodHandle RIGHT;
+  private static final MethodHandle IMPLY_E;
+  private static final MethodHandle CLOSE;
+  private static final MethodHandle NEW_MEMO;
+  private static final MethodHandle IS_SET;
+  private static final MethodHandle GET;
+  private static final MethodHandle PUT;
+
+  static {
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    final MethodType o1 = MethodType.genericMethodType(1);
+    final MethodType o2 = MethodType.genericMethodType(2);
+    try {
+      AND_I = lookup.findConstructor(And.class,
+          MethodType.methodType(void.class, Object.class, Object.class))
+          .asType(o2);
+      AND_E1 = lookup.findVirtual(And.class, "and_e1",
+          MethodType.methodType(Object.class)).asType(o1);
+      AND_E2 = lookup.findVirtual(And.class, "and_e2",
+          MethodType.methodType(Object.class)).asType(o1);
+      OR_I1 = lookup.findStatic(Or.class, "or_i1",
+          MethodType.methodType(Or.class, Object.class)).asType(o1);
+      OR_I2 = lookup.findStatic(Or.class, "or_i2",
+          MethodType.methodType(Or.class, Object.class)).asType(o1);
+      IS_LEFT = lookup.findVirtual(Or.class, "isLeft",
+          MethodType.methodType(boolean.class)).asType(
+              MethodType.methodType(boolean.class, Object.class));
+      LEFT = lookup.findVirtual(Or.class, "left",
+          MethodType.methodType(Object.class)).asType(o1);
+      RIGHT = lookup.findVirtual(Or.class, "right",
+          MethodType.methodType(Object.class)).asType(o1);
+      IMPLY_E = lookup.findVirtual(Imply.class, "imply_e",
+          MethodType.methodType(Object.class, Object.class)).asType(o2);
+      CLOSE = lookup.findStatic(Proof_Compiler.class, "close",
+          MethodType.methodType(Imply.class, MethodHandle.class,
+              Object[].class)).asType(MethodType.methodType(Object.class,
+                  MethodHandle.class, Object[].class));
+      NEW_MEMO = lookup.findStatic(Proof_Compiler.class, "newMemo",
+          MethodType.methodType(Object.class, int.class));
+      IS_SET = lookup.findStatic(Proof_Compiler.class, "isSet",
+          MethodType.methodType(boolean.class, Object.class, int.class));
+      GET = lookup.findStatic(Proof_Compiler.class, "get",
+          MethodType.methodType(Object.class, Object.class, int.class));
+      PUT = lookup.findStatic(Proof_Compiler.class, "put",
+          MethodType.methodType(Object.class, Object.class, Object.class,
+              int.class));
+    } catch (final ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * The Imply of a compiled box: 'body' takes the assumption and the
+   * captured premises and assumptions of the enclosing boxes.
+   **/
+  private static Imply<Object, Object> close(final MethodHandle body,
+      final Object[] captured) {
+    return new Imply<Object, Object>((Object v) -> {
+      try {
+        return (Object) body.invokeExact(v, captured);
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    });
+  }
+
+  /** Stands for null evidence in a memo, where null is "not run yet". */
+  private static final Object NULL = new Object();
+
+  /** The memo of a run of a box (or of the whole proof) with 'n' slots. */
+  private static Object newMemo(final int n) {
+    return new Object[n];
+  }
+
+  private static boolean isSet(final Object memo, final int slot) {
+    return ((Object[]) memo)[slot] != null;
+  }
+
+  private static Object get(final Object memo, final int slot) {
+    final Object v = ((Object[]) memo)[slot];
+    return v == NULL ? null : v;
+  }
+
+  private static Object put(final Object v, final Object memo, final int slot) {
+    ((Object[]) memo)[slot] = v == null ? NULL : v;
+    return v;
+  }
+
+  /**
+   * A box (or the whole proof, for a null 'assumption') that keeps the
+   * evidence of its shared subterms, in a memo that its handle takes just
+   * before the assumption.
+   **/
+  private static final class Frame {
+    final Term assumption;
+    final Map<Term, Integer> slots = new IdentityHashMap<Term, Integer>();
+
+    Frame(final Term assumption) {
+      this.assumption = assumption;
+    }
+  }
+
+  /**
+   * The Terms under a root, as a DAG: which are shared (used more than
+   * once), the assumptions each one uses, and the assumptions used by the
+   * shared Terms under each one. Worked out once per Term, without
+   * recursion.
+   **/
+  private static final class Sharing {
+    private final Map<Term, Integer> uses = new IdentityHashMap<Term, Integer>();
+    private final Map<Term, Set<Term>> free = new IdentityHashMap<Term, Set<Term>>();
+    private final Map<Term, Set<Term>> sharedFree = new IdentityHashMap<Term, Set<Term>>();
+    private boolean any;
+
+    Sharing(final Term root) {
+      final ArrayDeque<Term> todo = new ArrayDeque<Term>();
+      this.uses.put(root, 1);
+      todo.push(root);
+      while (!todo.isEmpty()) {
+        final Term u = todo.pop();
+        for (int i = 0; i < u.rule().arity; i++) {
+          final Integer n = this.uses.get(u.child(i));
+          this.uses.put(u.child(i), n == null ? 1 : n + 1);
+          if (n == null) {
+            todo.push(u.child(i));
+          }
+        }
+      }
+      // children before parents
+      todo.push(root);
+      while (!todo.isEmpty()) {
+        final Term u = todo.peek();
+        if (this.free.containsKey(u)) {
+          todo.pop();
+          continue;
+        }
+        boolean ready = true;
+        for (int i = 0; i < u.rule().arity; i++) {
+          if (!this.free.containsKey(u.child(i))) {
+            todo.push(u.child(i));
+            ready = false;
+          }
+        }
+        if (!ready) {
+          continue;
+        }
+        todo.pop();
+        Set<Term> f = Collections.emptySet();
+        switch (u.rule()) {
+        case PREMISE:
+          break;
+        case ASSUMPTION:
+          f = Collections.singleton(u);
+          break;
+        case IMPLY_I:
+          f = without(this.free.get(u.child(1)), u.child(0));
+          break;
+        case OR_E:
+          f = union(this.free.get(u.child(0)), union(without(
+              this.free.get(u.child(2)), u.child(1)), without(
+              this.free.get(u.child(4)), u.child(3))));
+          break;
+        default:
+          for (int i = 0; i < u.rule().arity; i++) {
+            f = union(f, this.free.get(u.child(i)));
+          }
+        }
+        this.free.put(u, f);
+        Set<Term> sf = Collections.emptySet();
+        if (shared(u)) {
+          this.any = true;
+          sf = f;
+        }
+        for (int i = 0; i < u.rule().arity; i++) {
+          sf = union(sf, this.sharedFree.get(u.child(i)));
+        }
+        this.sharedFree.put(u, sf);
+      }
+    }
+
+    boolean shared(final Term t) {
+      return t.rule() != Rule.PREMISE && t.rule() != Rule.ASSUMPTION
+          && this.uses.get(t) > 1;
+    }
+
+    /** Whether a box of 'assumption' around 'body' needs a memo. */
+    boolean keeps(final Term assumption, final Term body) {
+      return this.sharedFree.get(body).contains(assumption);
+    }
+
+    private static Set<Term> union(final Set<Term> a, final Set<Term> b) {
+      if (a.containsAll(b)) {
+        return a;
+      }
+      if (b.containsAll(a)) {
+        return b;
+      }
+      final Set<Term> u = new HashSet<Term>(a);
+      u.addAll(b);
+      return u;
+    }
+
+    private static Set<Term> without(final Set<Term> a, final Term x) {
+      if (!a.contains(x)) {
+        return a;
+      }
+      final Set<Term> w = new HashSet<Term>(a);
+      w.remove(x);
+      return w;
+    }
+  }
+
+  /**
+   * Each Term compiles to a handle taking the variables in 'scope' (the
+   * innermost assumption first, the premises last, and the memo of each
+   * Frame just before its assumption) and returning Object.
+   **/
+  private static final class Compiler {
+    final List<Object> scope = new ArrayList<Object>();
+    private final Sharing sharing;
+    /** The handles compiled for each scope so far, the current one first. */
+    private final ArrayDeque<Map<Term, MethodHandle>> compiled = new ArrayDeque<Map<Term, MethodHandle>>();
+
+    Compiler(final Term t) {
+      this.sharing = new Sharing(t);
+      this.compiled.push(new IdentityHashMap<Term, MethodHandle>());
+    }
+
+    /** 't' as the whole proof, taking the premises. */
+    MethodHandle compileProof(final Term t) {
+      if (!this.sharing.any) {
+        return compile(t);
+      }
+      final Frame proof = new Frame(null);
+      this.scope.add(0, proof);
+      return withMemo(compile(t), proof);
+    }
+
+    MethodHandle compile(final Term t) {
+      final Map<Term, MethodHandle> here = this.compiled.peek();
+      MethodHandle h = here.get(t);
+      if (h == null) {
+        h = this.sharing.shared(t) ? shared(t) : rule(t);
+        here.put(t, h);
+      }
+      return h;
+    }
+
+    /**
+     * A shared 't': run on its first use in a run of its Frame, and read
+     * from the Frame's memo after that.
+     **/
+    private MethodHandle shared(final Term t) {
+      final Set<Term> free = this.sharing.free.get(t);
+      Frame home = null;
+      for (final Object v : this.scope) {
+        if (v instanceof Frame && (((Frame) v).assumption == null
+            || free.contains(((Frame) v).assumption))) {
+          home = (Frame) v;
+          break;
+        }
+      }
+      if (home == null) {
+        // an assumption outside its box: rule() says which
+        return rule(t);
+      }
+      Integer slot = home.slots.get(t);
+      if (slot == null) {
+        slot = home.slots.size();
+        home.slots.put(t, slot);
+      }
+      final MethodHandle memo = variable(home);
+      return MethodHandles.guardWithTest(
+          apply(MethodHandles.insertArguments(IS_SET, 1, slot), memo),
+          apply(MethodHandles.insertArguments(GET, 1, slot), memo),
+          apply(MethodHandles.insertArguments(PUT, 2, slot), rule(t), memo));
+    }
+
+    /** 'h', taking the memo of 'frame' first, with a new memo passed in. */
+    private static MethodHandle withMemo(final MethodHandle h,
+        final Frame frame) {
+      if (frame.slots.isEmpty()) {
+        return MethodHandles.insertArguments(h, 0, (Object) null);
+      }
+      return MethodHandles.foldArguments(h, MethodHandles.insertArguments(
+          NEW_MEMO, 0, frame.slots.size()));
+    }
+
+    private MethodHandle rule(final Term t) {
+      switch (t.rule()) {
+      case PREMISE:
+      case ASSUMPTION:
+        return variable((Object) t);
+      case AND_I:
+        return apply(AND_I, compile(t.child(0)), compile(t.child(1)));
+      case AND_E1:
+        return apply(AND_E1, compile(t.child(0)));
+      case AND_E2:
+        return apply(AND_E2, compile(t.child(0)));
+      case OR_I1:
+        return apply(OR_I1, compile(t.child(0)));
+      case OR_I2:
+        return apply(OR_I2, compile(t.child(0)));
+      case OR_E: {
+        final int n = this.scope.size();
+        // (or, scope...) -> isLeft(or) ? b1(left(or), scope...)
+        //                               : b2(right(or), scope...)
+        final MethodHandle test = MethodHandles.dropArguments(IS_LEFT, 1,
+            objects(n));
+        final MethodHandle left = MethodHandles.filterArguments(
+            box(t.child(1), t.child(2)), 0, LEFT);
+        final MethodHandle right = MethodHandles.filterArguments(
+            box(t.child(3), t.child(4)), 0, RIGHT);
+        return MethodHandles.foldArguments(
+            MethodHandles.guardWithTest(test, left, right), compile(t.child(0)));
+      }
+      case IMPLY_I: {
+        // close(body, [scope...]), with body taking (x, Object[] scope)
+        final int n = this.scope.size();
+        final MethodHandle body = box(t.child(0), t.child(1))
+            .asSpreader(Object[].class, n);
+        return MethodHandles.insertArguments(CLOSE, 0, body)
+            .asCollector(Object[].class, n);
+      }
+      default: {
+        final Term f = t.child(0);
+        if (f.rule() == Rule.IMPLY_I) {
+          // a box applied where it is written: b with x set to the argument
+          return MethodHandles.foldArguments(box(f.child(0), f.child(1)),
+              compile(t.child(1)));
+        }
+        return apply(IMPLY_E, compile(f), compile(t.child(1)));
+      }
+      }
+    }
+
+    /** 'body', taking the evidence of 'assumption' before the scope. */
+    private MethodHandle box(final Term assumption, final Term body) {
+      if (assumption.rule() != Rule.ASSUMPTION) {
+        throw new IllegalArgumentException("not an assumption: " + assumption);
+      }
+      final Frame frame = this.sharing.keeps(assumption, body) ? new Frame(
+          assumption) : null;
+      if (this.scope.size() + (frame == null ? 1 : 2) > MAX_VARIABLES) {
+        throw new IllegalArgumentException("more than " + MAX_VARIABLES
+            + " premises and assumptions in scope");
+      }
+      this.scope.add(0, assumption);
+      if (frame != null) {
+        this.scope.add(0, frame);
+      }
+      this.compiled.push(new IdentityHashMap<Term, MethodHandle>());
+      try {
+        final MethodHandle h = compile(body);
+        return frame == null ? h : withMemo(h, frame);
+      } finally {
+        this.compiled.pop();
+        this.scope.remove(0);
+        if (frame != null) {
+          this.scope.remove(0);
+        }
+      }
+    }
+
+    /** The premise or assumption 't', or the memo of a Frame. */
+    private MethodHandle variable(final Object v) {
+      final int i = this.scope.indexOf(v);
+      if (i < 0) {
+        final Term t = (Term) v;
+        throw new IllegalArgumentException(t.rule() == Rule.PREMISE
+            ? "no evidence for premise " + t.name()
+            : t.name() + " is not assumed here");
+      }
+      final MethodHandle h = MethodHandles.dropArguments(
+          MethodHandles.identity(Object.class), 0, objects(i));
+      return MethodHandles.dropArguments(h, i + 1,
+          objects(this.scope.size() - i - 1));
+    }
+
+    /**
+     * f(args[0](scope...), ..., args[k-1](scope...)), taking the scope
+     * once: each argument is folded in, last first, so the handle never
+     * takes more than k + scope.size() arguments on the way.
+     **/
+    private MethodHandle apply(final MethodHandle f, final MethodHandle... args) {
+      final int k = args.length;
+      MethodHandle h = MethodHandles.dropArguments(f, k,
+          objects(this.scope.size()));
+      for (int j = k - 1; j >= 0; j--) {
+        // move argument j to the front, then compute it from the scope
+        final int arity = h.type().parameterCount();
+        final int[] order = new int[arity];
+        for (int i = 0; i < arity; i++) {
+          order[i] = i < j ? i + 1 : i == j ? 0 : i;
+        }
+        h = MethodHandles.permuteArguments(h,
+            h.type().dropParameterTypes(j, j + 1).insertParameterTypes(0,
+                Object.class), order);
+        h = MethodHandles.foldArguments(h,
+            MethodHandles.dropArguments(args[j], 0, objects(j)));
+      }
+      return h;
+    }
+
+    private static List<Class<?>> objects(final int n) {
+      return Collections.<Class<?>> nCopies(n, Object.class);
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testCompileExample1() {
+    // example1: p ^ q -> r, p -> q, p |- r
+    final Term h1 = Term.premise("h1");
+    final Term h2 = Term.premise("h2");
+    final Term h3 = Term.premise("h3");
+    final Compiled example1 = compile(
+        Term.imply_e(h1, Term.and_i(h3, Term.imply_e(h2, h3))), "h1", "h2",
+        "h3");
+    final R r = new R();
+    final Imply<And<P, Q>, R> pqIMPLYr = new Imply<And<P, Q>, R>(
+        (And<P, Q> pq) -> pq.and_e2() != null ? r : null);
+    final Imply<P, Q> pIMPLYq = new Imply<P, Q>((P p) -> new Q());
+    for (int i = 0; i < 1000; i++) {
+      assertSame(r, example1.evaluate(pqIMPLYr, pIMPLYq, new P()));
+    }
+    assertEquals(example1.evaluate(pqIMPLYr, pIMPLYq, new P()),
+        Proof_Terms.evaluate(example1.term(), premises(
+            "h1", pqIMPLYr, "h2", pIMPLYq, "h3", new P())));
+    try {
+      compile(example1.term(), "h1", "h2");
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testCompileBoxes() {
+    final P p = new P();
+    final Q q = new Q();
+    // p -> r, q -> r |- (p v q) -> r, found by Proof_Search
+    final Proof_Search.Proof proof = Proof_Search
+        .prove("p -> r, q -> r |- (p v q) -> r");
+    final Compiled c = compile(proof.term(), "h1", "h2");
+    final R fromP = new R();
+    final R fromQ = new R();
+    final Imply<Or<P, Q>, R> pqIMPLYr = c.evaluate(
+        new Imply<P, R>((P p1) -> fromP), new Imply<Q, R>((Q q1) -> fromQ));
+    assertSame(fromP, pqIMPLYr.imply_e(Or.or_i1(p)));
+    assertSame(fromQ, pqIMPLYr.imply_e(Or.or_i2(q)));
+
+    // ->e(->i([x] ^i(x, x)), p) runs without an Imply
+    final Term x = Term.assumption("x");
+    final And<P, P> pANDp = compile(
+        Term.imply_e(Term.imply_i(x, Term.and_i(x, x)), Term.premise("p")), "p")
+        .evaluate(p);
+    assertSame(p, pANDp.and_e2());
+
+    // an inner box sees the assumptions of the outer one
+    final Term y = Term.assumption("y");
+    final Imply<P, Imply<Q, And<P, Q>>> curried = compile(
+        Term.imply_i(x, Term.imply_i(y, Term.and_i(x, y)))).evaluate();
+    final And<P, Q> pANDq = curried.imply_e(p).imply_e(q);
+    assertTrue(pANDq.and_e1() == p && pANDq.and_e2() == q);
+  }
+
+  @Test
+  public void testCompileShared() {
+    // ^i(t, t), 24 times over: 25 distinct Terms, 2^24 uses of p
+    final Term p = Term.premise("p");
+    Term t = p;
+    for (int i = 0; i < 24; i++) {
+      t = Term.and_i(t, t);
+    }
+    final And<?, ?> shared = compile(t, "p").evaluate(new P());
+    assertSame(shared.and_e1(), shared.and_e2());
+
+    // the same inside a box: once per run of the box
+    final Term x = Term.assumption("x");
+    Term u = x;
+    for (int i = 0; i < 24; i++) {
+      u = Term.and_i(u, Term.and_i(u, p));
+    }
+    final Imply<P, And<?, ?>> box = compile(Term.imply_i(x, u), "p")
+        .evaluate(new P());
+    final P p1 = new P();
+    final P p2 = new P();
+    final And<?, ?> a1 = box.imply_e(p1);
+    final And<?, ?> a2 = box.imply_e(p2);
+    assertTrue(a1 != a2);
+    assertSame(a1.and_e1(), ((And<?, ?>) a1.and_e2()).and_e1());
+    Object leftmost = a1;
+    for (int i = 0; i < 24; i++) {
+      leftmost = ((And<?, ?>) leftmost).and_e1();
+    }
+    assertSame(p1, leftmost);
+  }
+
+  private static Map<String, Object> premises(final Object... namesAndEvidence) {
+    final Map<String, Object> m = new HashMap<String, Object>();
+    for (int i = 0; i < namesAndEvidence.length; i += 2) {
+      m.put((String) namesAndEvidence[i], namesAndEvidence[i + 1]);
+    }
+    return m;
+  }
+}
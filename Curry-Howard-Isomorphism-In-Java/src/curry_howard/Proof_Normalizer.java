@@ -0,0 +1,489 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import curry_howard.Proof_Terms.Rule;
+import curry_howard.Proof_Terms.Term;
+import curry_howard.Trampolining.Trampoline;
+
+public class Proof_Normalizer {
+  /**
+   * Normal proofs.
+   *
+   * A proof often builds evidence only to take it apart again at once:
+   *
+   * <pre>
+   *   new And<P, Q>(p, q).and_e1()              ^e1(^i(p, q))      is p
+   *   Or.or_i1(p).or_e(d1, d2)                  ve(vi1(p), ...)    is d1(p)
+   *   new Imply<P, R>(d).imply_e(p)             ->e(->i(d), p)     is d(p)
+   * </pre>
+   *
+   * (the last one is a beta-redex; in the written proofs, an "->e" whose
+   * first line is the conclusion of an "->i" box). normalize() removes all
+   * of these, including the ones that only appear after others are gone,
+   * and also takes out the detours the other way round (eta):
+   *
+   * <pre>
+   *   ->i([x] ->e(f, x))                        is f
+   *   ^i(^e1(t), ^e2(t))                        is t
+   *   ve(t, [x] vi1(x), [y] vi2(y))             is t
+   * </pre>
+   *
+   * It works by normalization by evaluation: the Term is run, much as
+   * Proof_Terms.evaluate runs it, but with "values" that are either an And,
+   * Or or Imply of the same kind, or a Term that cannot be taken apart
+   * (a premise, or a rule applied to one). Running it contracts every
+   * detour exactly when it is met, once, and reading the value back as a
+   * Term gives the normal form, so the whole thing costs time in
+   * proportion to the size of the proof and of its normal form, instead of
+   * rewriting the Term over and over.
+   *
+   * The result also counts the detours removed by kind: each is an And,
+   * Or or Imply that running the original proof would have built only to
+   * take it apart.
+   **/
+
+  public static final class Normalized {
+    private final Term term;
+    private final int ands;
+    private final int ors;
+    private final int implies;
+
+    private Normalized(final Term term, final int ands, final int ors,
+        final int implies) {
+      this.term = term;
+      this.ands = ands;
+      this.ors = ors;
+      this.implies = implies;
+    }
+
+    /** The normal form. */
+    public Term term() {
+      return this.term;
+    }
+
+    /** "^e" steps removed, each with the And it took apart. */
+    public int ands() {
+      return this.ands;
+    }
+
+    /** "ve" steps removed, each with the Left or Right it took apart. */
+    public int ors() {
+      return this.ors;
+    }
+
+    /** "->e" steps removed, each with the Imply it applied. */
+    public int implies() {
+      return this.implies;
+    }
+
+    /** All the And, Or and Imply evidence no longer built. */
+    public int removed() {
+      return this.ands + this.ors + this.implies;
+    }
+
+    @Override
+    public String toString() {
+      return this.term + " (" + this.ands + " ^, " + this.ors + " v, "
+          + this.implies + " -> removed)";
+    }
+  }
+
+  /**
+   * The normal form of 't'. Premises, and assumptions used outside their
+   * box, are left as they are.
+   **/
+  public static Normalized normalize(final Term t) {
+    final Normalizer n = new Normalizer(t);
+    final Term normal = n.eval(t, null).flatMap(n::reify).run();
+    return new Normalized(normal, n.ands, n.ors, n.implies);
+  }
+
+  /*****************************************************************/
+  /** Values */
+  /*****************************************************************/
+
+  private static abstract class Value {
+  }
+
+  /** A Term nothing can be done with. */
+  private static final class Neutral extends Value {
+    final Term term;
+
+    Neutral(final Term term) {
+      this.term = term;
+    }
+  }
+
+  private static final class Pair extends Value {
+    final Value v1;
+    final Value v2;
+
+    Pair(final Value v1, final Value v2) {
+      this.v1 = v1;
+      this.v2 = v2;
+    }
+  }
+
+  private static final class Injection extends Value {
+    final boolean left;
+    final Value v;
+
+    Injection(final boolean left, final Value v) {
+      this.left = left;
+      this.v = v;
+    }
+  }
+
+  /** A box, not yet run: its body and the values of what it can see. */
+  private static final class Function extends Value {
+    final Env env;
+    final Term assumption;
+    final Term body;
+
+    Function(final Env env, final Term assumption, final Term body) {
+      this.env = env;
+      this.assumption = assumption;
+      this.body = body;
+    }
+  }
+
+  private static final class Env {
+    final Term assumption;
+    final Value v;
+    final Env next;
+
+    Env(final Term assumption, final Value v, final Env next) {
+      this.assumption = assumption;
+      this.v = v;
+      this.next = next;
+    }
+  }
+
+  /*****************************************************************/
+  /** Evaluating and reading back */
+  /*****************************************************************/
+
+  /**
+   * eval and reify call each other once per rule of the proof, so they
+   * return their work as a Trampoline (see Trampolining) rather than
+   * recursing: however deep the proof, run() takes it a step at a time.
+   **/
+  private static final class Normalizer {
+    /** Prefix of the assumptions of the normal form. */
+    private final String prefix;
+    /** Number of boxes of the normal form being read back. */
+    private int depth;
+    /**
+     * The deepest box of the normal form each Term read back so far (may)
+     * use an assumption of, -1 for none; the box assumptions themselves are
+     * put in by fresh().
+     **/
+    private final Map<Term, Integer> levels = new IdentityHashMap<Term, Integer>();
+    int ands;
+    int ors;
+    int implies;
+
+    Normalizer(final Term t) {
+      // boxes of the normal form are named prefix + depth; pick a prefix
+      // no assumption of 't' is named like that, so that none is captured
+      final Set<String> names = assumptions(t);
+      String p = "x";
+      for (boolean clash = true; clash;) {
+        clash = false;
+        for (final String name : names) {
+          if (name.startsWith(p) && name.length() > p.length()
+              && name.substring(p.length()).matches("[0-9]+")) {
+            p += "'";
+            clash = true;
+            break;
+          }
+        }
+      }
+      this.prefix = p;
+    }
+
+    /** The value of 't' where 'env' gives the values of its assumptions. */
+    Trampoline<Value> eval(final Term t, final Env env) {
+      return Trampoline.more(() -> evalStep(t, env));
+    }
+
+    private Trampoline<Value> evalStep(final Term t, final Env env) {
+      switch (t.rule()) {
+      case PREMISE:
+        return Trampoline.done(new Neutral(t));
+      case ASSUMPTION:
+        for (Env e = env; e != null; e = e.next) {
+          if (e.assumption == t) {
+            return Trampoline.done(e.v);
+          }
+        }
+        return Trampoline.done(new Neutral(t));
+      case AND_I:
+        return eval(t.child(0), env).flatMap((Value v1) -> eval(t.child(1),
+            env).<Value> map((Value v2) -> new Pair(v1, v2)));
+      case AND_E1:
+      case AND_E2: {
+        final boolean first = t.rule() == Rule.AND_E1;
+        return eval(t.child(0), env).<Value> map((Value v) -> {
+          if (v instanceof Pair) {
+            this.ands++;
+            return first ? ((Pair) v).v1 : ((Pair) v).v2;
+          }
+          final Term n = ((Neutral) v).term;
+          return new Neutral(first ? Term.and_e1(n) : Term.and_e2(n));
+        });
+      }
+      case OR_I1:
+        return eval(t.child(0), env).<Value> map((Value v) -> new Injection(
+            true, v));
+      case OR_I2:
+        return eval(t.child(0), env).<Value> map((Value v) -> new Injection(
+            false, v));
+      case OR_E:
+        return eval(t.child(0), env).flatMap((Value v) -> {
+          if (v instanceof Injection) {
+            this.ors++;
+            final Injection i = (Injection) v;
+            final int box = i.left ? 1 : 3;
+            return eval(t.child(box + 1), new Env(t.child(box), i.v, env));
+          }
+          final Term n = ((Neutral) v).term;
+          final Term x1 = fresh();
+          return box(t.child(1), t.child(2), x1, env).flatMap((Term b1) -> {
+            final Term x2 = fresh();
+            return box(t.child(3), t.child(4), x2, env).<Value> map(
+                (Term b2) -> {
+                  if (b1 == Term.or_i1(x1) && b2 == Term.or_i2(x2)) {
+                    return v;
+                  }
+                  return new Neutral(Term.or_e(n, x1, b1, x2, b2));
+                });
+          });
+        });
+      case IMPLY_I:
+        return Trampoline.done(new Function(env, t.child(0), t.child(1)));
+      default:
+        return eval(t.child(0), env).flatMap((Value f) -> eval(t.child(1),
+            env).flatMap((Value a) -> {
+          if (f instanceof Function) {
+            this.implies++;
+            final Function fn = (Function) f;
+            return eval(fn.body, new Env(fn.assumption, a, fn.env));
+          }
+          final Term g = ((Neutral) f).term;
+          return reify(a).<Value> map((Term arg) -> new Neutral(Term.imply_e(
+              g, arg)));
+        }));
+      }
+    }
+
+    /** The normal Term of 'v'. */
+    Trampoline<Term> reify(final Value v) {
+      return Trampoline.more(() -> reifyStep(v));
+    }
+
+    private Trampoline<Term> reifyStep(final Value v) {
+      if (v instanceof Neutral) {
+        return Trampoline.done(((Neutral) v).term);
+      }
+      if (v instanceof Pair) {
+        final Pair p = (Pair) v;
+        return reify(p.v1).flatMap((Term a) -> reify(p.v2).<Term> map(
+            (Term b) -> {
+              if (a.rule() == Rule.AND_E1 && b.rule() == Rule.AND_E2
+                  && a.child(0) == b.child(0)) {
+                return a.child(0);
+              }
+              return Term.and_i(a, b);
+            }));
+      }
+      if (v instanceof Injection) {
+        final Injection i = (Injection) v;
+        return reify(i.v).<Term> map((Term a) -> i.left ? Term.or_i1(a)
+            : Term.or_i2(a));
+      }
+      final Function f = (Function) v;
+      final int k = this.depth;
+      final Term x = fresh();
+      return box(f.assumption, f.body, x, f.env).<Term> map((Term b) -> {
+        if (b.rule() == Rule.IMPLY_E && b.child(1) == x
+            && level(b.child(0)) < k) {
+          // ->i([x] ->e(g, x)) with no x in g
+          return b.child(0);
+        }
+        return Term.imply_i(x, b);
+      });
+    }
+
+    /**
+     * The normal Term of 'body' with box 'x', just made by fresh(), standing
+     * for the original 'assumption'; leaves the box.
+     **/
+    private Trampoline<Term> box(final Term assumption, final Term body,
+        final Term x, final Env env) {
+      return eval(body, new Env(assumption, new Neutral(x), env)).flatMap(
+          this::reify).<Term> map((Term b) -> {
+        this.depth--;
+        return b;
+      });
+    }
+
+    /** A new assumption for the next box; the caller leaves it after. */
+    private Term fresh() {
+      final Term x = Term.assumption(this.prefix + this.depth);
+      this.levels.put(x, this.depth++);
+      return x;
+    }
+
+    /**
+     * The deepest box 't', a Term read back, (may) use an assumption of; -1
+     * for none. Each Term is looked at once, without recursion.
+     **/
+    private int level(final Term t) {
+      final ArrayDeque<Term> todo = new ArrayDeque<Term>();
+      todo.push(t);
+      while (!todo.isEmpty()) {
+        final Term u = todo.peek();
+        if (this.levels.containsKey(u)) {
+          todo.pop();
+          continue;
+        }
+        boolean ready = true;
+        for (int i = 0; i < u.rule().arity; i++) {
+          if (!this.levels.containsKey(u.child(i))) {
+            todo.push(u.child(i));
+            ready = false;
+          }
+        }
+        if (!ready) {
+          continue;
+        }
+        todo.pop();
+        int level = -1;
+        switch (u.rule()) {
+        case PREMISE:
+        case ASSUMPTION:
+          // not a box of the normal form (those are in 'levels' already)
+          break;
+        case IMPLY_I:
+          level = Math.min(this.levels.get(u.child(1)),
+              this.levels.get(u.child(0)) - 1);
+          break;
+        case OR_E:
+          level = Math.max(this.levels.get(u.child(0)), Math.max(Math.min(
+              this.levels.get(u.child(2)), this.levels.get(u.child(1)) - 1),
+              Math.min(this.levels.get(u.child(4)),
+                  this.levels.get(u.child(3)) - 1)));
+          break;
+        default:
+          for (int i = 0; i < u.rule().arity; i++) {
+            level = Math.max(level, this.levels.get(u.child(i)));
+          }
+        }
+        this.levels.put(u, level);
+      }
+      return this.levels.get(t);
+    }
+  }
+
+  /** The names of the assumptions in 't', visiting shared Terms once. */
+  private static Set<String> assumptions(final Term t) {
+    final Set<String> names = new HashSet<String>();
+    final IdentityHashMap<Term, Boolean> seen = new IdentityHashMap<Term, Boolean>();
+    final ArrayDeque<Term> todo = new ArrayDeque<Term>();
+    todo.push(t);
+    while (!todo.isEmpty()) {
+      final Term u = todo.pop();
+      if (seen.put(u, Boolean.TRUE) != null) {
+        continue;
+      }
+      if (u.rule() == Rule.ASSUMPTION) {
+        names.add(u.name());
+      }
+      for (int i = 0; i < u.rule().arity; i++) {
+        todo.push(u.child(i));
+      }
+    }
+    return names;
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testDetours() {
+    final Term p = Term.premise("p");
+    final Term q = Term.premise("q");
+    final Term f = Term.premise("f");
+    final Term x = Term.assumption("x");
+    final Term y = Term.assumption("y");
+
+    // new And<P, Q>(p, q).and_e1()
+    Normalized n = normalize(Term.and_e1(Term.and_i(p, q)));
+    assertSame(p, n.term());
+    assertEquals(1, n.ands());
+
+    // Or.or_i1(p).or_e(x -> ^i(x, x), y -> ^i(y, q))
+    n = normalize(Term.or_e(Term.or_i1(p), x, Term.and_i(x, x), y,
+        Term.and_i(y, q)));
+    assertSame(Term.and_i(p, p), n.term());
+    assertEquals(1, n.ors());
+
+    // a beta-redex whose body becomes one once it is applied
+    n = normalize(Term.imply_e(Term.imply_i(x, Term.imply_e(x, q)),
+        Term.imply_i(y, Term.and_e2(Term.and_i(p, y)))));
+    assertSame(q, n.term());
+    assertEquals(2, n.implies());
+    assertEquals(3, n.removed());
+
+    // eta
+    assertSame(f, normalize(Term.imply_i(x, Term.imply_e(f, x))).term());
+    assertSame(f, normalize(Term.and_i(Term.and_e1(f), Term.and_e2(f))).term());
+    assertSame(f, normalize(Term.or_e(f, x, Term.or_i1(x), y, Term.or_i2(y)))
+        .term());
+    // ...but not when x is used by f
+    final Term g = Term.imply_i(x, Term.imply_e(Term.imply_e(f, x), x));
+    assertEquals("->i([x0] ->e(->e(f, x0), x0))", normalize(g).term()
+        .toString());
+    assertEquals(0, normalize(g).removed());
+    // eta after eta, and eta over a pair
+    assertSame(f, normalize(Term.imply_i(x, Term.imply_i(y, Term.imply_e(
+        Term.imply_e(f, x), y)))).term());
+    assertSame(f, normalize(Term.imply_i(x, Term.and_i(Term.and_e1(Term
+        .imply_e(f, x)), Term.and_e2(Term.imply_e(f, x))))).term());
+  }
+
+  @Test
+  public void testLongChain() {
+    // ->e(->i([x] ->e(->i([x] ...), x)), p), 2000 boxes deep
+    final Term x = Term.assumption("x");
+    Term t = x;
+    for (int i = 0; i < 2000; i++) {
+      t = Term.imply_e(Term.imply_i(x, t), x);
+    }
+    final Normalized n = normalize(Term.imply_e(Term.imply_i(x, t),
+        Term.premise("p")));
+    assertSame(Term.premise("p"), n.term());
+    assertEquals(2001, n.implies());
+
+    // ^i(^i(...^i(p, q)..., q), q), 20000 deep, and ^e1 of it
+    Term pair = Term.premise("p");
+    for (int i = 0; i < 20000; i++) {
+      pair = Term.and_i(pair, Term.premise("q"));
+    }
+    assertSame(pair, normalize(pair).term());
+    final Term left = pair.child(0);
+    assertSame(left, normalize(Term.and_e1(pair)).term());
+  }
+}
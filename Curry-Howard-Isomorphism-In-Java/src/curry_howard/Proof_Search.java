@@ -0,0 +1,632 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Proof_Terms.Term;
+import curry_howard.Propositions.Proposition;
+import curry_howard.Propositions.Proposition.Kind;
+import curry_howard.Propositions.Sequent;
+
+public class Proof_Search {
+  /**
+   * Finding proofs automatically.
+   *
+   * prove() takes a sequent such as
+   *
+   * <pre>
+   *   p -> (q -> r) |- (p -> q) -> (p -> r)
+   * </pre>
+   *
+   * and, if it can be proved with the rules of And, Or and Imply, returns a
+   * Proof: its Term, and evidence() to run it, which builds the same kind of
+   * evidence that example4 builds by hand.
+   *
+   * The search works backwards from the conclusion in the contraction-free
+   * sequent calculus G4ip (Dyckhoff, "Contraction-free sequent calculi for
+   * intuitionistic logic", 1992). Every rule of G4ip makes the sequent
+   * smaller, so the search always ends, and no premise ever has to be used
+   * twice. Rules that cannot lose a proof (such as "to prove t1 -> t2,
+   * assume t1 and prove t2") are applied first and never undone; only the
+   * two that need a choice (which side of a "v" to prove, and which
+   * (t1 -> t2) -> t3 premise to use) backtrack.
+   *
+   * Whether a sequent is provable is remembered in a table, so a sub-goal
+   * that comes up again in another branch is never searched twice, and a
+   * sub-goal met again on its own branch (which the rules rule out, but
+   * costs nothing to check) fails instead of looping. The proof term is then
+   * built in a second pass that follows the table straight to the successful
+   * choices.
+   *
+   * The premises of the sequent are named h1, h2, ... in the Term, and
+   * evidence() takes their evidence in that order.
+   **/
+
+  public static final class Proof {
+    private final Sequent sequent;
+    private final Term term;
+
+    Proof(final Sequent sequent, final Term term) {
+      this.sequent = sequent;
+      this.term = term;
+    }
+
+    public Sequent sequent() {
+      return this.sequent;
+    }
+
+    public Term term() {
+      return this.term;
+    }
+
+    /**
+     * Runs the proof on evidence for the premises of the sequent, in order,
+     * and returns the evidence for its conclusion.
+     **/
+    @SuppressWarnings("unchecked")
+    public <T> T evidence(final Object... premises) {
+      if (premises.length != this.sequent.premises().size()) {
+        throw new IllegalArgumentException(this.sequent.premises().size()
+            + " premises expected, not " + premises.length);
+      }
+      final Map<String, Object> named = new HashMap<String, Object>();
+      for (int i = 0; i < premises.length; i++) {
+        named.put(premiseName(i), premises[i]);
+      }
+      return (T) Proof_Terms.evaluate(this.term, named);
+    }
+  }
+
+  static String premiseName(final int i) {
+    return "h" + (i + 1);
+  }
+
+  /** A proof of 'sequent', or null if there is none. */
+  public static Proof prove(final String sequent) {
+    return prove(Sequent.parse(sequent));
+  }
+
+  /** A proof of 'sequent', or null if there is none. */
+  public static Proof prove(final Sequent sequent) {
+    final Search search = new Search();
+    int[] ids = new int[0];
+    Term[] terms = new Term[0];
+    for (int i = 0; i < sequent.premises().size(); i++) {
+      final int id = search.id(sequent.premises().get(i));
+      final int at = Arrays.binarySearch(ids, id);
+      if (at < 0) {
+        ids = insert(ids, -at - 1, id);
+        terms = insert(terms, -at - 1, Term.premise(premiseName(i)));
+      }
+    }
+    final int goal = search.id(sequent.conclusion());
+    if (!search.provable(ids, goal)) {
+      return null;
+    }
+    return new Proof(sequent, search.build(ids, terms, goal));
+  }
+
+  /*****************************************************************/
+  /** G4ip */
+  /*****************************************************************/
+
+  // the rules, as returned by Search.invertible (with the premise's index)
+  private static final int AXIOM = 1;
+  private static final int IMPLY_R = 2;
+  private static final int AND_R = 3;
+  private static final int AND_L = 4;
+  private static final int OR_L = 5;
+  private static final int ATOM_IMPLY_L = 6;
+  private static final int AND_IMPLY_L = 7;
+  private static final int OR_IMPLY_L = 8;
+
+  /**
+   * One search. Propositions are numbered as they are met, so that a
+   * context (the premises and assumptions available) is a sorted array of
+   * distinct numbers and the table is keyed by (context, goal).
+   *
+   * Numbering is synchronized so that Parallel_Search can share a Search
+   * between threads; the arrays describing each number are only ever
+   * replaced by larger copies, published through volatile fields.
+   **/
+  static final class Search {
+    private final Map<Proposition, Integer> ids = new HashMap<Proposition, Integer>();
+    private final List<Proposition> props = new ArrayList<Proposition>();
+    private volatile Kind[] kind = new Kind[64];
+    private volatile int[] left = new int[64];
+    private volatile int[] right = new int[64];
+
+    private final Map<Key, Boolean> known;
+    private final HashSet<Key> path = new HashSet<Key>();
+    private int fresh;
+
+    Search() {
+      this(new HashMap<Key, Boolean>());
+    }
+
+    /** A search that keeps what it learns in 'known'. */
+    Search(final Map<Key, Boolean> known) {
+      this.known = known;
+    }
+
+    /** The number of 'p', numbering its parts first. */
+    synchronized int id(final Proposition p) {
+      final Integer id = this.ids.get(p);
+      if (id != null) {
+        return id;
+      }
+      if (p.kind() == Kind.ATOM) {
+        return add(p, -1, -1);
+      }
+      return mk(p.kind(), id(p.left()), id(p.right()));
+    }
+
+    /** The number of 'l kind r'. */
+    synchronized int mk(final Kind k, final int l, final int r) {
+      final Proposition p = k == Kind.AND
+          ? Proposition.and(this.props.get(l), this.props.get(r))
+          : k == Kind.OR ? Proposition.or(this.props.get(l), this.props.get(r))
+              : Proposition.imply(this.props.get(l), this.props.get(r));
+      final Integer id = this.ids.get(p);
+      return id != null ? id : add(p, l, r);
+    }
+
+    private int add(final Proposition p, final int l, final int r) {
+      final int id = this.props.size();
+      Kind[] kind = this.kind;
+      int[] left = this.left;
+      int[] right = this.right;
+      if (id == kind.length) {
+        kind = Arrays.copyOf(kind, id * 2);
+        left = Arrays.copyOf(left, id * 2);
+        right = Arrays.copyOf(right, id * 2);
+      }
+      kind[id] = p.kind();
+      left[id] = l;
+      right[id] = r;
+      // publish the entries (and any new arrays) before the number
+      this.kind = kind;
+      this.left = left;
+      this.right = right;
+      this.props.add(p);
+      this.ids.put(p, id);
+      return id;
+    }
+
+    boolean provable(final int[] ctx, final int goal) {
+      return provable(new Key(ctx, goal));
+    }
+
+    private boolean provable(final Key key) {
+      final Boolean k = this.known.get(key);
+      if (k != null) {
+        return k;
+      }
+      if (!this.path.add(key)) {
+        return false;
+      }
+      boolean ok = false;
+      for (final Key[] all : choices(key)) {
+        ok = true;
+        for (final Key sub : all) {
+          if (!provable(sub)) {
+            ok = false;
+            break;
+          }
+        }
+        if (ok) {
+          break;
+        }
+      }
+      this.path.remove(key);
+      this.known.put(key, ok);
+      return ok;
+    }
+
+    Boolean known(final int[] ctx, final int goal) {
+      return this.known.get(new Key(ctx, goal));
+    }
+
+    /** Records the answer for 'key', unless one is known already. */
+    void learn(final Key key, final boolean provable) {
+      this.known.putIfAbsent(key, provable);
+    }
+
+    /**
+     * The ways the rules give to prove 'key': it is provable if, for any one
+     * of the returned choices, all of the sub-goals in it are. An axiom has
+     * one choice with no sub-goals; a sequent no rule applies to has no
+     * choices.
+     **/
+    Key[][] choices(final Key key) {
+      final int[] ctx = key.ctx;
+      final int goal = key.goal;
+      final int step = invertible(ctx, goal);
+      final int h = step & 0xffff;
+      switch (step >>> 16) {
+      case AXIOM:
+        return one();
+      case IMPLY_R:
+        return one(new Key(with(ctx, this.left[goal]), this.right[goal]));
+      case AND_R:
+        return one(new Key(ctx, this.left[goal]),
+            new Key(ctx, this.right[goal]));
+      case AND_L: {
+        final int f = ctx[h];
+        return one(new Key(with(with(without(ctx, h), this.left[f]),
+            this.right[f]), goal));
+      }
+      case OR_L: {
+        final int[] rest = without(ctx, h);
+        final int f = ctx[h];
+        return one(new Key(with(rest, this.left[f]), goal),
+            new Key(with(rest, this.right[f]), goal));
+      }
+      case ATOM_IMPLY_L:
+        return one(new Key(with(without(ctx, h), this.right[ctx[h]]), goal));
+      case AND_IMPLY_L:
+        return one(new Key(with(without(ctx, h), curry(ctx[h])), goal));
+      case OR_IMPLY_L: {
+        final int f = ctx[h];
+        return one(new Key(with(with(without(ctx, h), orLeft(f)), orRight(f)),
+            goal));
+      }
+      default:
+      }
+      // no rule applies for sure: each way to go on is a choice
+      final List<Key[]> choices = new ArrayList<Key[]>();
+      if (this.kind[goal] == Kind.OR) {
+        choices.add(new Key[] { new Key(ctx, this.left[goal]) });
+        choices.add(new Key[] { new Key(ctx, this.right[goal]) });
+      }
+      for (int i = 0; i < ctx.length; i++) {
+        if (isImplyImply(ctx[i])) {
+          final int[] rest = without(ctx, i);
+          final int f = ctx[i];
+          final int cd = this.left[f];
+          choices.add(new Key[] {
+              new Key(with(rest, mk(Kind.IMPLY, this.right[cd], this.right[f])),
+                  cd),
+              new Key(with(rest, this.right[f]), goal) });
+        }
+      }
+      return choices.toArray(new Key[choices.size()][]);
+    }
+
+    private static Key[][] one(final Key... all) {
+      return new Key[][] { all };
+    }
+
+    /**
+     * The rule that applies without a choice, as (rule << 16 | premise), or
+     * 0 if there is none.
+     **/
+    private int invertible(final int[] ctx, final int goal) {
+      if (Arrays.binarySearch(ctx, goal) >= 0) {
+        return AXIOM << 16;
+      }
+      if (this.kind[goal] == Kind.IMPLY) {
+        return IMPLY_R << 16;
+      }
+      if (this.kind[goal] == Kind.AND) {
+        return AND_R << 16;
+      }
+      for (int i = 0; i < ctx.length; i++) {
+        final int f = ctx[i];
+        switch (this.kind[f]) {
+        case AND:
+          return AND_L << 16 | i;
+        case OR:
+          return OR_L << 16 | i;
+        case IMPLY: {
+          final int a = this.left[f];
+          switch (this.kind[a]) {
+          case ATOM:
+            if (Arrays.binarySearch(ctx, a) >= 0) {
+              return ATOM_IMPLY_L << 16 | i;
+            }
+            break;
+          case AND:
+            return AND_IMPLY_L << 16 | i;
+          case OR:
+            return OR_IMPLY_L << 16 | i;
+          default:
+          }
+          break;
+        }
+        default:
+        }
+      }
+      return 0;
+    }
+
+    private boolean isImplyImply(final int f) {
+      return this.kind[f] == Kind.IMPLY && this.kind[this.left[f]] == Kind.IMPLY;
+    }
+
+    /** (c ^ d) -> b  becomes  c -> (d -> b) */
+    private int curry(final int f) {
+      final int cd = this.left[f];
+      return mk(Kind.IMPLY, this.left[cd],
+          mk(Kind.IMPLY, this.right[cd], this.right[f]));
+    }
+
+    /** (c v d) -> b  gives  c -> b ... */
+    private int orLeft(final int f) {
+      return mk(Kind.IMPLY, this.left[this.left[f]], this.right[f]);
+    }
+
+    /** ... and  d -> b */
+    private int orRight(final int f) {
+      return mk(Kind.IMPLY, this.right[this.left[f]], this.right[f]);
+    }
+
+    /*****************************************************************/
+    /** Building the proof term */
+    /*****************************************************************/
+
+    /**
+     * The proof of ctx |- goal, which must be provable; terms[i] is the
+     * proof of ctx[i].
+     **/
+    Term build(final int[] ctx, final Term[] terms, final int goal) {
+      final int step = invertible(ctx, goal);
+      final int h = step & 0xffff;
+      final int f = ctx.length > 0 ? ctx[h] : -1;
+      final Term t = ctx.length > 0 ? terms[h] : null;
+      switch (step >>> 16) {
+      case AXIOM:
+        return terms[Arrays.binarySearch(ctx, goal)];
+      case IMPLY_R: {
+        final Term x = fresh();
+        final Context c = new Context(ctx, terms).with(this.left[goal], x);
+        return Term.imply_i(x, build(c.ids, c.terms, this.right[goal]));
+      }
+      case AND_R:
+        return Term.and_i(build(ctx, terms, this.left[goal]),
+            build(ctx, terms, this.right[goal]));
+      case AND_L: {
+        final Context c = new Context(ctx, terms).without(h)
+            .with(this.left[f], Term.and_e1(t))
+            .with(this.right[f], Term.and_e2(t));
+        return build(c.ids, c.terms, goal);
+      }
+      case OR_L: {
+        final Term x = fresh();
+        final Term y = fresh();
+        final Context rest = new Context(ctx, terms).without(h);
+        final Context c1 = rest.with(this.left[f], x);
+        final Context c2 = rest.with(this.right[f], y);
+        return Term.or_e(t, x, build(c1.ids, c1.terms, goal), y,
+            build(c2.ids, c2.terms, goal));
+      }
+      case ATOM_IMPLY_L: {
+        final Term a = terms[Arrays.binarySearch(ctx, this.left[f])];
+        final Context c = new Context(ctx, terms).without(h)
+            .with(this.right[f], Term.imply_e(t, a));
+        return build(c.ids, c.terms, goal);
+      }
+      case AND_IMPLY_L: {
+        // c -> (d -> b) is  ->i([c] ->i([d] ->e(t, ^i(c, d))))
+        final Term c = fresh();
+        final Term d = fresh();
+        final Context ctx2 = new Context(ctx, terms).without(h).with(curry(f),
+            Term.imply_i(c, Term.imply_i(d, Term.imply_e(t, Term.and_i(c, d)))));
+        return build(ctx2.ids, ctx2.terms, goal);
+      }
+      case OR_IMPLY_L: {
+        final Term c = fresh();
+        final Term d = fresh();
+        final Context ctx2 = new Context(ctx, terms).without(h)
+            .with(orLeft(f), Term.imply_i(c, Term.imply_e(t, Term.or_i1(c))))
+            .with(orRight(f), Term.imply_i(d, Term.imply_e(t, Term.or_i2(d))));
+        return build(ctx2.ids, ctx2.terms, goal);
+      }
+      default:
+      }
+      if (this.kind[goal] == Kind.OR) {
+        if (known(ctx, this.left[goal]) == Boolean.TRUE) {
+          return Term.or_i1(build(ctx, terms, this.left[goal]));
+        }
+        if (known(ctx, this.right[goal]) == Boolean.TRUE) {
+          return Term.or_i2(build(ctx, terms, this.right[goal]));
+        }
+      }
+      for (int i = 0; i < ctx.length; i++) {
+        if (isImplyImply(ctx[i])) {
+          final Context rest = new Context(ctx, terms).without(i);
+          final int fi = ctx[i];
+          final Term ti = terms[i];
+          final int cd = this.left[fi];
+          final int db = mk(Kind.IMPLY, this.right[cd], this.right[fi]);
+          final Context c1 = rest.with(db, null);
+          final Context c2 = rest.with(this.right[fi], null);
+          if (known(c1.ids, cd) == Boolean.TRUE
+              && known(c2.ids, goal) == Boolean.TRUE) {
+            // d -> b is  ->i([d] ->e(ti, ->i([c] d)))
+            final Term c = fresh();
+            final Term d = fresh();
+            final Context with1 = rest.with(db,
+                Term.imply_i(d, Term.imply_e(ti, Term.imply_i(c, d))));
+            final Term cIMPLYd = build(with1.ids, with1.terms, cd);
+            final Context with2 = rest.with(this.right[fi],
+                Term.imply_e(ti, cIMPLYd));
+            return build(with2.ids, with2.terms, goal);
+          }
+        }
+      }
+      throw new IllegalStateException("not provable: " + this.props.get(goal));
+    }
+
+    private Term fresh() {
+      return Term.assumption("x" + this.fresh++);
+    }
+  }
+
+  /**
+   * A context with the proof of each of its propositions. Adding a
+   * proposition that is already there keeps the proof it has.
+   **/
+  private static final class Context {
+    final int[] ids;
+    final Term[] terms;
+
+    Context(final int[] ids, final Term[] terms) {
+      this.ids = ids;
+      this.terms = terms;
+    }
+
+    Context with(final int id, final Term t) {
+      final int at = Arrays.binarySearch(this.ids, id);
+      if (at >= 0) {
+        return this;
+      }
+      return new Context(insert(this.ids, -at - 1, id),
+          insert(this.terms, -at - 1, t));
+    }
+
+    Context without(final int i) {
+      return new Context(Proof_Search.without(this.ids, i),
+          remove(this.terms, i));
+    }
+  }
+
+  /** The table key: a context (sorted, distinct) and a goal. */
+  static final class Key {
+    final int[] ctx;
+    final int goal;
+    final int hash;
+
+    Key(final int[] ctx, final int goal) {
+      this.ctx = ctx;
+      this.goal = goal;
+      this.hash = Arrays.hashCode(ctx) * 31 + goal;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key k = (Key) o;
+      return k.hash == this.hash && k.goal == this.goal
+          && Arrays.equals(k.ctx, this.ctx);
+    }
+  }
+
+  static int[] with(final int[] ctx, final int id) {
+    final int at = Arrays.binarySearch(ctx, id);
+    return at >= 0 ? ctx : insert(ctx, -at - 1, id);
+  }
+
+  static int[] without(final int[] ctx, final int i) {
+    final int[] r = new int[ctx.length - 1];
+    System.arraycopy(ctx, 0, r, 0, i);
+    System.arraycopy(ctx, i + 1, r, i, r.length - i);
+    return r;
+  }
+
+  private static int[] insert(final int[] a, final int at, final int v) {
+    final int[] r = new int[a.length + 1];
+    System.arraycopy(a, 0, r, 0, at);
+    r[at] = v;
+    System.arraycopy(a, at, r, at + 1, a.length - at);
+    return r;
+  }
+
+  static Term[] insert(final Term[] a, final int at, final Term v) {
+    final Term[] r = new Term[a.length + 1];
+    System.arraycopy(a, 0, r, 0, at);
+    r[at] = v;
+    System.arraycopy(a, at, r, at + 1, a.length - at);
+    return r;
+  }
+
+  private static Term[] remove(final Term[] a, final int i) {
+    final Term[] r = new Term[a.length - 1];
+    System.arraycopy(a, 0, r, 0, i);
+    System.arraycopy(a, i + 1, r, i, r.length - i);
+    return r;
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testProveExample4() {
+    final Proof proof = prove("p -> (q -> r) |- (p -> q) -> (p -> r)");
+    assertNotNull(proof);
+    final R r = new R();
+    final Imply<P, Imply<Q, R>> pIMPLYqir = new Imply<P, Imply<Q, R>>(
+        (P p) -> new Imply<Q, R>((Q q) -> r));
+    final Imply<Imply<P, Q>, Imply<P, R>> piqIMPLYpir = proof
+        .evidence(pIMPLYqir);
+    final Imply<P, R> pIMPLYr = piqIMPLYpir.imply_e(new Imply<P, Q>(
+        (P p) -> new Q()));
+    assertSame(r, pIMPLYr.imply_e(new P()));
+  }
+
+  @Test
+  public void testProveExamples() {
+    final P p = new P();
+    final Q q = new Q();
+    // example2, with an Or to take apart
+    final Imply<Or<P, Q>, R> pqIMPLYr = prove("p -> r, q -> r |- (p v q) -> r")
+        .evidence(new Imply<P, R>((P p1) -> new R()),
+            new Imply<Q, R>((Q q1) -> null));
+    assertTrue(pqIMPLYr.imply_e(Or.or_i1(p)) instanceof R);
+    // and_example
+    final And<Q, P> qANDp = prove("p ^ q |- q ^ p")
+        .evidence(new And<P, Q>(p, q));
+    assertSame(q, qANDp.and_e1());
+    assertSame(p, qANDp.and_e2());
+
+    // not provable without the excluded middle
+    assertNull(prove("|- p v (p -> q)"));
+    assertNull(prove("|- ((p -> q) -> p) -> p"));
+  }
+
+  @Test
+  public void testLargeFormulas() {
+    // p1 v ... v p60 |- p60 v ... v p1, and a chain of 200 implications
+    final int n = 60;
+    final StringBuilder from = new StringBuilder("p1");
+    final StringBuilder to = new StringBuilder("p" + n);
+    for (int i = 2; i <= n; i++) {
+      from.append(" v p").append(i);
+      to.append(" v p").append(n + 1 - i);
+    }
+    assertNotNull(prove(from + " |- " + to));
+
+    final StringBuilder chain = new StringBuilder("p0");
+    for (int i = 0; i < 200; i++) {
+      chain.append(", p").append(i).append(" -> p").append(i + 1);
+    }
+    final Proof proof = prove(chain + " |- p200");
+    assertEquals(200, proof.term().toString().split("->e").length - 1);
+  }
+}
@@ -0,0 +1,991 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+
+public class Proof_Terms {
+  /**
+   * Proofs as data.
+   *
+   * In Curry_Howard_Isomorphism a proof is a Java program: once it has run,
+   * all that is left is the evidence it produced, not the steps that
+   * produced it. A Term is the other view of the same proof: a tree with one
+   * node per rule application, which can be printed, compared, stored,
+   * checked and transformed.
+   *
+   * <pre>
+   *   premise, assume                        leaves: a named premise or a
+   *                                          box's assumption
+   *   ^i(a, b)    ^e1(a)    ^e2(a)
+   *   vi1(a)      vi2(a)
+   *   ve(t, [x1] b1, [x2] b2)                t: the disjunction; b1 and b2
+   *                                          the two boxes, which assume x1
+   *                                          and x2 respectively
+   *   ->i([x] b)  ->e(f, a)
+   * </pre>
+   *
+   * Terms are hash-consed: every Term is built by the static factories of
+   * Term, which return the one existing node when a structurally identical
+   * one is alive already. Proofs found or recorded separately therefore
+   * share their common sub-proofs, two Terms are equal exactly when they are
+   * the same object, and equals() and hashCode() cost O(1). The table of
+   * nodes only holds them weakly, so Terms nobody uses any more are
+   * collected as usual.
+   *
+   * A Recorder builds the Term of a proof while the ordinary And/Or/Imply
+   * code runs (through Rule_Hooks):
+   *
+   * <pre>
+   *   try (Recorder rec = Proof_Terms.record()) {
+   *     rec.premise("p", p).premise("(q ^ p) -> r", qpIMPLYr);
+   *     R r = example12(p, qpIMPLYr).imply_e(q);
+   *     rec.termOf(r);   // ->e(->i([x0] ->e((q ^ p) -> r, ^i(x0, p))), h1)
+   *   }
+   * </pre>
+   *
+   * Only what actually ran can be recorded. The box of an "->i" is recorded
+   * the first time the implication is used with "->e" before the box that
+   * created it is closed; a box that never ran there, and the side of a "ve"
+   * that was not taken, are recorded as opaque library proofs (premises
+   * named h1, h2, ... like any evidence that was not given a name).
+   **/
+
+  public enum Rule {
+    PREMISE("premise", 0), ASSUMPTION("assume", 0), AND_I("^i", 2),
+    AND_E1("^e1", 1), AND_E2("^e2", 1), OR_I1("vi1", 1), OR_I2("vi2", 1),
+    OR_E("ve", 5), IMPLY_I("->i", 2), IMPLY_E("->e", 2);
+
+    public final String symbol;
+    public final int arity;
+
+    Rule(final String symbol, final int arity) {
+      this.symbol = symbol;
+      this.arity = arity;
+    }
+  }
+
+  public static abstract class Term {
+    private final Rule rule;
+    private final int hash;
+    private final long size;
+
+    private Term(final Rule rule, final int hash, final long size) {
+      this.rule = rule;
+      this.hash = hash;
+      this.size = size;
+    }
+
+    public final Rule rule() {
+      return this.rule;
+    }
+
+    /** The name of a PREMISE or ASSUMPTION leaf, else null. */
+    public String name() {
+      return null;
+    }
+
+    /**
+     * The i-th premise of the rule: for "ve" the disjunction, then the first
+     * box's assumption and conclusion, then the second's; for "->i" the
+     * assumption and the conclusion of the box.
+     **/
+    public abstract Term child(int i);
+
+    /**
+     * Number of rule applications in the proof, counting shared sub-proofs
+     * once per use (saturates at Long.MAX_VALUE).
+     **/
+    public final long size() {
+      return this.size;
+    }
+
+    @Override
+    public final int hashCode() {
+      return this.hash;
+    }
+
+    /**
+     * Same rule, same name and the very same children. Because children are
+     * themselves hash-consed, this is structural equality, and for two
+     * Terms returned by the factories it is the same as ==.
+     **/
+    @Override
+    public final boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Term)) {
+        return false;
+      }
+      final Term t = (Term) o;
+      if (t.rule != this.rule || t.hash != this.hash) {
+        return false;
+      }
+      if (this.rule.arity == 0) {
+        return t.name().equals(name());
+      }
+      for (int i = 0; i < this.rule.arity; i++) {
+        if (t.child(i) != child(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      appendTo(sb);
+      return sb.toString();
+    }
+
+    private void appendTo(final StringBuilder sb) {
+      switch (this.rule) {
+      case PREMISE:
+      case ASSUMPTION:
+        sb.append(name());
+        return;
+      case OR_E:
+        sb.append("ve(");
+        child(0).appendTo(sb);
+        sb.append(", [").append(child(1).name()).append("] ");
+        child(2).appendTo(sb);
+        sb.append(", [").append(child(3).name()).append("] ");
+        child(4).appendTo(sb);
+        sb.append(')');
+        return;
+      case IMPLY_I:
+        sb.append("->i([").append(child(0).name()).append("] ");
+        child(1).appendTo(sb);
+        sb.append(')');
+        return;
+      default:
+        sb.append(this.rule.symbol).append('(');
+        for (int i = 0; i < this.rule.arity; i++) {
+          if (i > 0) {
+            sb.append(", ");
+          }
+          child(i).appendTo(sb);
+        }
+        sb.append(')');
+      }
+    }
+
+    /*****************************************************************/
+    /** Factories, one per rule */
+    /*****************************************************************/
+
+    public static Term premise(final String name) {
+      return intern(new Leaf(Rule.PREMISE, name));
+    }
+
+    public static Term assumption(final String name) {
+      return intern(new Leaf(Rule.ASSUMPTION, name));
+    }
+
+    public static Term and_i(final Term a, final Term b) {
+      return intern(new Node2(Rule.AND_I, a, b));
+    }
+
+    public static Term and_e1(final Term a) {
+      return intern(new Node1(Rule.AND_E1, a));
+    }
+
+    public static Term and_e2(final Term a) {
+      return intern(new Node1(Rule.AND_E2, a));
+    }
+
+    public static Term or_i1(final Term a) {
+      return intern(new Node1(Rule.OR_I1, a));
+    }
+
+    public static Term or_i2(final Term a) {
+      return intern(new Node1(Rule.OR_I2, a));
+    }
+
+    public static Term or_e(final Term t, final Term x1, final Term b1,
+        final Term x2, final Term b2) {
+      return intern(new Node5(t, bound(x1), b1, bound(x2), b2));
+    }
+
+    public static Term imply_i(final Term x, final Term b) {
+      return intern(new Node2(Rule.IMPLY_I, bound(x), b));
+    }
+
+    public static Term imply_e(final Term f, final Term a) {
+      return intern(new Node2(Rule.IMPLY_E, f, a));
+    }
+
+    private static Term bound(final Term x) {
+      if (x.rule != Rule.ASSUMPTION) {
+        throw new IllegalArgumentException("a box must assume an assumption, not "
+            + x);
+      }
+      return x;
+    }
+  }
+
+  private static final class Leaf extends Term {
+    private final String name;
+
+    Leaf(final Rule rule, final String name) {
+      super(rule, rule.hashCode() * 31 + name.hashCode(), 1);
+      this.name = name;
+    }
+
+    @Override
+    public String name() {
+      return this.name;
+    }
+
+    @Override
+    public Term child(final int i) {
+      throw new IndexOutOfBoundsException(String.valueOf(i));
+    }
+  }
+
+  private static final class Node1 extends Term {
+    private final Term a;
+
+    Node1(final Rule rule, final Term a) {
+      super(rule, rule.hashCode() * 31 + a.hash, add(1, a.size));
+      this.a = a;
+    }
+
+    @Override
+    public Term child(final int i) {
+      if (i != 0) {
+        throw new IndexOutOfBoundsException(String.valueOf(i));
+      }
+      return this.a;
+    }
+  }
+
+  private static final class Node2 extends Term {
+    private final Term a;
+    private final Term b;
+
+    Node2(final Rule rule, final Term a, final Term b) {
+      super(rule, (rule.hashCode() * 31 + a.hash) * 31 + b.hash,
+          rule == Rule.IMPLY_I ? add(1, b.size) : add(add(1, a.size), b.size));
+      this.a = a;
+      this.b = b;
+    }
+
+    @Override
+    public Term child(final int i) {
+      switch (i) {
+      case 0:
+        return this.a;
+      case 1:
+        return this.b;
+      default:
+        throw new IndexOutOfBoundsException(String.valueOf(i));
+      }
+    }
+  }
+
+  private static final class Node5 extends Term {
+    private final Term a;
+    private final Term b;
+    private final Term c;
+    private final Term d;
+    private final Term e;
+
+    Node5(final Term a, final Term b, final Term c, final Term d,
+        final Term e) {
+      super(Rule.OR_E, ((((Rule.OR_E.hashCode() * 31 + a.hash) * 31 + b.hash)
+          * 31 + c.hash) * 31 + d.hash) * 31 + e.hash,
+          add(add(add(1, a.size), c.size), e.size));
+      this.a = a;
+      this.b = b;
+      this.c = c;
+      this.d = d;
+      this.e = e;
+    }
+
+    @Override
+    public Term child(final int i) {
+      switch (i) {
+      case 0:
+        return this.a;
+      case 1:
+        return this.b;
+      case 2:
+        return this.c;
+      case 3:
+        return this.d;
+      case 4:
+        return this.e;
+      default:
+        throw new IndexOutOfBoundsException(String.valueOf(i));
+      }
+    }
+  }
+
+  private static long add(final long a, final long b) {
+    final long s = a + b;
+    return s < 0 ? Long.MAX_VALUE : s;
+  }
+
+  /*****************************************************************/
+  /** Hash-consing */
+  /*****************************************************************/
+
+  /** The live Terms; see Hash_Consing. */
+  private static final Hash_Consing<Term> TERMS = new Hash_Consing<Term>();
+
+  private static Term intern(final Term t) {
+    return TERMS.intern(t);
+  }
+
+  /** Number of distinct Terms currently alive. */
+  public static int sharedTerms() {
+    return TERMS.size();
+  }
+
+  /*****************************************************************/
+  /** Running a Term */
+  /*****************************************************************/
+
+  /**
+   * The evidence 't' describes, built out of And, Or and Imply just as a
+   * hand-written proof would: "^i" becomes new And, "->i" a new Imply whose
+   * Deduction evaluates the box, "ve" a call to or_e, and so on. 'premises'
+   * gives the evidence for each premise by name.
+   *
+   * @throws IllegalArgumentException if a premise has no evidence
+   **/
+  public static Object evaluate(final Term t, final Map<String, ?> premises) {
+    return new Evaluation(premises, null).run(t);
+  }
+
+  /** The evidence of the assumptions of the boxes we are in. */
+  private static final class Env {
+    final Term assumption;
+    final Object v;
+    final Env next;
+
+    Env(final Term assumption, final Object v, final Env next) {
+      this.assumption = assumption;
+      this.v = v;
+      this.next = next;
+    }
+  }
+
+  /**
+   * One run of the proof, or of one box of it: Terms are hash-consed, so
+   * a proof is a DAG, and each of its Terms is evaluated once per run,
+   * children first (left to right), without recursion. A box's body is
+   * evaluated in a run of its own each time the box is.
+   **/
+  private static final class Evaluation {
+    private final Map<String, ?> premises;
+    private final Env env;
+    private final IdentityHashMap<Term, Object> values = new IdentityHashMap<Term, Object>();
+
+    Evaluation(final Map<String, ?> premises, final Env env) {
+      this.premises = premises;
+      this.env = env;
+    }
+
+    Object run(final Term root) {
+      final ArrayDeque<Term> todo = new ArrayDeque<Term>();
+      todo.push(root);
+      while (!todo.isEmpty()) {
+        final Term t = todo.peek();
+        if (this.values.containsKey(t)) {
+          todo.pop();
+          continue;
+        }
+        // the children run here: not the boxes of "ve" and "->i"
+        final int n = t.rule() == Rule.OR_E ? 1
+            : t.rule() == Rule.IMPLY_I ? 0 : t.rule().arity;
+        boolean ready = true;
+        for (int i = n - 1; i >= 0; i--) {
+          if (!this.values.containsKey(t.child(i))) {
+            todo.push(t.child(i));
+            ready = false;
+          }
+        }
+        if (ready) {
+          todo.pop();
+          this.values.put(t, step(t));
+        }
+      }
+      return this.values.get(root);
+    }
+
+    /** 't', its children already evaluated. */
+    @SuppressWarnings("unchecked")
+    private Object step(final Term t) {
+      switch (t.rule()) {
+      case PREMISE:
+        if (!this.premises.containsKey(t.name())) {
+          throw new IllegalArgumentException("no evidence for premise "
+              + t.name());
+        }
+        return this.premises.get(t.name());
+      case ASSUMPTION:
+        for (Env e = this.env; e != null; e = e.next) {
+          if (e.assumption == t) {
+            return e.v;
+          }
+        }
+        throw new IllegalArgumentException(t.name() + " is not assumed here");
+      case AND_I:
+        return new And<Object, Object>(value(t, 0), value(t, 1));
+      case AND_E1:
+        return ((And<Object, Object>) value(t, 0)).and_e1();
+      case AND_E2:
+        return ((And<Object, Object>) value(t, 0)).and_e2();
+      case OR_I1:
+        return Or.or_i1(value(t, 0));
+      case OR_I2:
+        return Or.or_i2(value(t, 0));
+      case OR_E:
+        return ((Or<Object, Object>) value(t, 0)).or_e(
+            (Object v) -> box(t.child(1), v, t.child(2)),
+            (Object v) -> box(t.child(3), v, t.child(4)));
+      case IMPLY_I:
+        return new Imply<Object, Object>(
+            (Object v) -> box(t.child(0), v, t.child(1)));
+      default:
+        return ((Imply<Object, Object>) value(t, 0)).imply_e(value(t, 1));
+      }
+    }
+
+    private Object value(final Term t, final int i) {
+      return this.values.get(t.child(i));
+    }
+
+    private Object box(final Term assumption, final Object v, final Term body) {
+      return new Evaluation(this.premises, new Env(assumption, v, this.env))
+          .run(body);
+    }
+  }
+
+  /*****************************************************************/
+  /** Recording */
+  /*****************************************************************/
+
+  private static final ThreadLocal<Recorder> RECORDING = new ThreadLocal<Recorder>();
+
+  private static int recorders;
+
+  /**
+   * Starts recording the rules the current thread applies, until the
+   * returned Recorder is closed.
+   **/
+  public static Recorder record() {
+    if (RECORDING.get() != null) {
+      throw new IllegalStateException("already recording on this thread");
+    }
+    final Recorder r = new Recorder();
+    RECORDING.set(r);
+    synchronized (Proof_Terms.class) {
+      if (recorders++ == 0) {
+        Rule_Hooks.add(HOOK);
+      }
+    }
+    return r;
+  }
+
+  public static final class Recorder implements AutoCloseable {
+    private final IdentityHashMap<Object, Rec> tags = new IdentityHashMap<Object, Rec>();
+    private final ArrayDeque<Box> boxes = new ArrayDeque<Box>();
+    /** Nesting depth inside a box that is not being recorded. */
+    private int muted;
+    /** Number of open boxes that are being recorded. */
+    private int level;
+    private int unnamed;
+    private boolean closed;
+
+    private Recorder() {
+    }
+
+    /** Names 'evidence' (or a Deduction) as a premise of the proof. */
+    public Recorder premise(final String name, final Object evidence) {
+      tag(evidence, new Rec(Rule.PREMISE, name));
+      return this;
+    }
+
+    /** The proof of 'evidence' recorded so far. */
+    public Term termOf(final Object evidence) {
+      return freeze(rec(evidence), new IdentityHashMap<Rec, Term>());
+    }
+
+    /** Stops recording; termOf() can still be used afterwards. */
+    @Override
+    public void close() {
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      RECORDING.remove();
+      synchronized (Proof_Terms.class) {
+        if (--recorders == 0) {
+          Rule_Hooks.remove(HOOK);
+        }
+      }
+    }
+
+    private Rec rec(final Object evidence) {
+      Rec r = this.tags.get(evidence);
+      if (r == null) {
+        // not made by a rule we saw: a library proof nobody named
+        r = new Rec(Rule.PREMISE, "h" + ++this.unnamed);
+        this.tags.put(evidence, r);
+      }
+      return r;
+    }
+
+    private void tag(final Object evidence, final Rec r) {
+      final Box box = this.boxes.peek();
+      if (box != null) {
+        box.undo.add(evidence);
+        box.undo.add(this.tags.get(evidence));
+      }
+      this.tags.put(evidence, r);
+    }
+
+    private Box open(final Box box) {
+      this.boxes.push(box);
+      return box;
+    }
+
+    /** Closes the innermost box, forgetting everything tagged inside it. */
+    private Box close(final Box box) {
+      this.boxes.pop();
+      final List<Object> undo = box.undo;
+      for (int i = undo.size() - 2; i >= 0; i -= 2) {
+        final Object evidence = undo.get(i);
+        final Rec previous = (Rec) undo.get(i + 1);
+        if (previous == null) {
+          this.tags.remove(evidence);
+        } else {
+          this.tags.put(evidence, previous);
+        }
+      }
+      for (final Rec r : box.implications) {
+        if (r.state == Rec.PENDING) {
+          r.state = Rec.SEALED;
+        }
+      }
+      if (box.assumption != null) {
+        this.level--;
+      }
+      return box;
+    }
+
+    private Rec assume(final Object evidence, final Box box) {
+      final Rec x = new Rec(Rule.ASSUMPTION, "x" + this.level++);
+      box.assumption = x;
+      tag(evidence, x);
+      return x;
+    }
+
+    void and_i(final Object conclusion, final Object v1, final Object v2) {
+      if (this.muted == 0) {
+        tag(conclusion, new Rec(Rule.AND_I, rec(v1), rec(v2)));
+      }
+    }
+
+    void elim(final Rule rule, final Object premise, final Object conclusion) {
+      if (this.muted == 0) {
+        tag(conclusion, new Rec(rule, rec(premise)));
+      }
+    }
+
+    void or_e_enter(final Object premise, final boolean left,
+        final Object assumption, final Object other) {
+      if (this.muted > 0) {
+        this.muted++;
+        return;
+      }
+      final Box box = open(new Box(rec(premise), left, rec(other)));
+      assume(assumption, box);
+    }
+
+    void or_e_exit(final Object conclusion, final boolean completed) {
+      if (this.muted > 0) {
+        this.muted--;
+        return;
+      }
+      final Rec body = completed ? rec(conclusion) : null;
+      final Box box = close(this.boxes.peek());
+      if (completed) {
+        final Rec x = box.assumption;
+        final Rec y = new Rec(Rule.ASSUMPTION, x.name);
+        final Rec other = new Rec(Rule.IMPLY_E, box.premise2, y);
+        tag(conclusion, box.left ? new Rec(Rule.OR_E, box.premise, x, body, y,
+            other) : new Rec(Rule.OR_E, box.premise, y, other, x, body));
+      }
+    }
+
+    void imply_i(final Object conclusion) {
+      if (this.muted == 0) {
+        final Rec r = new Rec(Rule.IMPLY_I);
+        tag(conclusion, r);
+        final Box box = this.boxes.peek();
+        if (box != null) {
+          box.implications.add(r);
+        }
+      }
+    }
+
+    void imply_e_enter(final Object premise, final Object argument) {
+      if (this.muted > 0) {
+        this.muted++;
+        return;
+      }
+      final Rec f = rec(premise);
+      final Box box = open(new Box(f, false, rec(argument)));
+      if (f.rule == Rule.IMPLY_I && f.state == Rec.PENDING) {
+        // the first use of this ->i: what runs now is its box
+        f.state = Rec.FILLING;
+        assume(argument, box);
+      } else {
+        // an opaque premise, or a box recorded before: only its use counts
+        this.muted = 1;
+      }
+    }
+
+    void imply_e_exit(final Object conclusion, final boolean completed) {
+      if (this.muted > 1) {
+        this.muted--;
+        return;
+      }
+      final Box box;
+      if (this.muted == 1) {
+        this.muted = 0;
+        box = close(this.boxes.peek());
+      } else {
+        final Rec body = completed ? rec(conclusion) : null;
+        box = close(this.boxes.peek());
+        final Rec f = box.premise;
+        if (completed) {
+          f.kids = new Rec[] { box.assumption, body };
+          f.state = Rec.FILLED;
+        } else {
+          f.state = Rec.PENDING;
+        }
+      }
+      if (completed) {
+        tag(conclusion, new Rec(Rule.IMPLY_E, box.premise, box.premise2));
+      }
+    }
+
+    private Term freeze(final Rec r, final IdentityHashMap<Rec, Term> done) {
+      Term t = done.get(r);
+      if (t != null) {
+        return t;
+      }
+      final Rec[] k = r.kids;
+      switch (r.rule) {
+      case PREMISE:
+        t = Term.premise(r.name);
+        break;
+      case ASSUMPTION:
+        t = Term.assumption(r.name);
+        break;
+      case AND_I:
+        t = Term.and_i(freeze(k[0], done), freeze(k[1], done));
+        break;
+      case AND_E1:
+        t = Term.and_e1(freeze(k[0], done));
+        break;
+      case AND_E2:
+        t = Term.and_e2(freeze(k[0], done));
+        break;
+      case OR_I1:
+        t = Term.or_i1(freeze(k[0], done));
+        break;
+      case OR_I2:
+        t = Term.or_i2(freeze(k[0], done));
+        break;
+      case OR_E:
+        t = Term.or_e(freeze(k[0], done), freeze(k[1], done),
+            freeze(k[2], done), freeze(k[3], done), freeze(k[4], done));
+        break;
+      case IMPLY_I:
+        if (r.state == Rec.FILLED) {
+          t = Term.imply_i(freeze(k[0], done), freeze(k[1], done));
+        } else {
+          // its box never ran (yet): an opaque library proof
+          if (r.name == null) {
+            r.name = "h" + ++this.unnamed;
+          }
+          t = Term.premise(r.name);
+        }
+        break;
+      default:
+        t = Term.imply_e(freeze(k[0], done), freeze(k[1], done));
+      }
+      done.put(r, t);
+      return t;
+    }
+  }
+
+  /**
+   * A rule application as it is being recorded. Unlike a Term it can still
+   * change: the box of an "->i" is only filled in when it first runs.
+   **/
+  private static final class Rec {
+    static final int PENDING = 0;
+    static final int FILLING = 1;
+    static final int FILLED = 2;
+    static final int SEALED = 3;
+
+    final Rule rule;
+    String name;
+    Rec[] kids;
+    int state;
+
+    Rec(final Rule rule, final String name) {
+      this.rule = rule;
+      this.name = name;
+    }
+
+    Rec(final Rule rule, final Rec... kids) {
+      this.rule = rule;
+      this.kids = kids;
+    }
+  }
+
+  /** An open "ve" or "->e" box. */
+  private static final class Box {
+    /** The Or or Imply being eliminated. */
+    final Rec premise;
+    /** The untaken side of a "ve", or the argument of a "->e". */
+    final Rec premise2;
+    final boolean left;
+    Rec assumption;
+    /** Pairs of (evidence, its tag before the box), to restore on exit. */
+    final List<Object> undo = new ArrayList<Object>();
+    /** The "->i"s introduced inside this box. */
+    final List<Rec> implications = new ArrayList<Rec>();
+
+    Box(final Rec premise, final boolean left, final Rec premise2) {
+      this.premise = premise;
+      this.left = left;
+      this.premise2 = premise2;
+    }
+  }
+
+  private static final Rule_Hooks.Listener HOOK = new Rule_Hooks.Listener() {
+    @Override
+    public void and_i(final And<?, ?> conclusion, final Object v1,
+        final Object v2) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.and_i(conclusion, v1, v2);
+      }
+    }
+
+    @Override
+    public void and_e1(final And<?, ?> premise, final Object conclusion) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.elim(Rule.AND_E1, premise, conclusion);
+      }
+    }
+
+    @Override
+    public void and_e2(final And<?, ?> premise, final Object conclusion) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.elim(Rule.AND_E2, premise, conclusion);
+      }
+    }
+
+    @Override
+    public void or_i1(final Or<?, ?> conclusion, final Object v1) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.elim(Rule.OR_I1, v1, conclusion);
+      }
+    }
+
+    @Override
+    public void or_i2(final Or<?, ?> conclusion, final Object v2) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.elim(Rule.OR_I2, v2, conclusion);
+      }
+    }
+
+    @Override
+    public void or_e_enter(final Or<?, ?> premise, final boolean left,
+        final Object assumption, final Deduction<?, ?> taken,
+        final Deduction<?, ?> other) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.or_e_enter(premise, left, assumption, other);
+      }
+    }
+
+    @Override
+    public void or_e_exit(final Or<?, ?> premise, final Object conclusion,
+        final boolean completed) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.or_e_exit(conclusion, completed);
+      }
+    }
+
+    @Override
+    public void imply_i(final Imply<?, ?> conclusion,
+        final Deduction<?, ?> deduction) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.imply_i(conclusion);
+      }
+    }
+
+    @Override
+    public void imply_e_enter(final Imply<?, ?> premise,
+        final Object argument) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.imply_e_enter(premise, argument);
+      }
+    }
+
+    @Override
+    public void imply_e_exit(final Imply<?, ?> premise,
+        final Object argument, final Object conclusion,
+        final boolean completed) {
+      final Recorder r = RECORDING.get();
+      if (r != null) {
+        r.imply_e_exit(conclusion, completed);
+      }
+    }
+  };
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testHashConsing() {
+    final Term p = Term.premise("p");
+    final Term x = Term.assumption("x0");
+    final Term t1 = Term.imply_i(x, Term.and_i(x, p));
+    final Term t2 = Term.imply_i(Term.assumption("x0"),
+        Term.and_i(Term.assumption("x0"), Term.premise("p")));
+    assertSame(t1, t2);
+    assertSame(t1.child(1), Term.and_i(x, p));
+    assertNotSame(t1, Term.imply_i(x, Term.and_i(p, x)));
+    assertEquals("->i([x0] ^i(x0, p))", t1.toString());
+    assertEquals(4, t1.size());
+
+    // a proof that uses the same sub-proof twice still stores it once
+    Term t = p;
+    for (int i = 0; i < 100; i++) {
+      t = Term.and_i(t, t);
+    }
+    assertEquals(Long.MAX_VALUE, t.size());
+
+    try {
+      Term.imply_i(p, p);
+      fail("->i must discharge an assumption");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void testRecordExamples() {
+    final Curry_Howard_Isomorphism examples = new Curry_Howard_Isomorphism();
+    final P p = new P();
+    final Q q = new Q();
+    final Imply<And<Q, P>, R> qpIMPLYr = new Imply<And<Q, P>, R>(
+        (And<Q, P> qANDp) -> new R());
+    final Imply<P, R> pIMPLYr = new Imply<P, R>((P p1) -> new R());
+    final Imply<Q, R> qIMPLYr = new Imply<Q, R>((Q q1) -> new R());
+    try (Recorder rec = record()) {
+      rec.premise("p", p).premise("q", q).premise("(q ^ p) -> r", qpIMPLYr)
+          .premise("p -> r", pIMPLYr).premise("q -> r", qIMPLYr);
+
+      final R r12 = Curry_Howard_Isomorphism.example12(p, qpIMPLYr).imply_e(q);
+      assertEquals("->e(->i([x0] ->e((q ^ p) -> r, ^i(x0, p))), q)",
+          rec.termOf(r12).toString());
+
+      final R r2 = examples.example2(pIMPLYr, qIMPLYr).imply_e(
+          Or.<P, Q> or_i1(p));
+      assertEquals("->e(->i([x0] ve(x0, [x1] ->e(p -> r, x1), [x1] ->e(h1, x1))),"
+          + " vi1(p))", rec.termOf(r2).toString());
+
+      // the same proof recorded twice is the same Term
+      final R again = Curry_Howard_Isomorphism.example12(p, qpIMPLYr)
+          .imply_e(q);
+      assertSame(rec.termOf(r12), rec.termOf(again));
+    }
+  }
+
+  @Test
+  public void testEvaluateShared() {
+    // ^i(t, t), 30 times over: 31 distinct Terms, each evaluated once
+    final Term p = Term.premise("p");
+    Term t = p;
+    for (int i = 0; i < 30; i++) {
+      t = Term.and_i(t, t);
+    }
+    final P evidence = new P();
+    final Map<String, Object> premises = new HashMap<String, Object>();
+    premises.put("p", evidence);
+    final And<?, ?> shared = (And<?, ?>) evaluate(t, premises);
+    assertSame(shared.and_e1(), shared.and_e2());
+
+    // and deep: ^e1(^i(...^e1(^i(p, p))..., p)), 100000 levels
+    Term deep = p;
+    for (int i = 0; i < 100000; i++) {
+      deep = Term.and_e1(Term.and_i(deep, p));
+    }
+    assertSame(evidence, evaluate(deep, premises));
+  }
+
+  @Test
+  public void testRecordAndSubclasses() {
+    final P p = new P();
+    final Q q = new Q();
+    final Imply<P, R> pIMPLYr = new Imply<P, R>((P p1) -> new R());
+    try (Recorder rec = record()) {
+      rec.premise("p", p).premise("q", q).premise("p -> r", pIMPLYr);
+
+      final And<P, Q> pANDq = new And<P, Q>(p, q);
+      final R r = pIMPLYr.imply_e(pANDq.and_e1());
+      assertEquals("->e(p -> r, ^e1(^i(p, q)))", rec.termOf(r).toString());
+
+      final Integer one = 1;
+      final Integer two = 2;
+      rec.premise("a", one).premise("b", two);
+      final Primitive_Evidence.IntAnd ab = new Primitive_Evidence.IntAnd(1, 2);
+      assertEquals("^i(a, b)", rec.termOf(ab).toString());
+
+      final P p2 = new P();
+      rec.premise("p2", p2);
+      final R deferred = pIMPLYr.imply_eDeferred(p2).run();
+      assertEquals("->e(p -> r, p2)", rec.termOf(deferred).toString());
+    }
+  }
+}
@@ -0,0 +1,439 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Proof_Terms.Rule;
+
+public class Proof_Tracing {
+  /**
+   * Numbered proof steps from a running program.
+   *
+   * A Tracer writes down the rules the current thread applies as the lines
+   * of a proof, the way the documentation of Curry_Howard_Isomorphism
+   * writes them:
+   *
+   * <pre>
+   *   1. premise
+   *   2. premise
+   *   3. ->e 1,2
+   *   4. ^i 2,3
+   * </pre>
+   *
+   * Each line has a number, the rule, and the numbers of the lines it uses;
+   * evidence no rule made (a premise, or the result of a library proof) is
+   * numbered as a premise the first time it is used. "ve" lines give the
+   * premise and the box that ran ("ve 3,4-6"), preceded by the line that
+   * assumed its evidence.
+   *
+   * To find the line of a piece of evidence, the Tracer keeps its own
+   * identity hash table from evidence to line, so each step costs the same
+   * however long the trace is. Only the last 'capacity' lines are kept: they
+   * go into arrays allocated when the Tracer starts, used as a ring, and a
+   * line that is overwritten is also dropped from the table, so a Tracer
+   * can stay on for as long as a program runs, in bounded memory.
+   *
+   * Tracing is built on Rule_Hooks, so while no thread is tracing it costs
+   * the rules nothing more than the Rule_Hooks check.
+   **/
+
+  private static final ThreadLocal<Tracer> TRACING = new ThreadLocal<Tracer>();
+
+  private static int tracers;
+
+  /**
+   * Starts tracing the rules the current thread applies, keeping the last
+   * 'capacity' lines, until the returned Tracer is closed.
+   **/
+  public static Tracer trace(final int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity " + capacity);
+    }
+    if (TRACING.get() != null) {
+      throw new IllegalStateException("already tracing on this thread");
+    }
+    final Tracer t = new Tracer(capacity);
+    TRACING.set(t);
+    synchronized (Proof_Tracing.class) {
+      if (tracers++ == 0) {
+        Rule_Hooks.add(HOOK);
+      }
+    }
+    return t;
+  }
+
+  /** One line of a trace. */
+  public static final class Step {
+    private final int number;
+    private final Rule rule;
+    private final int[] refs;
+    private final boolean range;
+
+    private Step(final int number, final Rule rule, final int[] refs,
+        final boolean range) {
+      this.number = number;
+      this.rule = rule;
+      this.refs = refs;
+      this.range = range;
+    }
+
+    public int number() {
+      return this.number;
+    }
+
+    /** The rule; PREMISE and ASSUMPTION for lines no rule made. */
+    public Rule rule() {
+      return this.rule;
+    }
+
+    /** The lines this one uses (for "ve": premise, box start, box end). */
+    public int[] refs() {
+      return this.refs.clone();
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder().append(this.number)
+          .append(". ").append(this.rule.symbol);
+      for (int i = 0; i < this.refs.length; i++) {
+        sb.append(i == 0 ? " " : this.range && i == 2 ? "-" : ",")
+            .append(this.refs[i]);
+      }
+      return sb.toString();
+    }
+  }
+
+  public static final class Tracer implements AutoCloseable {
+    private static final int[] NO_REFS = new int[0];
+
+    // the ring: line number % capacity is where a line goes
+    private final int capacity;
+    private final Object[] evidence;
+    private final byte[] rules;
+    private final int[] ref0;
+    private final int[] ref1;
+    private final int[] ref2;
+    private final Index index;
+    private int next = 1;
+    /** Premise and assumption lines of the "ve" boxes we are in. */
+    private int[] boxes = new int[8];
+    private int open;
+    private boolean closed;
+
+    private Tracer(final int capacity) {
+      this.capacity = capacity;
+      this.evidence = new Object[capacity];
+      this.rules = new byte[capacity];
+      this.ref0 = new int[capacity];
+      this.ref1 = new int[capacity];
+      this.ref2 = new int[capacity];
+      this.index = new Index(capacity);
+    }
+
+    /** The line 'evidence' was last concluded on, or 0 if none is kept. */
+    public int stepOf(final Object evidence) {
+      return this.index.get(evidence);
+    }
+
+    /** The lines kept, oldest first. */
+    public List<Step> steps() {
+      final List<Step> steps = new ArrayList<Step>();
+      for (int n = Math.max(1, this.next - this.capacity); n < this.next; n++) {
+        final int i = n % this.capacity;
+        final Rule rule = Rule.values()[this.rules[i]];
+        final int[] refs;
+        if (rule == Rule.OR_E) {
+          refs = new int[] { this.ref0[i], this.ref1[i], this.ref2[i] };
+        } else if (rule.arity == 0 || rule == Rule.IMPLY_I) {
+          refs = NO_REFS;
+        } else if (rule == Rule.AND_I || rule == Rule.IMPLY_E) {
+          refs = new int[] { this.ref0[i], this.ref1[i] };
+        } else {
+          refs = new int[] { this.ref0[i] };
+        }
+        steps.add(new Step(n, rule, refs, rule == Rule.OR_E));
+      }
+      return Collections.unmodifiableList(steps);
+    }
+
+    /** Stops tracing; the steps can still be read afterwards. */
+    @Override
+    public void close() {
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      TRACING.remove();
+      synchronized (Proof_Tracing.class) {
+        if (--tracers == 0) {
+          Rule_Hooks.remove(HOOK);
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      for (final Step s : steps()) {
+        sb.append(s).append('\n');
+      }
+      return sb.toString();
+    }
+
+    /** The line of 'v', numbering it as a premise if it has none. */
+    private int ref(final Object v) {
+      final int n = this.index.get(v);
+      return n != 0 ? n : add(Rule.PREMISE, v, 0, 0, 0);
+    }
+
+    private int add(final Rule rule, final Object v, final int r0,
+        final int r1, final int r2) {
+      final int n = this.next++;
+      final int i = n % this.capacity;
+      final Object old = this.evidence[i];
+      if (old != null && this.index.get(old) == n - this.capacity) {
+        this.index.remove(old);
+      }
+      this.evidence[i] = v;
+      this.rules[i] = (byte) rule.ordinal();
+      this.ref0[i] = r0;
+      this.ref1[i] = r1;
+      this.ref2[i] = r2;
+      if (v != null) {
+        this.index.put(v, n);
+      }
+      return n;
+    }
+
+    void step(final Rule rule, final Object premise, final Object conclusion) {
+      add(rule, conclusion, ref(premise), 0, 0);
+    }
+
+    void and_i(final Object conclusion, final Object v1, final Object v2) {
+      final int r0 = ref(v1);
+      add(Rule.AND_I, conclusion, r0, ref(v2), 0);
+    }
+
+    void or_e_enter(final Object premise, final Object assumption) {
+      // keep (premise, assumption) for the exit: two ints per open box
+      if (this.open + 2 > this.boxes.length) {
+        this.boxes = Arrays.copyOf(this.boxes, this.boxes.length * 2);
+      }
+      this.boxes[this.open++] = ref(premise);
+      this.boxes[this.open++] = add(Rule.ASSUMPTION, assumption, 0, 0, 0);
+    }
+
+    void or_e_exit(final Object conclusion, final boolean completed) {
+      final int assumed = this.boxes[--this.open];
+      final int premise = this.boxes[--this.open];
+      if (completed) {
+        add(Rule.OR_E, conclusion, premise, assumed, ref(conclusion));
+      }
+    }
+
+    void imply_e_exit(final Object premise, final Object argument,
+        final Object conclusion, final boolean completed) {
+      if (completed) {
+        final int r0 = ref(premise);
+        add(Rule.IMPLY_E, conclusion, r0, ref(argument), 0);
+      }
+    }
+  }
+
+  /**
+   * Open addressing from evidence (by identity) to line number, with room
+   * for twice as many entries as the ring holds.
+   **/
+  private static final class Index {
+    private final Object[] keys;
+    private final int[] values;
+    private final int mask;
+
+    Index(final int capacity) {
+      final int size = Integer.highestOneBit(Math.max(2, capacity) * 4 - 1);
+      this.keys = new Object[size];
+      this.values = new int[size];
+      this.mask = size - 1;
+    }
+
+    private int slot(final Object k) {
+      int i = mix(System.identityHashCode(k)) & this.mask;
+      while (this.keys[i] != null && this.keys[i] != k) {
+        i = (i + 1) & this.mask;
+      }
+      return i;
+    }
+
+    int get(final Object k) {
+      return k == null ? 0 : this.values[slot(k)];
+    }
+
+    void put(final Object k, final int v) {
+      final int i = slot(k);
+      this.keys[i] = k;
+      this.values[i] = v;
+    }
+
+    void remove(final Object k) {
+      int i = slot(k);
+      if (this.keys[i] == null) {
+        return;
+      }
+      this.keys[i] = null;
+      this.values[i] = 0;
+      // move back the entries that probed past the hole
+      for (int j = (i + 1) & this.mask; this.keys[j] != null; j = (j + 1)
+          & this.mask) {
+        final int home = mix(System.identityHashCode(this.keys[j])) & this.mask;
+        if (((j - home) & this.mask) >= ((j - i) & this.mask)) {
+          this.keys[i] = this.keys[j];
+          this.values[i] = this.values[j];
+          this.keys[j] = null;
+          this.values[j] = 0;
+          i = j;
+        }
+      }
+    }
+
+    private static int mix(final int h) {
+      return h ^ (h >>> 16);
+    }
+  }
+
+  private static final Rule_Hooks.Listener HOOK = new Rule_Hooks.Listener() {
+    @Override
+    public void and_i(final And<?, ?> conclusion, final Object v1,
+        final Object v2) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.and_i(conclusion, v1, v2);
+      }
+    }
+
+    @Override
+    public void and_e1(final And<?, ?> premise, final Object conclusion) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.step(Rule.AND_E1, premise, conclusion);
+      }
+    }
+
+    @Override
+    public void and_e2(final And<?, ?> premise, final Object conclusion) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.step(Rule.AND_E2, premise, conclusion);
+      }
+    }
+
+    @Override
+    public void or_i1(final Or<?, ?> conclusion, final Object v1) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.step(Rule.OR_I1, v1, conclusion);
+      }
+    }
+
+    @Override
+    public void or_i2(final Or<?, ?> conclusion, final Object v2) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.step(Rule.OR_I2, v2, conclusion);
+      }
+    }
+
+    @Override
+    public void or_e_enter(final Or<?, ?> premise, final boolean left,
+        final Object assumption, final Deduction<?, ?> taken,
+        final Deduction<?, ?> other) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.or_e_enter(premise, assumption);
+      }
+    }
+
+    @Override
+    public void or_e_exit(final Or<?, ?> premise, final Object conclusion,
+        final boolean completed) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.or_e_exit(conclusion, completed);
+      }
+    }
+
+    @Override
+    public void imply_i(final Imply<?, ?> conclusion,
+        final Deduction<?, ?> deduction) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.add(Rule.IMPLY_I, conclusion, 0, 0, 0);
+      }
+    }
+
+    @Override
+    public void imply_e_exit(final Imply<?, ?> premise,
+        final Object argument, final Object conclusion,
+        final boolean completed) {
+      final Tracer t = TRACING.get();
+      if (t != null) {
+        t.imply_e_exit(premise, argument, conclusion, completed);
+      }
+    }
+  };
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testTraceExample1() {
+    final P p = new P();
+    final Imply<P, Q> pIMPLYq = new Imply<P, Q>((P assumptions) -> new Q());
+    final Imply<And<P, Q>, R> pqIMPLYr = new Imply<And<P, Q>, R>(
+        (And<P, Q> assumptions) -> new R());
+    final R r;
+    try (Tracer t = trace(100)) {
+      r = Curry_Howard_Isomorphism.example1(pqIMPLYr, pIMPLYq, p);
+      assertEquals("1. premise\n2. premise\n3. ->e 1,2\n4. ^i 2,3\n"
+          + "5. premise\n6. ->e 5,4\n", t.toString());
+      assertEquals(6, t.stepOf(r));
+      assertEquals(2, t.stepOf(p));
+    }
+  }
+
+  @Test
+  public void testTraceOrAndRing() {
+    final P p = new P();
+    try (Tracer t = trace(4)) {
+      final Or<P, Q> pORq = Or.or_i1(p);
+      final P same = pORq.or_e((P p1) -> new And<P, P>(p1, p1).and_e1(),
+          (Q q) -> p);
+      assertEquals(same, p);
+      assertEquals("3. assume\n4. ^i 3,3\n5. ^e1 4\n6. ve 2,3-5\n",
+          t.toString());
+      // line 2 has been pushed out, so pORq is numbered again
+      pORq.or_e((P p1) -> p1, (Q q) -> p);
+      assertEquals("6. ve 2,3-5\n7. premise\n8. assume\n9. ve 7,8-8\n",
+          t.toString());
+      // ...and lines no longer kept are no longer found
+      for (int i = 0; i < 10; i++) {
+        new And<P, P>(p, p);
+      }
+      assertEquals(0, t.stepOf(pORq));
+      assertEquals(4, t.steps().size());
+    }
+  }
+}
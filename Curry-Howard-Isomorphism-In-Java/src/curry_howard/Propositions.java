@@ -0,0 +1,535 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+
+public class Propositions {
+  /**
+   * Propositions as text.
+   *
+   * In Curry_Howard_Isomorphism a proposition is a Java type, such as
+   * Imply<And<P, Q>, R>. The proofs in its documentation, however, write
+   * them the way logic books do:
+   *
+   * <pre>
+   *   (p ^ q) -> r
+   * </pre>
+   *
+   * A Proposition is that written form: an atom (p, q, r, ...), or two
+   * propositions joined by "^" (And), "v" (Or) or "->" (Imply, also written
+   * "-->"). "^" binds tighter than "v", which binds tighter than "->";
+   * "^" and "v" group to the left and "->" to the right, so
+   *
+   * <pre>
+   *   p v q v r        is   (p v q) v r
+   *   p -> q -> r      is   p -> (q -> r)
+   *   p ^ q -> q v p   is   (p ^ q) -> (q v p)
+   * </pre>
+   *
+   * toString() prints a Proposition back with only the parentheses that
+   * are needed.
+   *
+   * Like Proof_Terms' Terms, Propositions are hash-consed: the factories
+   * return the one existing Proposition when a structurally identical one is
+   * alive already, so two Propositions are equal exactly when they are the
+   * same object, hashCode() is computed once, and tables keyed by
+   * Propositions (such as Proof_Search's) never compare them part by part.
+   * The table of Propositions holds them weakly.
+   *
+   * The generic type of evidence is erased at run time: an Imply<And<P, Q>,
+   * R> does not know it stands for (p ^ q) -> r. atom(P.class) is the atom
+   * a marker class such as P stands for (its simple name in lower case, so
+   * p), and describe() attaches a Proposition to any piece of evidence, for
+   * descriptor() to find later. Evidence that is never described costs
+   * nothing; the descriptors are held in a table that does not keep the
+   * evidence alive.
+   *
+   * A Sequent is what the examples set out to prove: premises, separated by
+   * commas, then "|-" and the conclusion, such as
+   *
+   * <pre>
+   *   p -> (q -> r) |- (p -> q) -> (p -> r)
+   * </pre>
+   **/
+
+  public static final class Proposition {
+    public enum Kind {
+      ATOM(4, ""), AND(3, " ^ "), OR(2, " v "), IMPLY(1, " -> ");
+
+      final int precedence;
+      final String symbol;
+
+      Kind(final int precedence, final String symbol) {
+        this.precedence = precedence;
+        this.symbol = symbol;
+      }
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final Proposition left;
+    private final Proposition right;
+    private final int hash;
+
+    private Proposition(final Kind kind, final String name,
+        final Proposition left, final Proposition right) {
+      this.kind = kind;
+      this.name = name;
+      this.left = left;
+      this.right = right;
+      this.hash = kind == Kind.ATOM ? name.hashCode()
+          : (kind.hashCode() * 31 + left.hash) * 31 + right.hash;
+    }
+
+    public static Proposition atom(final String name) {
+      return intern(new Proposition(Kind.ATOM, name, null, null));
+    }
+
+    /** The atom 'marker' stands for: p for P.class. */
+    public static Proposition atom(final Class<?> marker) {
+      return atom(marker.getSimpleName().toLowerCase(Locale.ROOT));
+    }
+
+    public static Proposition and(final Proposition left,
+        final Proposition right) {
+      return intern(new Proposition(Kind.AND, null, left, right));
+    }
+
+    public static Proposition or(final Proposition left,
+        final Proposition right) {
+      return intern(new Proposition(Kind.OR, null, left, right));
+    }
+
+    public static Proposition imply(final Proposition left,
+        final Proposition right) {
+      return intern(new Proposition(Kind.IMPLY, null, left, right));
+    }
+
+    /**
+     * Reads a proposition written as above.
+     *
+     * @throws IllegalArgumentException if 'text' is not one
+     **/
+    public static Proposition parse(final String text) {
+      final Parser parser = new Parser(text, 0, text.length());
+      final Proposition p = parser.imply();
+      parser.end();
+      return p;
+    }
+
+    /** Like parse(text.substring(from, to)), without the copy. */
+    static Proposition parse(final String text, final int from, final int to) {
+      final Parser parser = new Parser(text, from, to);
+      final Proposition p = parser.imply();
+      parser.end();
+      return p;
+    }
+
+    public Kind kind() {
+      return this.kind;
+    }
+
+    /** The name of an atom, else null. */
+    public String name() {
+      return this.name;
+    }
+
+    /** T1 of T1 ^ T2, T1 v T2 or T1 -> T2; null for an atom. */
+    public Proposition left() {
+      return this.left;
+    }
+
+    /** T2 of T1 ^ T2, T1 v T2 or T1 -> T2; null for an atom. */
+    public Proposition right() {
+      return this.right;
+    }
+
+    public boolean is(final Kind kind, final Proposition left,
+        final Proposition right) {
+      return this.kind == kind && this.left == left && this.right == right;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+
+    /**
+     * Same kind, same name and the very same parts. Because the parts are
+     * themselves hash-consed, this is structural equality, and for two
+     * Propositions returned by the factories it is the same as ==.
+     **/
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Proposition)) {
+        return false;
+      }
+      final Proposition p = (Proposition) o;
+      if (p.hash != this.hash || p.kind != this.kind) {
+        return false;
+      }
+      return this.kind == Kind.ATOM ? p.name.equals(this.name)
+          : p.left == this.left && p.right == this.right;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      appendTo(sb);
+      return sb.toString();
+    }
+
+    private void appendTo(final StringBuilder sb) {
+      if (this.kind == Kind.ATOM) {
+        sb.append(this.name);
+        return;
+      }
+      // "^" and "v" group to the left, "->" to the right
+      final boolean rightAssoc = this.kind == Kind.IMPLY;
+      appendOperand(sb, this.left, rightAssoc);
+      sb.append(this.kind.symbol);
+      appendOperand(sb, this.right, !rightAssoc);
+    }
+
+    private void appendOperand(final StringBuilder sb, final Proposition p,
+        final boolean parenthesizeSame) {
+      final int pp = p.kind.precedence;
+      final int mine = this.kind.precedence;
+      if (pp < mine || (pp == mine && parenthesizeSame)) {
+        sb.append('(');
+        p.appendTo(sb);
+        sb.append(')');
+      } else {
+        p.appendTo(sb);
+      }
+    }
+  }
+
+  /*****************************************************************/
+  /** Hash-consing */
+  /*****************************************************************/
+
+  /** The live Propositions; see Hash_Consing. */
+  private static final Hash_Consing<Proposition> PROPOSITIONS = new Hash_Consing<Proposition>();
+
+  private static Proposition intern(final Proposition p) {
+    return PROPOSITIONS.intern(p);
+  }
+
+  /** Number of distinct Propositions currently alive. */
+  public static int sharedPropositions() {
+    return PROPOSITIONS.size();
+  }
+
+  /*****************************************************************/
+  /** Descriptors of evidence */
+  /*****************************************************************/
+
+  private static final ConcurrentHashMap<Identity, Proposition> DESCRIPTORS = new ConcurrentHashMap<Identity, Proposition>();
+  private static final ReferenceQueue<Object> COLLECTED = new ReferenceQueue<Object>();
+
+  /**
+   * A piece of evidence, by identity (evidence classes need not define
+   * equals()), held weakly.
+   **/
+  private static final class Identity extends WeakReference<Object> {
+    private final int hash;
+
+    Identity(final Object evidence, final ReferenceQueue<Object> queue) {
+      super(evidence, queue);
+      this.hash = System.identityHashCode(evidence);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Identity)) {
+        return false;
+      }
+      final Object evidence = get();
+      return evidence != null && evidence == ((Identity) o).get();
+    }
+  }
+
+  /**
+   * Records that 'evidence' is evidence for 'p', replacing what was
+   * recorded before, and returns it.
+   **/
+  public static <T> T describe(final T evidence, final Proposition p) {
+    if (evidence == null || p == null) {
+      throw new IllegalArgumentException("evidence and descriptor needed");
+    }
+    Reference<?> gone;
+    while ((gone = COLLECTED.poll()) != null) {
+      DESCRIPTORS.remove(gone);
+    }
+    DESCRIPTORS.put(new Identity(evidence, COLLECTED), p);
+    return evidence;
+  }
+
+  /** What 'evidence' was described as, or null. */
+  public static Proposition descriptor(final Object evidence) {
+    return evidence == null ? null
+        : DESCRIPTORS.get(new Identity(evidence, null));
+  }
+
+  public static final class Sequent {
+    private final List<Proposition> premises;
+    private final Proposition conclusion;
+
+    public Sequent(final List<Proposition> premises,
+        final Proposition conclusion) {
+      this.premises = Collections.unmodifiableList(
+          new ArrayList<Proposition>(premises));
+      this.conclusion = conclusion;
+    }
+
+    /**
+     * Reads "premise, ..., premise |- conclusion".
+     *
+     * @throws IllegalArgumentException if 'text' is not a sequent
+     **/
+    public static Sequent parse(final String text) {
+      return parse(text, 0);
+    }
+
+    static Sequent parse(final String text, final int from) {
+      final int turnstile = text.indexOf("|-", from);
+      if (turnstile < 0) {
+        throw new IllegalArgumentException("'|-' expected in \"" + text
+            + "\"");
+      }
+      final List<Proposition> premises = new ArrayList<Proposition>();
+      int start = from;
+      for (int j = from; j <= turnstile; j++) {
+        if (j == turnstile || text.charAt(j) == ',') {
+          if (j == turnstile && text.substring(start, j).trim().isEmpty()
+              && premises.isEmpty()) {
+            break;
+          }
+          premises.add(Proposition.parse(text, start, j));
+          start = j + 1;
+        }
+      }
+      return new Sequent(premises,
+          Proposition.parse(text, turnstile + 2, text.length()));
+    }
+
+    public List<Proposition> premises() {
+      return this.premises;
+    }
+
+    public Proposition conclusion() {
+      return this.conclusion;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      for (final Proposition p : this.premises) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(p);
+      }
+      return sb.append(sb.length() > 0 ? " |- " : "|- ")
+          .append(this.conclusion).toString();
+    }
+  }
+
+  /**
+   * Recursive descent, one method per precedence level.
+   **/
+  private static final class Parser {
+    private final String s;
+    private final int end;
+    private int i;
+
+    Parser(final String s, final int from, final int to) {
+      this.s = s;
+      this.i = from;
+      this.end = to;
+    }
+
+    Proposition imply() {
+      final Proposition left = or();
+      if (arrow()) {
+        return Proposition.imply(left, imply());
+      }
+      return left;
+    }
+
+    private Proposition or() {
+      Proposition p = and();
+      while (skipSpaces() && isOperatorV()) {
+        this.i++;
+        p = Proposition.or(p, and());
+      }
+      return p;
+    }
+
+    private Proposition and() {
+      Proposition p = atom();
+      while (skipSpaces() && this.s.charAt(this.i) == '^') {
+        this.i++;
+        p = Proposition.and(p, atom());
+      }
+      return p;
+    }
+
+    private Proposition atom() {
+      if (!skipSpaces()) {
+        throw error("proposition expected");
+      }
+      final char c = this.s.charAt(this.i);
+      if (c == '(') {
+        this.i++;
+        final Proposition p = imply();
+        if (!skipSpaces() || this.s.charAt(this.i) != ')') {
+          throw error("')' expected");
+        }
+        this.i++;
+        return p;
+      }
+      if (!Character.isLetter(c) || isOperatorV()) {
+        throw error("proposition expected");
+      }
+      final int start = this.i;
+      while (this.i < this.end && isNameChar(this.s.charAt(this.i))) {
+        this.i++;
+      }
+      return Proposition.atom(this.s.substring(start, this.i));
+    }
+
+    /** Reads "->" or "-->" if it is next. */
+    private boolean arrow() {
+      if (!skipSpaces() || this.s.charAt(this.i) != '-') {
+        return false;
+      }
+      int j = this.i + 1;
+      if (j < this.end && this.s.charAt(j) == '-') {
+        j++;
+      }
+      if (j >= this.end || this.s.charAt(j) != '>') {
+        throw error("'->' expected");
+      }
+      this.i = j + 1;
+      return true;
+    }
+
+    /** A "v" that is a word of its own, not part of a name. */
+    private boolean isOperatorV() {
+      return this.s.charAt(this.i) == 'v'
+          && (this.i + 1 >= this.end || !isNameChar(this.s.charAt(this.i + 1)));
+    }
+
+    private static boolean isNameChar(final char c) {
+      return Character.isLetterOrDigit(c) || c == '_' || c == '\'';
+    }
+
+    /** Skips white space; false if nothing is left. */
+    private boolean skipSpaces() {
+      while (this.i < this.end && Character.isWhitespace(this.s.charAt(this.i))) {
+        this.i++;
+      }
+      return this.i < this.end;
+    }
+
+    void end() {
+      if (skipSpaces()) {
+        throw error("unexpected '" + this.s.charAt(this.i) + "'");
+      }
+    }
+
+    private IllegalArgumentException error(final String message) {
+      return new IllegalArgumentException(message + " at column " + this.i
+          + " of \"" + this.s + "\"");
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testParse() {
+    final Proposition p = Proposition.atom("p");
+    final Proposition q = Proposition.atom("q");
+    final Proposition r = Proposition.atom("r");
+    assertEquals(Proposition.or(Proposition.or(p, q), r),
+        Proposition.parse("p v q v r"));
+    assertEquals(Proposition.imply(p, Proposition.imply(q, r)),
+        Proposition.parse("p --> (q -> r)"));
+    assertEquals(Proposition.imply(Proposition.and(p, q), Proposition.or(q, p)),
+        Proposition.parse("p ^ q -> q v p"));
+    assertNotEquals(Proposition.parse("(p -> q) -> r"),
+        Proposition.parse("p -> q -> r"));
+    // names may contain a "v", but "v" alone is the operator
+    assertEquals(Proposition.or(Proposition.atom("vp"), Proposition.atom("pv")),
+        Proposition.parse("vp v pv"));
+
+    for (final String s : new String[] { "(p -> q) -> p -> r",
+        "p ^ (q ^ r)", "(p v q) ^ r -> p v q ^ r" }) {
+      assertEquals(s, Proposition.parse(s).toString());
+    }
+
+    final Sequent s = Sequent.parse("p -> (q -> r) |- (p -> q) -> (p -> r)");
+    assertEquals(1, s.premises().size());
+    assertEquals(Proposition.parse("(p -> q) -> p -> r"), s.conclusion());
+    assertEquals(0, Sequent.parse("|- p -> p").premises().size());
+
+    for (final String bad : new String[] { "", "p ^", "(p", "p q", "p - q" }) {
+      try {
+        Proposition.parse(bad);
+        fail(bad);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testInterning() {
+    final Proposition pq = Proposition.parse("(p ^ q) -> r");
+    assertSame(pq, Proposition.imply(Proposition.and(Proposition.atom(P.class),
+        Proposition.atom(Q.class)), Proposition.atom(R.class)));
+    assertSame(pq.left(), Proposition.parse("p ^ q"));
+    assertNotSame(pq, Proposition.parse("p ^ (q -> r)"));
+
+    // evidence that says what it is evidence for
+    final Imply<And<P, Q>, R> pqIMPLYr = describe(new Imply<And<P, Q>, R>(
+        (And<P, Q> x) -> new R()), pq);
+    assertSame(pq, descriptor(pqIMPLYr));
+    assertNull(descriptor(new Imply<And<P, Q>, R>((And<P, Q> x) -> new R())));
+  }
+}
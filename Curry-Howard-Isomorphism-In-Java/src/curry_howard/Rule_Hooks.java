@@ -0,0 +1,257 @@
+package curry_howard;
+
+import java.util.Arrays;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Trampolining.Trampoline;
+
+public final class Rule_Hooks {
+  /**
+   * A way to watch the inference rules of Curry_Howard_Isomorphism while a
+   * proof runs.
+   *
+   * Every rule (the And constructor "^i", and_e1 "^e1", and_e2 "^e2", the
+   * Left and Right constructors "vi1"/"vi2", or_e "ve", the Imply
+   * constructor "->i" and imply_e "->e") tells the installed Listener that
+   * it has been applied, and to which evidence. Recording proof terms
+   * (Proof_Terms), tracing and metrics are built on top of this.
+   *
+   * The two rules that run a sub-proof, "ve" and "->e", report twice: once
+   * when the box is entered (with the evidence that becomes its assumption)
+   * and once when it is left (with the evidence it concluded, or with
+   * completed == false if the sub-proof threw).
+   *
+   * When no Listener is installed, which is the normal case, each rule pays
+   * for one read of a volatile field and nothing else.
+   **/
+
+  private Rule_Hooks() {
+  }
+
+  public interface Listener {
+    default void and_i(final And<?, ?> conclusion, final Object v1,
+        final Object v2) {
+    }
+
+    default void and_e1(final And<?, ?> premise, final Object conclusion) {
+    }
+
+    default void and_e2(final And<?, ?> premise, final Object conclusion) {
+    }
+
+    default void or_i1(final Or<?, ?> conclusion, final Object v1) {
+    }
+
+    default void or_i2(final Or<?, ?> conclusion, final Object v2) {
+    }
+
+    /**
+     * 've' is about to run 'taken' on the evidence 'assumption' held by
+     * 'premise' (a Left if 'left', else a Right); 'other' is the subproof
+     * for the side that is not true.
+     **/
+    default void or_e_enter(final Or<?, ?> premise, final boolean left,
+        final Object assumption, final Deduction<?, ?> taken,
+        final Deduction<?, ?> other) {
+    }
+
+    default void or_e_exit(final Or<?, ?> premise, final Object conclusion,
+        final boolean completed) {
+    }
+
+    default void imply_i(final Imply<?, ?> conclusion,
+        final Deduction<?, ?> deduction) {
+    }
+
+    default void imply_e_enter(final Imply<?, ?> premise,
+        final Object argument) {
+    }
+
+    default void imply_e_exit(final Imply<?, ?> premise,
+        final Object argument, final Object conclusion,
+        final boolean completed) {
+    }
+  }
+
+  /** The installed listener(s), or null if none. */
+  static volatile Listener listener;
+
+  private static Listener[] installed = new Listener[0];
+
+  /** Starts reporting rule applications to 'l' (in addition to others). */
+  public static synchronized void add(final Listener l) {
+    installed = Arrays.copyOf(installed, installed.length + 1);
+    installed[installed.length - 1] = l;
+    update();
+  }
+
+  /** Stops reporting rule applications to 'l'. */
+  public static synchronized void remove(final Listener l) {
+    for (int i = 0; i < installed.length; i++) {
+      if (installed[i] == l) {
+        final Listener[] rest = new Listener[installed.length - 1];
+        System.arraycopy(installed, 0, rest, 0, i);
+        System.arraycopy(installed, i + 1, rest, i, rest.length - i);
+        installed = rest;
+        update();
+        return;
+      }
+    }
+  }
+
+  private static void update() {
+    switch (installed.length) {
+    case 0:
+      listener = null;
+      break;
+    case 1:
+      listener = installed[0];
+      break;
+    default:
+      listener = new Composite(installed.clone());
+    }
+  }
+
+  /*****************************************************************/
+  /** Helpers for the rules that run sub-proofs                    */
+  /*****************************************************************/
+
+  static <T1, T3> T3 or_e(final Listener l, final Or<?, ?> premise,
+      final boolean left, final T1 v, final Deduction<T1, T3> taken,
+      final Deduction<?, ?> other) {
+    l.or_e_enter(premise, left, v, taken, other);
+    final T3 conclusion;
+    try {
+      conclusion = taken.apply(v);
+    } catch (Throwable t) {
+      l.or_e_exit(premise, null, false);
+      throw t;
+    }
+    l.or_e_exit(premise, conclusion, true);
+    return conclusion;
+  }
+
+  static <T1, T2> T2 imply_e(final Listener l, final Imply<T1, T2> premise,
+      final Deduction<T1, T2> d, final T1 v) {
+    l.imply_e_enter(premise, v);
+    final T2 conclusion;
+    try {
+      conclusion = d.apply(v);
+    } catch (Throwable t) {
+      l.imply_e_exit(premise, v, null, false);
+      throw t;
+    }
+    l.imply_e_exit(premise, v, conclusion, true);
+    return conclusion;
+  }
+
+  /** imply_e for imply_eDeferred: exits when the trampoline gets there. */
+  static <T1, T2> Trampoline<T2> imply_eDeferred(final Listener l,
+      final Imply<T1, T2> premise, final Deduction<T1, T2> d, final T1 v) {
+    l.imply_e_enter(premise, v);
+    final Trampoline<T2> steps;
+    try {
+      steps = d.applyDeferred(v);
+    } catch (Throwable t) {
+      l.imply_e_exit(premise, v, null, false);
+      throw t;
+    }
+    return steps.<T2> map((T2 conclusion) -> {
+      l.imply_e_exit(premise, v, conclusion, true);
+      return conclusion;
+    }).onFailure(() -> l.imply_e_exit(premise, v, null, false));
+  }
+
+  /**
+   * Several listeners at once. Exit events are delivered in reverse order,
+   * so that every listener sees properly nested enter/exit pairs.
+   **/
+  private static final class Composite implements Listener {
+    private final Listener[] ls;
+
+    Composite(final Listener[] ls) {
+      this.ls = ls;
+    }
+
+    @Override
+    public void and_i(final And<?, ?> conclusion, final Object v1,
+        final Object v2) {
+      for (final Listener l : this.ls) {
+        l.and_i(conclusion, v1, v2);
+      }
+    }
+
+    @Override
+    public void and_e1(final And<?, ?> premise, final Object conclusion) {
+      for (final Listener l : this.ls) {
+        l.and_e1(premise, conclusion);
+      }
+    }
+
+    @Override
+    public void and_e2(final And<?, ?> premise, final Object conclusion) {
+      for (final Listener l : this.ls) {
+        l.and_e2(premise, conclusion);
+      }
+    }
+
+    @Override
+    public void or_i1(final Or<?, ?> conclusion, final Object v1) {
+      for (final Listener l : this.ls) {
+        l.or_i1(conclusion, v1);
+      }
+    }
+
+    @Override
+    public void or_i2(final Or<?, ?> conclusion, final Object v2) {
+      for (final Listener l : this.ls) {
+        l.or_i2(conclusion, v2);
+      }
+    }
+
+    @Override
+    public void or_e_enter(final Or<?, ?> premise, final boolean left,
+        final Object assumption, final Deduction<?, ?> taken,
+        final Deduction<?, ?> other) {
+      for (final Listener l : this.ls) {
+        l.or_e_enter(premise, left, assumption, taken, other);
+      }
+    }
+
+    @Override
+    public void or_e_exit(final Or<?, ?> premise, final Object conclusion,
+        final boolean completed) {
+      for (int i = this.ls.length - 1; i >= 0; i--) {
+        this.ls[i].or_e_exit(premise, conclusion, completed);
+      }
+    }
+
+    @Override
+    public void imply_i(final Imply<?, ?> conclusion,
+        final Deduction<?, ?> deduction) {
+      for (final Listener l : this.ls) {
+        l.imply_i(conclusion, deduction);
+      }
+    }
+
+    @Override
+    public void imply_e_enter(final Imply<?, ?> premise,
+        final Object argument) {
+      for (final Listener l : this.ls) {
+        l.imply_e_enter(premise, argument);
+      }
+    }
+
+    @Override
+    public void imply_e_exit(final Imply<?, ?> premise,
+        final Object argument, final Object conclusion,
+        final boolean completed) {
+      for (int i = this.ls.length - 1; i >= 0; i--) {
+        this.ls[i].imply_e_exit(premise, argument, conclusion, completed);
+      }
+    }
+  }
+}
@@ -0,0 +1,506 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.And;
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Proof_Terms.Rule;
+
+public class Rule_Metrics {
+  /**
+   * How often each rule is applied, and how long the sub-proofs take.
+   *
+   * While enabled, every rule application is counted: "^i", "^e1", "^e2",
+   * "vi1", "vi2", "ve", "->i" and "->e". The two rules that run a
+   * sub-proof, "ve" and "->e", are also timed, from entering the box to
+   * leaving it (nested boxes count in each box they are inside of). The
+   * others construct or open a single object, which is what the count
+   * measures.
+   *
+   * The counters are LongAdders, which spread updates from different
+   * threads over separate cells, so counting does not make the threads
+   * contend; counting and timing allocate nothing. When disabled (the
+   * default) nothing is installed in Rule_Hooks and the rules pay for
+   * nothing.
+   *
+   * register() publishes the counters as the MXBean
+   * "curry_howard:type=Rule_Metrics", whose Enabled attribute switches
+   * counting on and off at run time (from jconsole, say).
+   *
+   * With FlightRecorderEvents on as well, each rule application is also a
+   * Java Flight Recorder event "curry_howard.Rule", with the rule, the
+   * classes of the evidence it used and made, and the number of "ve" and
+   * "->e" boxes it is inside of; "ve" and "->e" events last as long as
+   * their box. The events are defined at run time through
+   * jdk.jfr.EventFactory, so this needs a JDK 12 or newer (the library
+   * itself still runs on 8), and unlike counting, each event is an object.
+   **/
+
+  private static final Rule[] RULES = { Rule.AND_I, Rule.AND_E1, Rule.AND_E2,
+      Rule.OR_I1, Rule.OR_I2, Rule.OR_E, Rule.IMPLY_I, Rule.IMPLY_E };
+
+  private static final LongAdder[] COUNTS = adders();
+  private static final LongAdder[] NANOS = adders();
+
+  private static volatile boolean enabled;
+  private static volatile Flight flight;
+
+  private static LongAdder[] adders() {
+    final LongAdder[] a = new LongAdder[Rule.values().length];
+    for (final Rule r : RULES) {
+      a[r.ordinal()] = new LongAdder();
+    }
+    return a;
+  }
+
+  /** Starts or stops counting. */
+  public static synchronized void setEnabled(final boolean on) {
+    if (on != enabled) {
+      enabled = on;
+      if (on) {
+        Rule_Hooks.add(HOOK);
+      } else {
+        Rule_Hooks.remove(HOOK);
+      }
+    }
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts or stops Flight Recorder events (while enabled).
+   *
+   * @throws UnsupportedOperationException if this JVM cannot define them
+   **/
+  public static synchronized void setFlightRecorderEvents(final boolean on) {
+    flight = on ? Flight.get() : null;
+  }
+
+  public static boolean isFlightRecorderEvents() {
+    return flight != null;
+  }
+
+  /** Applications of 'rule' (one of "^i" ... "->e") so far. */
+  public static long count(final Rule rule) {
+    return adder(COUNTS, rule).sum();
+  }
+
+  /** Nanoseconds spent in the boxes of 'rule' ("ve" or "->e") so far. */
+  public static long nanos(final Rule rule) {
+    return adder(NANOS, rule).sum();
+  }
+
+  private static LongAdder adder(final LongAdder[] a, final Rule rule) {
+    final LongAdder adder = a[rule.ordinal()];
+    if (adder == null) {
+      throw new IllegalArgumentException("not counted: " + rule);
+    }
+    return adder;
+  }
+
+  public static void reset() {
+    for (final Rule r : RULES) {
+      COUNTS[r.ordinal()].reset();
+      NANOS[r.ordinal()].reset();
+    }
+  }
+
+  /*****************************************************************/
+  /** JMX */
+  /*****************************************************************/
+
+  public static final String OBJECT_NAME = "curry_howard:type=Rule_Metrics";
+
+  public interface MetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean on);
+
+    boolean isFlightRecorderEvents();
+
+    void setFlightRecorderEvents(boolean on);
+
+    /** Applications per rule, by symbol. */
+    Map<String, Long> getCounts();
+
+    /** Nanoseconds per rule that runs a sub-proof, by symbol. */
+    Map<String, Long> getNanos();
+
+    void reset();
+  }
+
+  private static final class Metrics implements MetricsMXBean {
+    @Override
+    public boolean isEnabled() {
+      return Rule_Metrics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(final boolean on) {
+      Rule_Metrics.setEnabled(on);
+    }
+
+    @Override
+    public boolean isFlightRecorderEvents() {
+      return Rule_Metrics.isFlightRecorderEvents();
+    }
+
+    @Override
+    public void setFlightRecorderEvents(final boolean on) {
+      Rule_Metrics.setFlightRecorderEvents(on);
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+      final Map<String, Long> m = new LinkedHashMap<String, Long>();
+      for (final Rule r : RULES) {
+        m.put(r.symbol, count(r));
+      }
+      return m;
+    }
+
+    @Override
+    public Map<String, Long> getNanos() {
+      final Map<String, Long> m = new LinkedHashMap<String, Long>();
+      m.put(Rule.OR_E.symbol, nanos(Rule.OR_E));
+      m.put(Rule.IMPLY_E.symbol, nanos(Rule.IMPLY_E));
+      return m;
+    }
+
+    @Override
+    public void reset() {
+      Rule_Metrics.reset();
+    }
+  }
+
+  /**
+   * Registers the MXBean with the platform MBean server, if it is not
+   * there yet.
+   **/
+  public static synchronized void register() {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      final ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new Metrics(), name);
+      }
+    } catch (final JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /*****************************************************************/
+  /** Counting */
+  /*****************************************************************/
+
+  /**
+   * Per thread: when each open "ve"/"->e" box was entered, and its event.
+   **/
+  private static final class Frames {
+    long[] start = new long[16];
+    Object[] events = new Object[16];
+    int depth;
+
+    void push(final long t, final Object event) {
+      if (this.depth == this.start.length) {
+        this.start = Arrays.copyOf(this.start, this.depth * 2);
+        this.events = Arrays.copyOf(this.events, this.depth * 2);
+      }
+      this.start[this.depth] = t;
+      this.events[this.depth++] = event;
+    }
+  }
+
+  private static final ThreadLocal<Frames> FRAMES = new ThreadLocal<Frames>() {
+    @Override
+    protected Frames initialValue() {
+      return new Frames();
+    }
+  };
+
+  private static void count(final Rule rule, final Object used,
+      final Object made) {
+    COUNTS[rule.ordinal()].increment();
+    final Flight f = flight;
+    if (f != null) {
+      f.commit(f.begin(), rule, used, made, FRAMES.get().depth);
+    }
+  }
+
+  private static void enter() {
+    final Flight f = flight;
+    FRAMES.get().push(System.nanoTime(), f == null ? null : f.begin());
+  }
+
+  private static void exit(final Rule rule, final Object used,
+      final Object made) {
+    final long end = System.nanoTime();
+    final Frames frames = FRAMES.get();
+    final int d = --frames.depth;
+    COUNTS[rule.ordinal()].increment();
+    NANOS[rule.ordinal()].add(end - frames.start[d]);
+    final Object event = frames.events[d];
+    if (event != null) {
+      frames.events[d] = null;
+      final Flight f = flight;
+      if (f != null) {
+        f.commit(event, rule, used, made, d);
+      }
+    }
+  }
+
+  private static final Rule_Hooks.Listener HOOK = new Rule_Hooks.Listener() {
+    @Override
+    public void and_i(final And<?, ?> conclusion, final Object v1,
+        final Object v2) {
+      count(Rule.AND_I, v1, conclusion);
+    }
+
+    @Override
+    public void and_e1(final And<?, ?> premise, final Object conclusion) {
+      count(Rule.AND_E1, premise, conclusion);
+    }
+
+    @Override
+    public void and_e2(final And<?, ?> premise, final Object conclusion) {
+      count(Rule.AND_E2, premise, conclusion);
+    }
+
+    @Override
+    public void or_i1(final Or<?, ?> conclusion, final Object v1) {
+      count(Rule.OR_I1, v1, conclusion);
+    }
+
+    @Override
+    public void or_i2(final Or<?, ?> conclusion, final Object v2) {
+      count(Rule.OR_I2, v2, conclusion);
+    }
+
+    @Override
+    public void or_e_enter(final Or<?, ?> premise, final boolean left,
+        final Object assumption, final Deduction<?, ?> taken,
+        final Deduction<?, ?> other) {
+      enter();
+    }
+
+    @Override
+    public void or_e_exit(final Or<?, ?> premise, final Object conclusion,
+        final boolean completed) {
+      exit(Rule.OR_E, premise, conclusion);
+    }
+
+    @Override
+    public void imply_i(final Imply<?, ?> conclusion,
+        final Deduction<?, ?> deduction) {
+      count(Rule.IMPLY_I, deduction, conclusion);
+    }
+
+    @Override
+    public void imply_e_enter(final Imply<?, ?> premise,
+        final Object argument) {
+      enter();
+    }
+
+    @Override
+    public void imply_e_exit(final Imply<?, ?> premise,
+        final Object argument, final Object conclusion,
+        final boolean completed) {
+      exit(Rule.IMPLY_E, premise, conclusion);
+    }
+  };
+
+  /*****************************************************************/
+  /** Flight Recorder */
+  /*****************************************************************/
+
+  /**
+   * The "curry_howard.Rule" event type, made with jdk.jfr.EventFactory and
+   * used through method handles, as this class is compiled for Java 8.
+   **/
+  private static final class Flight {
+    private static Flight instance;
+
+    /** The event type stays registered while its factory is reachable. */
+    private final Object factory;
+    private final MethodHandle newEvent;
+    private final MethodHandle begin;
+    private final MethodHandle set;
+    private final MethodHandle commit;
+
+    private Flight(final Object factory, final MethodHandle newEvent,
+        final MethodHandle begin, final MethodHandle set,
+        final MethodHandle commit) {
+      this.factory = factory;
+      this.newEvent = newEvent;
+      this.begin = begin;
+      this.set = set;
+      this.commit = commit;
+    }
+
+    @SuppressWarnings("unchecked")
+    static synchronized Flight get() {
+      if (instance != null) {
+        return instance;
+      }
+      try {
+        final ClassLoader l = Rule_Metrics.class.getClassLoader();
+        final Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory",
+            true, l);
+        final Class<?> event = Class.forName("jdk.jfr.Event", true, l);
+        final Class<?> element = Class.forName("jdk.jfr.AnnotationElement",
+            true, l);
+        final Class<?> value = Class.forName("jdk.jfr.ValueDescriptor", true,
+            l);
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final MethodHandle annotation = lookup.findConstructor(element,
+            MethodType.methodType(void.class, Class.class, Object.class));
+        final MethodHandle field = lookup.findConstructor(value,
+            MethodType.methodType(void.class, Class.class, String.class));
+        final List<Object> annotations = Arrays.asList(
+            annotation.invoke((Class<? extends Annotation>) Class.forName(
+                "jdk.jfr.Name", true, l), "curry_howard.Rule"),
+            annotation.invoke((Class<? extends Annotation>) Class.forName(
+                "jdk.jfr.Label", true, l), "Rule Application"),
+            annotation.invoke((Class<? extends Annotation>) Class.forName(
+                "jdk.jfr.Category", true, l), new String[] { "Curry-Howard" }));
+        final List<Object> fields = Arrays.asList(
+            field.invoke(String.class, "rule"),
+            field.invoke(String.class, "premise"),
+            field.invoke(String.class, "conclusion"),
+            field.invoke(int.class, "depth"));
+        final Object factory = eventFactory.getMethod("create", List.class,
+            List.class).invoke(null, annotations, fields);
+        instance = new Flight(factory,
+            lookup.findVirtual(eventFactory, "newEvent",
+                MethodType.methodType(event)).bindTo(factory).asType(
+                    MethodType.methodType(Object.class)),
+            lookup.findVirtual(event, "begin", MethodType.methodType(void.class))
+                .asType(MethodType.methodType(void.class, Object.class)),
+            lookup.findVirtual(event, "set",
+                MethodType.methodType(void.class, int.class, Object.class))
+                .asType(MethodType.methodType(void.class, Object.class,
+                    int.class, Object.class)),
+            lookup.findVirtual(event, "commit", MethodType.methodType(void.class))
+                .asType(MethodType.methodType(void.class, Object.class)));
+        return instance;
+      } catch (final Throwable t) {
+        final UnsupportedOperationException e = new UnsupportedOperationException(
+            "Flight Recorder events need jdk.jfr.EventFactory (JDK 12+)");
+        e.initCause(t);
+        throw e;
+      }
+    }
+
+    /** A new event, started now. */
+    Object begin() {
+      try {
+        final Object e = (Object) this.newEvent.invokeExact();
+        this.begin.invokeExact(e);
+        return e;
+      } catch (final Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+
+    void commit(final Object e, final Rule rule, final Object used,
+        final Object made, final int depth) {
+      try {
+        this.set.invokeExact(e, 0, (Object) rule.symbol);
+        this.set.invokeExact(e, 1, (Object) className(used));
+        this.set.invokeExact(e, 2, (Object) className(made));
+        this.set.invokeExact(e, 3, (Object) Integer.valueOf(depth));
+        this.commit.invokeExact(e);
+      } catch (final Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+
+    private static String className(final Object v) {
+      return v == null ? null : v.getClass().getName();
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testCounts() throws JMException {
+    final P p = new P();
+    final Imply<P, Q> pIMPLYq = new Imply<P, Q>((P assumptions) -> new Q());
+    final Imply<And<P, Q>, R> pqIMPLYr = new Imply<And<P, Q>, R>(
+        (And<P, Q> assumptions) -> new R());
+    final boolean was = isEnabled();
+    setEnabled(true);
+    try {
+      final long ands = count(Rule.AND_I);
+      final long implies = count(Rule.IMPLY_E);
+      final long ors = count(Rule.OR_E);
+      Curry_Howard_Isomorphism.example1(pqIMPLYr, pIMPLYq, p);
+      Or.<P, Q> or_i1(p).or_e((P p1) -> p1, (Q q) -> p);
+      assertTrue(count(Rule.AND_I) - ands >= 1);
+      assertTrue(count(Rule.IMPLY_E) - implies >= 2);
+      assertTrue(count(Rule.OR_E) - ors >= 1);
+      assertTrue(nanos(Rule.IMPLY_E) > 0);
+
+      register();
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final TabularData counts = (TabularData) server.getAttribute(
+          new ObjectName(OBJECT_NAME), "Counts");
+      assertEquals(RULES.length, counts.size());
+      assertEquals(Boolean.TRUE, server.getAttribute(
+          new ObjectName(OBJECT_NAME), "Enabled"));
+    } finally {
+      setEnabled(was);
+    }
+  }
+
+  @Test
+  public void testFlightRecorderEvents() {
+    final boolean was = isEnabled();
+    setEnabled(true);
+    try {
+      setFlightRecorderEvents(true);
+    } catch (final UnsupportedOperationException e) {
+      // a JDK without jdk.jfr.EventFactory
+      setEnabled(was);
+      return;
+    }
+    try {
+      // without a recording running the events are simply dropped
+      final P p = new P();
+      assertEquals(p, new Imply<P, P>((P p1) -> new And<P, P>(p1, p1)
+          .and_e2()).imply_e(p));
+      assertTrue(isFlightRecorderEvents());
+    } finally {
+      setFlightRecorderEvents(false);
+      setEnabled(was);
+    }
+  }
+}
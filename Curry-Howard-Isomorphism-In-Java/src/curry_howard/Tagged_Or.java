@@ -0,0 +1,346 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Or;
+import curry_howard.Curry_Howard_Isomorphism.P;
+import curry_howard.Curry_Howard_Isomorphism.Q;
+import curry_howard.Curry_Howard_Isomorphism.R;
+import curry_howard.Propositions.Proposition;
+
+public class Tagged_Or {
+  /**
+   * Wide disjunctions in one object.
+   *
+   * or_example builds evidence for p v q v r as a Left holding a Right
+   * holding the Q: one object per "v", and eliminating it takes one "ve"
+   * per level, each looking at a different object. Or3 and Or4 hold the
+   * evidence of a disjunction of three or four propositions directly,
+   * together with a small int saying which disjunct it is (from 0), and
+   * their or_e takes one Deduction per disjunct and picks one in a single
+   * switch:
+   *
+   * <pre>
+   *   Or3<P, Q, R> pORqORr = Or3.of(or_example(q));   // tag 1, the Q
+   *   S s = pORqORr.or_e(pIMPLYs, qIMPLYs, rIMPLYs);
+   * </pre>
+   *
+   * Or3.of / Or4.of take the left-nested Or that "v" groups to (p v q v r is
+   * (p v q) v r), and toOr() gives it back.
+   *
+   * OrN is the same for any number of disjuncts and any grouping, with
+   * the types of the disjuncts erased: flatten() reads nested Or evidence
+   * by the Proposition it is evidence for (every "v" at the top of the
+   * Proposition is one level of Or, the rest are the disjuncts, numbered
+   * left to right), and unflatten() builds the nested Or again.
+   *
+   * These are not Or, so their eliminations are not reported to
+   * Rule_Hooks listeners; toOr() / unflatten() the evidence first where a
+   * trace or a recorded Term is wanted.
+   **/
+
+  public static final class Or3<T1, T2, T3> {
+    private final int tag;
+    private final Object v;
+
+    private Or3(final int tag, final Object v) {
+      this.tag = tag;
+      this.v = v;
+    }
+
+    public static <T1, T2, T3> Or3<T1, T2, T3> or_i1(final T1 v) {
+      return new Or3<T1, T2, T3>(0, v);
+    }
+
+    public static <T1, T2, T3> Or3<T1, T2, T3> or_i2(final T2 v) {
+      return new Or3<T1, T2, T3>(1, v);
+    }
+
+    public static <T1, T2, T3> Or3<T1, T2, T3> or_i3(final T3 v) {
+      return new Or3<T1, T2, T3>(2, v);
+    }
+
+    /** Which disjunct this is evidence of: 0, 1 or 2. */
+    public int tag() {
+      return this.tag;
+    }
+
+    /** "ve" over the three disjuncts. */
+    @SuppressWarnings("unchecked")
+    public <T4> T4 or_e(final Deduction<T1, T4> d1, final Deduction<T2, T4> d2,
+        final Deduction<T3, T4> d3) {
+      switch (this.tag) {
+      case 0:
+        return d1.apply((T1) this.v);
+      case 1:
+        return d2.apply((T2) this.v);
+      default:
+        return d3.apply((T3) this.v);
+      }
+    }
+
+    public static <T1, T2, T3> Or3<T1, T2, T3> of(final Or<Or<T1, T2>, T3> v) {
+      if (!v.isLeft()) {
+        return or_i3(v.right());
+      }
+      final Or<T1, T2> v12 = v.left();
+      return v12.isLeft() ? Or3.<T1, T2, T3> or_i1(v12.left())
+          : Or3.<T1, T2, T3> or_i2(v12.right());
+    }
+
+    @SuppressWarnings("unchecked")
+    public Or<Or<T1, T2>, T3> toOr() {
+      switch (this.tag) {
+      case 0:
+        return Or.or_i1(Or.<T1, T2> or_i1((T1) this.v));
+      case 1:
+        return Or.or_i1(Or.<T1, T2> or_i2((T2) this.v));
+      default:
+        return Or.or_i2((T3) this.v);
+      }
+    }
+  }
+
+  public static final class Or4<T1, T2, T3, T4> {
+    private final int tag;
+    private final Object v;
+
+    private Or4(final int tag, final Object v) {
+      this.tag = tag;
+      this.v = v;
+    }
+
+    public static <T1, T2, T3, T4> Or4<T1, T2, T3, T4> or_i1(final T1 v) {
+      return new Or4<T1, T2, T3, T4>(0, v);
+    }
+
+    public static <T1, T2, T3, T4> Or4<T1, T2, T3, T4> or_i2(final T2 v) {
+      return new Or4<T1, T2, T3, T4>(1, v);
+    }
+
+    public static <T1, T2, T3, T4> Or4<T1, T2, T3, T4> or_i3(final T3 v) {
+      return new Or4<T1, T2, T3, T4>(2, v);
+    }
+
+    public static <T1, T2, T3, T4> Or4<T1, T2, T3, T4> or_i4(final T4 v) {
+      return new Or4<T1, T2, T3, T4>(3, v);
+    }
+
+    /** Which disjunct this is evidence of: 0 to 3. */
+    public int tag() {
+      return this.tag;
+    }
+
+    /** "ve" over the four disjuncts. */
+    @SuppressWarnings("unchecked")
+    public <T5> T5 or_e(final Deduction<T1, T5> d1, final Deduction<T2, T5> d2,
+        final Deduction<T3, T5> d3, final Deduction<T4, T5> d4) {
+      switch (this.tag) {
+      case 0:
+        return d1.apply((T1) this.v);
+      case 1:
+        return d2.apply((T2) this.v);
+      case 2:
+        return d3.apply((T3) this.v);
+      default:
+        return d4.apply((T4) this.v);
+      }
+    }
+
+    public static <T1, T2, T3, T4> Or4<T1, T2, T3, T4> of(
+        final Or<Or<Or<T1, T2>, T3>, T4> v) {
+      if (!v.isLeft()) {
+        return or_i4(v.right());
+      }
+      final Or<Or<T1, T2>, T3> v123 = v.left();
+      if (!v123.isLeft()) {
+        return or_i3(v123.right());
+      }
+      final Or<T1, T2> v12 = v123.left();
+      return v12.isLeft() ? Or4.<T1, T2, T3, T4> or_i1(v12.left())
+          : Or4.<T1, T2, T3, T4> or_i2(v12.right());
+    }
+
+    @SuppressWarnings("unchecked")
+    public Or<Or<Or<T1, T2>, T3>, T4> toOr() {
+      switch (this.tag) {
+      case 0:
+        return Or.or_i1(Or.or_i1(Or.<T1, T2> or_i1((T1) this.v)));
+      case 1:
+        return Or.or_i1(Or.or_i1(Or.<T1, T2> or_i2((T2) this.v)));
+      case 2:
+        return Or.or_i1(Or.<Or<T1, T2>, T3> or_i2((T3) this.v));
+      default:
+        return Or.or_i2((T4) this.v);
+      }
+    }
+  }
+
+  /**
+   * Evidence of one of 'width' disjuncts: which one (tag(), from 0) and its
+   * evidence (value()).
+   **/
+  public static final class OrN {
+    private final int tag;
+    private final int width;
+    private final Object v;
+
+    private OrN(final int tag, final int width, final Object v) {
+      this.tag = tag;
+      this.width = width;
+      this.v = v;
+    }
+
+    /** "vi" into disjunct 'tag' of 'width'. */
+    public static OrN or_i(final int tag, final int width, final Object v) {
+      if (tag < 0 || tag >= width) {
+        throw new IndexOutOfBoundsException("disjunct " + tag + " of "
+            + width);
+      }
+      return new OrN(tag, width, v);
+    }
+
+    public int tag() {
+      return this.tag;
+    }
+
+    public int width() {
+      return this.width;
+    }
+
+    public Object value() {
+      return this.v;
+    }
+
+    /** "ve": ds[i] for disjunct i, one per disjunct. */
+    @SafeVarargs
+    @SuppressWarnings("unchecked")
+    public final <T> T or_e(final Deduction<?, ? extends T>... ds) {
+      if (ds.length != this.width) {
+        throw new IllegalArgumentException(this.width
+            + " deductions expected, not " + ds.length);
+      }
+      return ((Deduction<Object, ? extends T>) ds[this.tag]).apply(this.v);
+    }
+
+    /**
+     * The nested Or evidence 'v' of 'shape' as one OrN, its disjuncts the
+     * parts of 'shape' that are not a "v" under a "v".
+     **/
+    public static OrN flatten(final Object v, final Proposition shape) {
+      final Map<Proposition, Integer> widths = widths(shape);
+      Proposition p = shape;
+      Object e = v;
+      int tag = 0;
+      while (p.kind() == Proposition.Kind.OR) {
+        final Or<?, ?> or = (Or<?, ?>) e;
+        if (or.isLeft()) {
+          e = or.left();
+          p = p.left();
+        } else {
+          tag += widths.get(p.left());
+          e = or.right();
+          p = p.right();
+        }
+      }
+      return new OrN(tag, widths.get(shape), e);
+    }
+
+    /** This as nested Or evidence of 'shape'. */
+    public Object unflatten(final Proposition shape) {
+      final Map<Proposition, Integer> widths = widths(shape);
+      if (widths.get(shape) != this.width) {
+        throw new IllegalArgumentException(shape + " has "
+            + widths.get(shape) + " disjuncts, not " + this.width);
+      }
+      // the way down to the disjunct, then the Ors on the way back up
+      final boolean[] lefts = new boolean[this.width];
+      int depth = 0;
+      Proposition p = shape;
+      int tag = this.tag;
+      while (p.kind() == Proposition.Kind.OR) {
+        final int w = widths.get(p.left());
+        lefts[depth++] = tag < w;
+        if (tag < w) {
+          p = p.left();
+        } else {
+          tag -= w;
+          p = p.right();
+        }
+      }
+      Object e = this.v;
+      while (depth > 0) {
+        e = lefts[--depth] ? Or.or_i1(e) : Or.or_i2(e);
+      }
+      return e;
+    }
+
+    /**
+     * The number of disjuncts of every "v" under 'shape' that is not under
+     * something else (and 1 for each of the disjuncts), without recursion.
+     **/
+    private static Map<Proposition, Integer> widths(final Proposition shape) {
+      final Map<Proposition, Integer> widths = new IdentityHashMap<Proposition, Integer>();
+      final ArrayDeque<Proposition> todo = new ArrayDeque<Proposition>();
+      todo.push(shape);
+      while (!todo.isEmpty()) {
+        final Proposition p = todo.peek();
+        if (p.kind() != Proposition.Kind.OR) {
+          widths.put(todo.pop(), 1);
+        } else if (widths.containsKey(p.left())
+            && widths.containsKey(p.right())) {
+          widths.put(todo.pop(), widths.get(p.left()) + widths.get(p.right()));
+        } else {
+          todo.push(p.left());
+          todo.push(p.right());
+        }
+      }
+      return widths;
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  @Test
+  public void testOr3() {
+    final Q q = new Q();
+    final Or3<P, Q, R> pORqORr = Or3.of(Curry_Howard_Isomorphism.or_example(q));
+    assertEquals(1, pORqORr.tag());
+    assertSame(q, pORqORr.or_e((P p) -> null, (Q q1) -> q1, (R r) -> null));
+    final Or<Or<P, Q>, R> back = pORqORr.toOr();
+    assertTrue(back.isLeft());
+    assertSame(q, back.left().right());
+    assertEquals(2, Or4.<P, Q, R, P> of(Or.or_i1(Or.or_i2(new R()))).tag());
+  }
+
+  @Test
+  public void testOrN() {
+    // (p v (q v r)) v s, evidence of r: Left(Right(Right(r)))
+    final Proposition shape = Proposition.parse("p v (q v r) v s");
+    final R r = new R();
+    final Or<Or<P, Or<Q, R>>, P> nested = Or.or_i1(Or.or_i2(Or.or_i2(r)));
+    final OrN flat = OrN.flatten(nested, shape);
+    assertEquals(2, flat.tag());
+    assertEquals(4, flat.width());
+    final String which = flat.or_e((Object p) -> "p", (Object q) -> "q",
+        (R r1) -> "r", (Object s) -> "s");
+    assertEquals("r", which);
+    @SuppressWarnings("unchecked")
+    final Or<Or<P, Or<Q, R>>, P> back = (Or<Or<P, Or<Q, R>>, P>) flat
+        .unflatten(shape);
+    assertSame(r, back.left().right().right());
+    assertFalse(back.left().right().isLeft());
+  }
+}
@@ -0,0 +1,282 @@
+package curry_howard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import curry_howard.Curry_Howard_Isomorphism.Deduction;
+import curry_howard.Curry_Howard_Isomorphism.Imply;
+import curry_howard.Curry_Howard_Isomorphism.P;
+
+public class Trampolining {
+  /**
+   * Running long chains of ->e in constant stack space.
+   *
+   * Evidence for T1 -> T2 is a Deduction, and a Deduction is a Java method,
+   * so a proof that uses ->e inside a sub-proof that was itself reached with
+   * ->e (as example4 does) nests one Java call inside another. A generated
+   * proof with thousands of such steps needs thousands of stack frames and
+   * ends in a StackOverflowError.
+   *
+   * A Trampoline<T> is a description of how to compute T evidence that has
+   * not run yet: either the evidence itself (done), or "the next step"
+   * (more), or "first this, then use its result for that" (flatMap). run()
+   * executes such a description in a loop, one step at a time, so however
+   * deep the proof is, it only ever uses a couple of stack frames.
+   *
+   * A sub-proof that wants to be run this way is written as a Step: instead
+   * of doing its ->e steps itself, it returns them as a Trampoline, and
+   * instead of imply_e it uses imply_eDeferred, which hands back the ->e
+   * step without running it:
+   *
+   * <pre>
+   *   Imply<P, R> pIMPLYr = new Imply<P, R>((Step<P, R>) (P p) ->
+   *       Trampoline.more(() -> qIMPLYr.imply_eDeferred(pIMPLYq.imply_e(p))));
+   * </pre>
+   *
+   * A Step is still a Deduction (its deduction_step simply runs the
+   * trampoline), so it can be used with Imply, Or.or_e and everything else
+   * as before. Ordinary Deductions can be mixed with Steps; they are run as
+   * one step, with a normal Java call.
+   *
+   * For shallow proofs the plain imply_e is faster (a Trampoline allocates a
+   * small object per step); Trampoline_Benchmark shows where the two meet.
+   **/
+
+  /**
+   * A sub-proof of T1 |- T2 that returns its ->e steps as a Trampoline
+   * instead of running them.
+   **/
+  @FunctionalInterface
+  public interface Step<T1, T2> extends Deduction<T1, T2> {
+    Trampoline<T2> step(T1 assumptions);
+
+    @Override
+    default T2 deduction_step(final T1 assumptions) {
+      return step(assumptions).run();
+    }
+
+    @Override
+    default Trampoline<T2> applyDeferred(final T1 v1) {
+      return step(v1);
+    }
+  }
+
+  public static abstract class Trampoline<T> {
+    private Trampoline() {
+    }
+
+    /** The evidence v itself; nothing left to run. */
+    public static <T> Trampoline<T> done(final T v) {
+      return new Done<T>(v);
+    }
+
+    /** The next step: call 'next' (from the trampoline loop) to get it. */
+    public static <T> Trampoline<T> more(final Supplier<Trampoline<T>> next) {
+      return new More<T>(next);
+    }
+
+    /** Runs this, then uses its evidence to run 'f'. */
+    public <U> Trampoline<U> flatMap(final Function<? super T, Trampoline<U>> f) {
+      return new FlatMap<T, U>(this, f);
+    }
+
+    /** Runs this, then transforms its evidence with 'f'. */
+    public <U> Trampoline<U> map(final Function<? super T, ? extends U> f) {
+      return flatMap((T v) -> done(f.apply(v)));
+    }
+
+    /**
+     * Runs this; if any of its steps throws, 'failed' is run before the
+     * throwable goes on to whatever runs this (the trampoline's own
+     * try/finally, for the listeners of imply_eDeferred).
+     **/
+    Trampoline<T> onFailure(final Runnable failed) {
+      return new OnFailure<T>(this, failed);
+    }
+
+    /**
+     * Runs all the steps, in a loop, and returns the evidence they produce.
+     **/
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public final T run() {
+      Trampoline<?> current = this;
+      ArrayDeque<Function> continuations = null;
+      try {
+        while (true) {
+          if (current instanceof Done) {
+            final Object v = ((Done<?>) current).v;
+            if (continuations == null || continuations.isEmpty()) {
+              return (T) v;
+            }
+            current = (Trampoline<?>) continuations.pop().apply(v);
+          } else if (current instanceof More) {
+            current = ((More<?>) current).next.get();
+          } else {
+            if (continuations == null) {
+              continuations = new ArrayDeque<Function>();
+            }
+            if (current instanceof OnFailure) {
+              final OnFailure<?> of = (OnFailure<?>) current;
+              continuations.push(new Unwind(of.failed));
+              current = of.source;
+            } else {
+              final FlatMap<?, ?> fm = (FlatMap<?, ?>) current;
+              continuations.push(fm.f);
+              current = fm.source;
+            }
+          }
+        }
+      } catch (final Throwable t) {
+        // innermost first, as nested try blocks would
+        while (continuations != null && !continuations.isEmpty()) {
+          final Function f = continuations.pop();
+          if (f instanceof Unwind) {
+            ((Unwind) f).failed.run();
+          }
+        }
+        throw t;
+      }
+    }
+  }
+
+  private static final class Done<T> extends Trampoline<T> {
+    final T v;
+
+    Done(final T v) {
+      this.v = v;
+    }
+  }
+
+  private static final class More<T> extends Trampoline<T> {
+    final Supplier<Trampoline<T>> next;
+
+    More(final Supplier<Trampoline<T>> next) {
+      this.next = next;
+    }
+  }
+
+  private static final class FlatMap<T, U> extends Trampoline<U> {
+    final Trampoline<T> source;
+    final Function<? super T, Trampoline<U>> f;
+
+    FlatMap(final Trampoline<T> source,
+        final Function<? super T, Trampoline<U>> f) {
+      this.source = source;
+      this.f = f;
+    }
+  }
+
+  private static final class OnFailure<T> extends Trampoline<T> {
+    final Trampoline<T> source;
+    final Runnable failed;
+
+    OnFailure(final Trampoline<T> source, final Runnable failed) {
+      this.source = source;
+      this.failed = failed;
+    }
+  }
+
+  /** An OnFailure's place among the continuations: passes its value on. */
+  private static final class Unwind implements
+      Function<Object, Trampoline<Object>> {
+    final Runnable failed;
+
+    Unwind(final Runnable failed) {
+      this.failed = failed;
+    }
+
+    @Override
+    public Trampoline<Object> apply(final Object v) {
+      return Trampoline.done(v);
+    }
+  }
+
+  /*****************************************************************/
+  /** Examples */
+  /*****************************************************************/
+
+  /**
+   * p -> p, p -> p, ..., p -> p  |-  p -> p, as one long chain of ->e in
+   * which each implication's sub-proof hands its evidence to the next one.
+   **/
+  static Imply<P, P> chain(final int length) {
+    Imply<P, P> next = new Imply<P, P>((P p) -> p);
+    for (int i = 0; i < length; i++) {
+      final Imply<P, P> rest = next;
+      next = new Imply<P, P>(
+          (Step<P, P>) (P p) -> Trampoline.more(() -> rest.imply_eDeferred(p)));
+    }
+    return next;
+  }
+
+  @Test
+  public void testDeepChain() {
+    final P p = new P();
+    // far deeper than the default thread stack allows for nested imply_e
+    assertSame(p, chain(100000).imply_e(p));
+  }
+
+  @Test
+  public void testDeepChainWithListener() {
+    final P p = new P();
+    final int[] open = new int[2];
+    final Rule_Hooks.Listener depth = new Rule_Hooks.Listener() {
+      @Override
+      public void imply_e_enter(final Imply<?, ?> premise,
+          final Object argument) {
+        open[1] = Math.max(open[1], ++open[0]);
+      }
+
+      @Override
+      public void imply_e_exit(final Imply<?, ?> premise,
+          final Object argument, final Object conclusion,
+          final boolean completed) {
+        open[0]--;
+      }
+    };
+    final Imply<P, P> chain = chain(100000);
+    Rule_Hooks.add(depth);
+    try {
+      // every ->e is still reported, properly nested, without the stack
+      assertSame(p, chain.imply_e(p));
+    } finally {
+      Rule_Hooks.remove(depth);
+    }
+    assertEquals(0, open[0]);
+    assertEquals(100001, open[1]);
+
+    // a step that throws on the trampoline still exits both ->e
+    final Imply<P, P> fails = new Imply<P, P>((Step<P, P>) (P p1) -> Trampoline
+        .more(() -> {
+          throw new IllegalStateException();
+        }));
+    final Imply<P, P> outer = new Imply<P, P>((Step<P, P>) (P p1) -> Trampoline
+        .more(() -> fails.imply_eDeferred(p1)));
+    Rule_Hooks.add(depth);
+    try {
+      outer.imply_e(p);
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals(0, open[0]);
+    } finally {
+      Rule_Hooks.remove(depth);
+    }
+  }
+
+  @Test
+  public void testFlatMap() {
+    // a left-nested chain of flatMap: each step waits for the one before it
+    Trampoline<Integer> t = Trampoline.done(0);
+    for (int i = 0; i < 100000; i++) {
+      t = t.flatMap((Integer n) -> Trampoline.done(n + 1));
+    }
+    assertEquals(Integer.valueOf(100000), t.run());
+  }
+}